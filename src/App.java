@@ -1,9 +1,44 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import feed.FeedNoticias;
+import feed.PoliticaRetencao;
 import iu.TelaRedeSocial;
+import servidor.ServidorFeed;
 
 public class App {
     public static void main(String[] args) throws Exception {
+        // "--headless [porta]": expõe o feed por HTTP, sem a janela
+        if (args.length > 0 && args[0].equals("--headless")) {
+            int porta = (args.length > 1) ? Integer.parseInt(args[1]) : ServidorFeed.PORTA_PADRAO;
+            executarSemTela(porta);
+            return;
+        }
         // cria o objeto da tela e o exibe
         TelaRedeSocial tela = new TelaRedeSocial();
         tela.exibir();
     }
+
+    /**
+     * Abre o feed persistente (com a política de retenção definida pelas
+     * propriedades do sistema) e o expõe pelo servidor HTTP local até o
+     * programa ser encerrado (ex.: Ctrl+C), quando o servidor é parado e o
+     * feed é fechado.
+     */
+    private static void executarSemTela(int porta) throws IOException {
+        FeedNoticias feed = new FeedNoticias(Paths.get("dados-feed"), FeedNoticias.OPERACOES_ENTRE_INSTANTANEOS,
+                PoliticaRetencao.lerPropriedades());
+        feed.iniciarVerificacaoRetencao();
+        ServidorFeed servidor = new ServidorFeed(feed, porta);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            servidor.parar();
+            try {
+                feed.fechar();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }));
+        servidor.iniciar();
+        System.out.println("Feed disponível em http://localhost:" + servidor.getPorta() + "/publicacoes");
+    }
 }
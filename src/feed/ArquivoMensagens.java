@@ -0,0 +1,168 @@
+package feed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Arquivo onde o Feed persistente guarda as mensagens descartadas da memória
+ * pela política de retenção, para que elas não se percam quando a parte do
+ * diário em que foram postadas for apagada.
+ *
+ * Cada mensagem é gravada (no mesmo formato do instantâneo, com as curtidas e
+ * comentários que tinha ao ser descartada) como um registro: tamanho (int),
+ * CRC32 (int) e os dados. Como as mensagens são descartadas em ordem de
+ * postagem, os ids no arquivo são crescentes; ao abrir o arquivo apenas o
+ * maior id é procurado, e um registro incompleto no final (ex.: queda de
+ * energia) é descartado.
+ */
+class ArquivoMensagens {
+    // Nome do arquivo dentro do diretório de dados do Feed
+    static final String NOME_ARQUIVO = "arquivo-mensagens.dat";
+    // Tamanho do buffer usado na leitura e na escrita
+    private static final int TAMANHO_BUFFER = 64 * 1024;
+
+    // Canal do arquivo (aberto para acrescentar no final)
+    private FileChannel canal;
+    // Saída (com buffer) para o canal
+    private DataOutputStream saida;
+    // Buffer onde cada registro é montado antes de ser escrito
+    private ByteArrayOutputStream bufferRegistro;
+    // Cálculo do CRC dos registros
+    private CRC32 crc;
+    // Maior id de mensagem já arquivado (0 se o arquivo está vazio)
+    private int maiorIdArquivado;
+    // Quantidade de mensagens no arquivo
+    private long nroMensagensArquivadas;
+
+    /**
+     * Abre (ou cria) o arquivo de mensagens no diretório passado. Garante que
+     * as próximas mensagens criadas recebam ids maiores que os arquivados.
+     *
+     * @param diretorio Diretório de dados do Feed
+     * @throws IOException Se houver erro na leitura ou criação do arquivo
+     */
+    public ArquivoMensagens(Path diretorio) throws IOException {
+        Path arquivo = diretorio.resolve(NOME_ARQUIVO);
+        crc = new CRC32();
+        maiorIdArquivado = 0;
+        nroMensagensArquivadas = 0;
+        long posicaoValida = Files.exists(arquivo) ? verificar(arquivo) : 0;
+        canal = FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (canal.size() > posicaoValida) {
+            canal.truncate(posicaoValida);
+        }
+        canal.position(posicaoValida);
+        saida = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(canal), TAMANHO_BUFFER));
+        bufferRegistro = new ByteArrayOutputStream();
+        Mensagem.reservarIdsAte(maiorIdArquivado);
+    }
+
+    /**
+     * Percorre os registros do arquivo, guardando o maior id.
+     *
+     * @return Posição do final do último registro válido
+     */
+    private long verificar(Path arquivo) throws IOException {
+        long posicaoValida = 0;
+        try (InputStream entradaArquivo = Files.newInputStream(arquivo);
+                DataInputStream entrada = new DataInputStream(
+                        new BufferedInputStream(entradaArquivo, TAMANHO_BUFFER))) {
+            while (true) {
+                int tamanho;
+                int crcEsperado;
+                byte[] dados;
+                try {
+                    tamanho = entrada.readInt();
+                    crcEsperado = entrada.readInt();
+                    if (tamanho < 5) {
+                        break;
+                    }
+                    dados = new byte[tamanho];
+                    entrada.readFully(dados);
+                } catch (EOFException e) {
+                    break;
+                }
+                crc.reset();
+                crc.update(dados, 0, dados.length);
+                if ((int) crc.getValue() != crcEsperado) {
+                    break;
+                }
+                // o id vem logo depois do tipo da mensagem
+                int id = ((dados[1] & 0xFF) << 24) | ((dados[2] & 0xFF) << 16) | ((dados[3] & 0xFF) << 8)
+                        | (dados[4] & 0xFF);
+                maiorIdArquivado = Math.max(maiorIdArquivado, id);
+                nroMensagensArquivadas++;
+                posicaoValida += 8 + tamanho;
+            }
+        }
+        return posicaoValida;
+    }
+
+    /**
+     * Acrescenta uma mensagem no arquivo (se ela ainda não estiver nele, como
+     * acontece ao reproduzir o diário de mensagens já arquivadas). A gravação
+     * em disco só é garantida depois de sincronizar.
+     *
+     * @param mensagem Mensagem descartada da memória
+     * @throws IOException Se houver erro na escrita
+     */
+    public synchronized void arquivar(Mensagem mensagem) throws IOException {
+        if (mensagem.getId() <= maiorIdArquivado) {
+            return;
+        }
+        bufferRegistro.reset();
+        DataOutputStream dadosRegistro = new DataOutputStream(bufferRegistro);
+        InstantaneoFeed.escreverMensagem(dadosRegistro, mensagem, mensagem.getNroCurtidas(),
+                mensagem.getNroComentarios());
+        dadosRegistro.flush();
+        byte[] dados = bufferRegistro.toByteArray();
+        crc.reset();
+        crc.update(dados, 0, dados.length);
+        saida.writeInt(dados.length);
+        saida.writeInt((int) crc.getValue());
+        saida.write(dados);
+        maiorIdArquivado = mensagem.getId();
+        nroMensagensArquivadas++;
+    }
+
+    /**
+     * Garante que as mensagens arquivadas estão gravadas em disco.
+     *
+     * @throws IOException Se houver erro na gravação
+     */
+    public synchronized void sincronizar() throws IOException {
+        saida.flush();
+        canal.force(false);
+    }
+
+    /**
+     * Retorna a quantidade de mensagens no arquivo.
+     *
+     * @return Quantidade de mensagens arquivadas
+     */
+    public synchronized long getNroMensagensArquivadas() {
+        return nroMensagensArquivadas;
+    }
+
+    /**
+     * Grava o que faltar e fecha o arquivo.
+     *
+     * @throws IOException Se houver erro na gravação
+     */
+    public synchronized void fechar() throws IOException {
+        sincronizar();
+        saida.close();
+    }
+}
@@ -0,0 +1,603 @@
+package feed;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Diário (write-ahead log) das operações do Feed de Notícias.
+ *
+ * Cada operação (postagem, curtida ou comentário) é acrescentada em formato
+ * binário no final de um arquivo de segmento ("diario-NNNNNN.log") dentro do
+ * diretório de dados. Ao abrir o Feed, os segmentos são lidos em ordem e as
+ * operações são reproduzidas para reconstruir o estado.
+ *
+ * Cada registro é gravado como: tamanho (int), CRC32 (int) e os dados. Um
+ * registro incompleto ou corrompido no final do arquivo (ex.: o programa foi
+ * encerrado no meio de uma gravação) é descartado na leitura.
+ *
+ * Quando um instantâneo do Feed é gerado, o diário passa para um novo
+ * segmento; os segmentos anteriores ao instantâneo podem então ser apagados.
+ *
+ * A gravação em disco (fsync) é feita em grupo: a thread que pede a gravação
+ * força em disco todos os registros acumulados até então, e as threads que
+ * estavam esperando encontram seus registros já gravados.
+ */
+class DiarioFeed {
+    // Tipos de registro do diário
+    static final byte POSTAGEM_TEXTO = 1;
+    // (formato antigo, com os bytes da foto dentro do diário; apenas lido)
+    static final byte POSTAGEM_FOTO = 2;
+    static final byte CURTIDA = 3;
+    static final byte COMENTARIO = 4;
+    // (a foto fica no repositório de fotos; o diário guarda a referência)
+    static final byte POSTAGEM_FOTO_REFERENCIA = 5;
+    // (as operações de um lote, em um único registro: ou todas são
+    // reproduzidas, ou nenhuma)
+    static final byte LOTE = 6;
+
+    // Prefixo e extensão dos arquivos de segmento do diário
+    private static final String PREFIXO_SEGMENTO = "diario-";
+    private static final String EXTENSAO_SEGMENTO = ".log";
+    // Tamanho do buffer usado na leitura e na escrita
+    private static final int TAMANHO_BUFFER = 64 * 1024;
+
+    /**
+     * Interface usada para reproduzir as operações lidas do diário.
+     */
+    interface Reprodutor {
+        // Reproduz a postagem de uma mensagem de texto
+        void postagemTexto(int id, long horaPostagem, String autor, String texto);
+
+        // Reproduz a postagem de uma mensagem com foto (formato antigo)
+        void postagemFoto(int id, long horaPostagem, String autor, byte[] bytesDaFoto, String legenda);
+
+        // Reproduz a postagem de uma mensagem com foto
+        void postagemFoto(int id, long horaPostagem, String autor, ReferenciaFoto referenciaFoto, String legenda);
+
+        // Reproduz uma curtida
+        void curtida(int idMensagem);
+
+        // Reproduz um comentário
+        void comentario(int idMensagem, String comentario);
+    }
+
+    // Diretório onde ficam os arquivos do diário
+    private Path diretorio;
+    // Número do segmento atual
+    private long numeroSegmentoAtual;
+    // Canal do segmento atual (usado para forçar a gravação em disco)
+    private FileChannel canal;
+    // Saída bufferizada para o segmento atual
+    private OutputStream saida;
+    // Escrita do cabeçalho dos registros na saída
+    private DataOutputStream dadosSaida;
+    // Buffer onde cada registro é montado antes de ser escrito
+    private ByteArrayOutputStream bufferRegistro;
+    // Escrita dos campos do registro no buffer
+    private DataOutputStream dadosRegistro;
+    // Cálculo do CRC dos registros
+    private CRC32 crc;
+    // Quantidade de registros escritos no diário
+    private long registrosEscritos;
+    // Quantidade de registros escritos no segmento atual
+    private volatile long registrosNoSegmento;
+    // Quantidade de registros que já estão gravados em disco
+    private volatile long registrosGravados;
+    // Lock usado para que apenas uma thread por vez force a gravação em disco
+    private final Object lockGravacao = new Object();
+
+    /**
+     * Abre o diário do diretório passado: reproduz as operações registradas a
+     * partir do segmento passado e prepara o último segmento para receber novos
+     * registros.
+     *
+     * @param diretorio        Diretório de dados (criado se não existir)
+     * @param primeiroSegmento Primeiro segmento a ser reproduzido (os
+     *                         anteriores já estão no instantâneo carregado)
+     * @param reprodutor       Objeto que reproduz as operações lidas
+     * @throws IOException Se houver erro de leitura ou escrita
+     */
+    public DiarioFeed(Path diretorio, long primeiroSegmento, Reprodutor reprodutor) throws IOException {
+        this.diretorio = diretorio;
+        Files.createDirectories(diretorio);
+        bufferRegistro = new ByteArrayOutputStream();
+        dadosRegistro = new DataOutputStream(bufferRegistro);
+        crc = new CRC32();
+
+        numeroSegmentoAtual = primeiroSegmento;
+        for (Path segmento : listarSegmentos()) {
+            long numero = numeroSegmento(segmento);
+            if (numero >= primeiroSegmento) {
+                reproduzirSegmento(segmento, reprodutor);
+                numeroSegmentoAtual = numero;
+            }
+        }
+        abrirSegmento(numeroSegmentoAtual);
+    }
+
+    /**
+     * Registra a postagem de uma mensagem de texto.
+     *
+     * @return Número do registro (usado para aguardar a gravação)
+     */
+    public synchronized long registrarPostagemTexto(int id, long horaPostagem, String autor, String texto)
+            throws IOException {
+        iniciarRegistro(POSTAGEM_TEXTO);
+        dadosRegistro.writeInt(id);
+        dadosRegistro.writeLong(horaPostagem);
+        escreverTexto(dadosRegistro, autor);
+        escreverTexto(dadosRegistro, texto);
+        return concluirRegistro();
+    }
+
+    /**
+     * Registra a postagem de uma mensagem com foto.
+     *
+     * @return Número do registro (usado para aguardar a gravação)
+     */
+    public synchronized long registrarPostagemFoto(int id, long horaPostagem, String autor,
+            ReferenciaFoto referenciaFoto, String legenda) throws IOException {
+        iniciarRegistro(POSTAGEM_FOTO_REFERENCIA);
+        dadosRegistro.writeInt(id);
+        dadosRegistro.writeLong(horaPostagem);
+        escreverTexto(dadosRegistro, autor);
+        escreverTexto(dadosRegistro, legenda);
+        escreverReferencia(dadosRegistro, referenciaFoto);
+        return concluirRegistro();
+    }
+
+    /**
+     * Registra uma curtida.
+     *
+     * @return Número do registro (usado para aguardar a gravação)
+     */
+    public synchronized long registrarCurtida(int idMensagem) throws IOException {
+        iniciarRegistro(CURTIDA);
+        dadosRegistro.writeInt(idMensagem);
+        return concluirRegistro();
+    }
+
+    /**
+     * Registra um comentário.
+     *
+     * @return Número do registro (usado para aguardar a gravação)
+     */
+    public synchronized long registrarComentario(int idMensagem, String comentario) throws IOException {
+        iniciarRegistro(COMENTARIO);
+        dadosRegistro.writeInt(idMensagem);
+        escreverTexto(dadosRegistro, comentario);
+        return concluirRegistro();
+    }
+
+    /**
+     * Registra as operações de um lote em um único registro (com um único
+     * CRC), de modo que um lote gravado pela metade seja descartado por
+     * inteiro na leitura. As postagens recebem ids consecutivos a partir do
+     * passado, na ordem em que aparecem no lote.
+     *
+     * @param operacoes    Operações do lote
+     * @param primeiroId   Id da primeira postagem do lote
+     * @param horaPostagem Hora das postagens do lote
+     * @return Número do registro (usado para aguardar a gravação)
+     */
+    public synchronized long registrarLote(List<LoteOperacoes.Operacao> operacoes, int primeiroId,
+            long horaPostagem) throws IOException {
+        iniciarRegistro(LOTE);
+        dadosRegistro.writeInt(operacoes.size());
+        int id = primeiroId;
+        for (LoteOperacoes.Operacao operacao : operacoes) {
+            // cada operação tem o mesmo formato do registro avulso equivalente
+            if (operacao.tipo == LoteOperacoes.POSTAGEM_TEXTO) {
+                dadosRegistro.writeByte(POSTAGEM_TEXTO);
+                dadosRegistro.writeInt(id++);
+                dadosRegistro.writeLong(horaPostagem);
+                escreverTexto(dadosRegistro, operacao.autor);
+                escreverTexto(dadosRegistro, operacao.texto);
+            } else if (operacao.tipo == LoteOperacoes.CURTIDA) {
+                dadosRegistro.writeByte(CURTIDA);
+                dadosRegistro.writeInt(operacao.idMensagem);
+            } else {
+                dadosRegistro.writeByte(COMENTARIO);
+                dadosRegistro.writeInt(operacao.idMensagem);
+                escreverTexto(dadosRegistro, operacao.texto);
+            }
+        }
+        long registro = concluirRegistro();
+        // o lote conta como todas as suas operações para a geração de
+        // instantâneos
+        registrosNoSegmento += operacoes.size() - 1;
+        if (bufferRegistro.size() > TAMANHO_BUFFER) {
+            // não mantém na memória o buffer ampliado por um lote grande
+            bufferRegistro = new ByteArrayOutputStream();
+            dadosRegistro = new DataOutputStream(bufferRegistro);
+        }
+        return registro;
+    }
+
+    /**
+     * Aguarda até que o registro passado (e todos os anteriores) estejam
+     * gravados em disco. Se nenhuma outra thread estiver gravando, esta
+     * thread grava todos os registros pendentes de uma só vez (inclusive os
+     * de outras threads, que não precisarão fazer a própria gravação).
+     *
+     * @param registro Número do registro retornado por um dos métodos registrar
+     * @throws IOException Se houver erro na gravação
+     */
+    public void aguardarGravacao(long registro) throws IOException {
+        if (registrosGravados >= registro) {
+            return;
+        }
+        synchronized (lockGravacao) {
+            // enquanto esperava o lock, outra thread pode ter gravado este registro
+            if (registrosGravados >= registro) {
+                return;
+            }
+            long ultimoRegistro;
+            FileChannel canalGravado;
+            synchronized (this) {
+                saida.flush();
+                ultimoRegistro = registrosEscritos;
+                canalGravado = canal;
+            }
+            // o fsync é feito fora do lock do diário, para que outras threads
+            // continuem registrando operações enquanto o disco trabalha
+            canalGravado.force(false);
+            registrosGravados = ultimoRegistro;
+        }
+    }
+
+    /**
+     * Retorna a quantidade de registros escritos no segmento atual (usado para
+     * decidir quando gerar um novo instantâneo).
+     *
+     * @return Quantidade de registros no segmento atual
+     */
+    public long getRegistrosNoSegmento() {
+        return registrosNoSegmento;
+    }
+
+    /**
+     * Grava em disco o segmento atual e passa a registrar as operações em um
+     * novo segmento.
+     *
+     * @return Número do novo segmento
+     * @throws IOException Se houver erro na gravação
+     */
+    public long rotacionar() throws IOException {
+        synchronized (lockGravacao) {
+            synchronized (this) {
+                saida.flush();
+                canal.force(false);
+                saida.close();
+                registrosGravados = registrosEscritos;
+                numeroSegmentoAtual++;
+                abrirSegmento(numeroSegmentoAtual);
+                registrosNoSegmento = 0;
+                return numeroSegmentoAtual;
+            }
+        }
+    }
+
+    /**
+     * Apaga os segmentos anteriores ao de número passado (que já estão em um
+     * instantâneo gravado).
+     *
+     * @param numero Número do primeiro segmento a ser mantido
+     * @throws IOException Se houver erro ao apagar os arquivos
+     */
+    public void removerSegmentosAnteriores(long numero) throws IOException {
+        for (Path segmento : listarSegmentos()) {
+            if (numeroSegmento(segmento) < numero) {
+                Files.deleteIfExists(segmento);
+            }
+        }
+    }
+
+    /**
+     * Grava os registros pendentes e fecha o diário.
+     *
+     * @throws IOException Se houver erro na gravação
+     */
+    public void fechar() throws IOException {
+        synchronized (lockGravacao) {
+            synchronized (this) {
+                saida.flush();
+                canal.force(false);
+                saida.close();
+                registrosGravados = registrosEscritos;
+            }
+        }
+    }
+
+    /**
+     * Inicia a montagem de um novo registro no buffer.
+     *
+     * @param tipo Tipo do registro
+     */
+    private void iniciarRegistro(byte tipo) throws IOException {
+        bufferRegistro.reset();
+        dadosRegistro.writeByte(tipo);
+    }
+
+    /**
+     * Escreve o registro montado no buffer (com tamanho e CRC) na saída do
+     * segmento atual.
+     *
+     * @return Número do registro
+     */
+    private long concluirRegistro() throws IOException {
+        dadosRegistro.flush();
+        byte[] dados = bufferRegistro.toByteArray();
+        crc.reset();
+        crc.update(dados, 0, dados.length);
+        dadosSaida.writeInt(dados.length);
+        dadosSaida.writeInt((int) crc.getValue());
+        dadosSaida.write(dados);
+        registrosEscritos++;
+        registrosNoSegmento++;
+        return registrosEscritos;
+    }
+
+    /**
+     * Lê todos os registros válidos de um segmento e os reproduz. Se houver
+     * um registro incompleto ou corrompido, o segmento é truncado nesse ponto.
+     *
+     * O arquivo é lido em blocos para um ByteBuffer e os registros são
+     * interpretados diretamente do buffer, sem criar objetos por registro
+     * (além dos textos e fotos em si).
+     *
+     * @param segmento   Arquivo do segmento
+     * @param reprodutor Objeto que reproduz as operações
+     */
+    private void reproduzirSegmento(Path segmento, Reprodutor reprodutor) throws IOException {
+        long posicaoValida = 0;
+        long tamanhoArquivo;
+        try (FileChannel canalSegmento = FileChannel.open(segmento, StandardOpenOption.READ)) {
+            tamanhoArquivo = canalSegmento.size();
+            ByteBuffer buffer = ByteBuffer.allocate(TAMANHO_BUFFER);
+            buffer.flip();
+            while (true) {
+                // garante que o cabeçalho do registro está no buffer
+                if (!lerMais(canalSegmento, buffer, 8)) {
+                    break;
+                }
+                int tamanho = buffer.getInt(buffer.position());
+                int crcEsperado = buffer.getInt(buffer.position() + 4);
+                // um tamanho que não cabe no resto do arquivo é lixo (ex.: o
+                // cabeçalho foi gravado pela metade) e marca o fim do diário
+                // válido, assim como um CRC errado; alocar o buffer para ele
+                // poderia esgotar a memória
+                if (tamanho <= 0 || tamanho > tamanhoArquivo - posicaoValida - 8) {
+                    break;
+                }
+                buffer = ampliarSeNecessario(buffer, 8 + tamanho);
+                if (!lerMais(canalSegmento, buffer, 8 + tamanho)) {
+                    break;
+                }
+                buffer.position(buffer.position() + 8);
+                ByteBuffer dados = buffer.slice();
+                dados.limit(tamanho);
+                crc.reset();
+                crc.update(dados.duplicate());
+                if ((int) crc.getValue() != crcEsperado) {
+                    break;
+                }
+                reproduzirRegistro(dados, reprodutor);
+                buffer.position(buffer.position() + tamanho);
+                posicaoValida += 8 + tamanho;
+            }
+        }
+        if (posicaoValida < tamanhoArquivo) {
+            try (FileChannel canalSegmento = FileChannel.open(segmento, StandardOpenOption.WRITE)) {
+                canalSegmento.truncate(posicaoValida);
+            }
+        }
+    }
+
+    /**
+     * Retorna um buffer com capacidade para a quantidade de bytes passada,
+     * copiando os bytes ainda não lidos (o mesmo buffer, se já couber).
+     */
+    private static ByteBuffer ampliarSeNecessario(ByteBuffer buffer, int quantidade) {
+        if (buffer.capacity() >= quantidade) {
+            return buffer;
+        }
+        ByteBuffer novoBuffer = ByteBuffer.allocate(quantidade);
+        novoBuffer.put(buffer);
+        novoBuffer.flip();
+        return novoBuffer;
+    }
+
+    /**
+     * Lê do arquivo até que o buffer tenha a quantidade de bytes passada
+     * disponível para leitura.
+     *
+     * @return false se o arquivo terminou antes
+     */
+    private static boolean lerMais(FileChannel canal, ByteBuffer buffer, int quantidade) throws IOException {
+        if (buffer.remaining() >= quantidade) {
+            return true;
+        }
+        buffer.compact();
+        while (buffer.position() < quantidade) {
+            if (canal.read(buffer) < 0) {
+                buffer.flip();
+                return false;
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+
+    /**
+     * Interpreta um registro lido do diário e chama o método correspondente do
+     * reprodutor.
+     *
+     * @param registro   Dados do registro
+     * @param reprodutor Objeto que reproduz as operações
+     */
+    private static void reproduzirRegistro(ByteBuffer registro, Reprodutor reprodutor) throws IOException {
+        byte tipo = registro.get();
+        switch (tipo) {
+            case POSTAGEM_TEXTO: {
+                int id = registro.getInt();
+                long horaPostagem = registro.getLong();
+                String autor = lerTexto(registro);
+                String texto = lerTexto(registro);
+                reprodutor.postagemTexto(id, horaPostagem, autor, texto);
+                break;
+            }
+            case POSTAGEM_FOTO: {
+                int id = registro.getInt();
+                long horaPostagem = registro.getLong();
+                String autor = lerTexto(registro);
+                String legenda = lerTexto(registro);
+                byte[] bytesDaFoto = new byte[registro.getInt()];
+                registro.get(bytesDaFoto);
+                reprodutor.postagemFoto(id, horaPostagem, autor, bytesDaFoto, legenda);
+                break;
+            }
+            case POSTAGEM_FOTO_REFERENCIA: {
+                int id = registro.getInt();
+                long horaPostagem = registro.getLong();
+                String autor = lerTexto(registro);
+                String legenda = lerTexto(registro);
+                ReferenciaFoto referenciaFoto = new ReferenciaFoto(registro.getInt(), registro.getInt(),
+                        registro.getInt());
+                reprodutor.postagemFoto(id, horaPostagem, autor, referenciaFoto, legenda);
+                break;
+            }
+            case CURTIDA:
+                reprodutor.curtida(registro.getInt());
+                break;
+            case COMENTARIO: {
+                int idMensagem = registro.getInt();
+                reprodutor.comentario(idMensagem, lerTexto(registro));
+                break;
+            }
+            case LOTE: {
+                int quantidade = registro.getInt();
+                for (int i = 0; i < quantidade; i++) {
+                    reproduzirRegistro(registro, reprodutor);
+                }
+                break;
+            }
+            default:
+                throw new IOException("Tipo de registro desconhecido no diário: " + tipo);
+        }
+    }
+
+    /**
+     * Abre um segmento para acrescentar registros no final.
+     *
+     * @param numero Número do segmento
+     */
+    private void abrirSegmento(long numero) throws IOException {
+        canal = FileChannel.open(caminhoSegmento(numero), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        saida = new BufferedOutputStream(Channels.newOutputStream(canal), TAMANHO_BUFFER);
+        dadosSaida = new DataOutputStream(saida);
+    }
+
+    /**
+     * Lista os segmentos do diário existentes no diretório, em ordem.
+     *
+     * @return Lista de arquivos de segmento
+     */
+    private List<Path> listarSegmentos() throws IOException {
+        List<Path> segmentos = new ArrayList<>();
+        try (DirectoryStream<Path> arquivos = Files.newDirectoryStream(diretorio,
+                PREFIXO_SEGMENTO + "*" + EXTENSAO_SEGMENTO)) {
+            for (Path arquivo : arquivos) {
+                segmentos.add(arquivo);
+            }
+        }
+        segmentos.sort(Comparator.comparingLong(DiarioFeed::numeroSegmento));
+        return segmentos;
+    }
+
+    /**
+     * Retorna o número de um segmento a partir do nome do arquivo.
+     *
+     * @param segmento Arquivo do segmento
+     * @return Número do segmento
+     */
+    private static long numeroSegmento(Path segmento) {
+        String nome = segmento.getFileName().toString();
+        return Long.parseLong(nome.substring(PREFIXO_SEGMENTO.length(), nome.length() - EXTENSAO_SEGMENTO.length()));
+    }
+
+    /**
+     * Retorna o caminho do segmento de número passado.
+     *
+     * @param numero Número do segmento
+     * @return Caminho do arquivo
+     */
+    private Path caminhoSegmento(long numero) {
+        return caminhoSegmento(diretorio, numero);
+    }
+
+    /**
+     * Retorna o caminho do segmento de número passado no diretório passado.
+     */
+    private static Path caminhoSegmento(Path diretorio, long numero) {
+        return diretorio.resolve(String.format("%s%06d%s", PREFIXO_SEGMENTO, numero, EXTENSAO_SEGMENTO));
+    }
+
+    /**
+     * Retorna se o diário do diretório passado ainda tem o segmento de número
+     * passado (ou seja, se ele não foi apagado depois de um instantâneo).
+     *
+     * @param diretorio Diretório de dados
+     * @param numero    Número do segmento
+     * @return true se o arquivo do segmento existe
+     */
+    static boolean existeSegmento(Path diretorio, long numero) {
+        return Files.exists(caminhoSegmento(diretorio, numero));
+    }
+
+    /**
+     * Escreve um texto (tamanho em bytes seguido dos bytes em UTF-8). Não usa
+     * writeUTF porque ele é limitado a 64 KB.
+     */
+    static void escreverTexto(DataOutputStream saida, String texto) throws IOException {
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        saida.writeInt(bytes.length);
+        saida.write(bytes);
+    }
+
+    /**
+     * Escreve a referência de uma foto no repositório de fotos.
+     */
+    static void escreverReferencia(DataOutputStream saida, ReferenciaFoto referencia) throws IOException {
+        saida.writeInt(referencia.getSegmento());
+        saida.writeInt(referencia.getPosicao());
+        saida.writeInt(referencia.getTamanho());
+    }
+
+    /**
+     * Lê um texto escrito por escreverTexto.
+     */
+    static String lerTexto(ByteBuffer entrada) {
+        int tamanho = entrada.getInt();
+        String texto = new String(entrada.array(), entrada.arrayOffset() + entrada.position(), tamanho,
+                StandardCharsets.UTF_8);
+        entrada.position(entrada.position() + tamanho);
+        return texto;
+    }
+}
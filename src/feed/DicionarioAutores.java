@@ -0,0 +1,143 @@
+package feed;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dicionário que associa cada nome de autor a um número inteiro pequeno
+ * (0, 1, 2, ...), na ordem em que os autores aparecem.
+ *
+ * Cada Feed tem o seu dicionário, com apenas os autores das suas mensagens
+ * (a numeração de um Feed não interfere na de outro). As mensagens guardam o
+ * número do autor e a instância do nome guardada aqui, então o nome de cada
+ * autor fica uma única vez na memória (mesmo que ele tenha milhões de
+ * mensagens, ou que cada mensagem lida do diário traga uma cópia do nome), e
+ * os filtros por autor comparam números em vez de Strings. Quando o último
+ * autor de um número deixa de ter mensagens no Feed, o número é liberado e
+ * reaproveitado pelo próximo autor novo, então o dicionário não cresce com os
+ * autores que já saíram do Feed.
+ *
+ * O dicionário pode ser usado por várias threads ao mesmo tempo: a busca de
+ * um nome pelo número não usa lock.
+ */
+class DicionarioAutores {
+    // Capacidade inicial do vetor de nomes
+    private static final int CAPACIDADE_INICIAL = 64;
+
+    // Número de cada autor pelo nome
+    private ConcurrentHashMap<String, Integer> numeros;
+    // Nome de cada autor pelo número (apenas as primeiras "tamanho" posições
+    // são válidas; as dos números liberados ficam nulas)
+    private volatile String[] nomes;
+    // Quantidade de números já usados (incluindo os liberados)
+    private int tamanho;
+    // Números liberados, reaproveitados pelos próximos autores (apenas as
+    // primeiras "nroLivres" posições são válidas)
+    private int[] livres;
+    // Quantidade de números liberados
+    private int nroLivres;
+
+    /**
+     * Cria o dicionário vazio.
+     */
+    public DicionarioAutores() {
+        numeros = new ConcurrentHashMap<>();
+        nomes = new String[CAPACIDADE_INICIAL];
+        tamanho = 0;
+        livres = new int[0];
+        nroLivres = 0;
+    }
+
+    /**
+     * Retorna o número do autor, acrescentando-o no dicionário se ele ainda
+     * não estiver nele.
+     *
+     * @param nome Nome do autor
+     * @return Número do autor
+     */
+    public int obterNumero(String nome) {
+        Integer numero = numeros.get(nome);
+        if (numero != null) {
+            return numero;
+        }
+        return adicionar(nome);
+    }
+
+    /**
+     * Retorna o número do autor, ou -1 se ele não estiver no dicionário.
+     *
+     * @param nome Nome do autor
+     * @return Número do autor ou -1
+     */
+    public int buscarNumero(String nome) {
+        Integer numero = numeros.get(nome);
+        return (numero == null) ? -1 : numero;
+    }
+
+    /**
+     * Retorna o nome do autor de número passado.
+     *
+     * @param numero Número do autor
+     * @return Nome do autor
+     */
+    public String getNome(int numero) {
+        return nomes[numero];
+    }
+
+    /**
+     * Retorna a quantidade de autores no dicionário.
+     *
+     * @return Quantidade de autores
+     */
+    public synchronized int tamanho() {
+        return tamanho - nroLivres;
+    }
+
+    /**
+     * Retira um autor do dicionário (quando ele não tem mais mensagens no
+     * Feed). O seu número passa a ser usado pelo próximo autor acrescentado.
+     *
+     * @param numero Número do autor
+     */
+    public synchronized void liberar(int numero) {
+        String nome = nomes[numero];
+        if (nome == null) {
+            return;
+        }
+        numeros.remove(nome);
+        nomes[numero] = null;
+        if (nroLivres == livres.length) {
+            livres = Arrays.copyOf(livres, Math.max(CAPACIDADE_INICIAL, nroLivres * 2));
+        }
+        livres[nroLivres++] = numero;
+    }
+
+    /**
+     * Acrescenta um autor no dicionário (se outra thread não o tiver
+     * acrescentado antes).
+     *
+     * @return Número do autor
+     */
+    private synchronized int adicionar(String nome) {
+        Integer numero = numeros.get(nome);
+        if (numero != null) {
+            return numero;
+        }
+        String[] atuais = nomes;
+        int novo;
+        if (nroLivres > 0) {
+            novo = livres[--nroLivres];
+        } else {
+            if (tamanho == atuais.length) {
+                atuais = Arrays.copyOf(atuais, tamanho * 2);
+            }
+            novo = tamanho++;
+        }
+        atuais[novo] = nome;
+        // a atribuição ao campo volatile publica o nome para quem o ler pelo
+        // número sem lock
+        nomes = atuais;
+        numeros.put(nome, novo);
+        return novo;
+    }
+}
@@ -0,0 +1,97 @@
+package feed;
+
+/**
+ * Estatísticas de deduplicação das fotos do Feed: quantas fotos diferentes
+ * estão guardadas, quantas mensagens as referenciam e quantos bytes deixaram
+ * de ser gravados porque fotos idênticas são guardadas uma única vez.
+ */
+public class EstatisticasFotos {
+    // Quantidade de fotos diferentes guardadas
+    private final long fotosArmazenadas;
+    // Quantidade de mensagens que referenciam fotos
+    private final long referencias;
+    // Bytes das fotos guardadas (cada foto contada uma vez)
+    private final long bytesArmazenados;
+    // Bytes das fotos referenciadas (cada foto contada uma vez por mensagem)
+    private final long bytesReferenciados;
+
+    /**
+     * Cria as estatísticas a partir dos totais do repositório de fotos.
+     *
+     * @param fotosArmazenadas   Quantidade de fotos diferentes guardadas
+     * @param referencias        Quantidade de mensagens que referenciam fotos
+     * @param bytesArmazenados   Bytes das fotos guardadas
+     * @param bytesReferenciados Bytes das fotos referenciadas pelas mensagens
+     */
+    EstatisticasFotos(long fotosArmazenadas, long referencias, long bytesArmazenados, long bytesReferenciados) {
+        this.fotosArmazenadas = fotosArmazenadas;
+        this.referencias = referencias;
+        this.bytesArmazenados = bytesArmazenados;
+        this.bytesReferenciados = bytesReferenciados;
+    }
+
+    /**
+     * Retorna a quantidade de fotos diferentes guardadas
+     *
+     * @return Quantidade de fotos guardadas
+     */
+    public long getFotosArmazenadas() {
+        return fotosArmazenadas;
+    }
+
+    /**
+     * Retorna a quantidade de mensagens que referenciam fotos
+     *
+     * @return Quantidade de referências
+     */
+    public long getReferencias() {
+        return referencias;
+    }
+
+    /**
+     * Retorna os bytes das fotos guardadas (cada foto contada uma vez)
+     *
+     * @return Bytes guardados
+     */
+    public long getBytesArmazenados() {
+        return bytesArmazenados;
+    }
+
+    /**
+     * Retorna os bytes das fotos referenciadas pelas mensagens (o que seria
+     * guardado sem a deduplicação)
+     *
+     * @return Bytes referenciados
+     */
+    public long getBytesReferenciados() {
+        return bytesReferenciados;
+    }
+
+    /**
+     * Retorna quantos bytes deixaram de ser guardados pela deduplicação
+     *
+     * @return Bytes economizados
+     */
+    public long getBytesEconomizados() {
+        return Math.max(0, bytesReferenciados - bytesArmazenados);
+    }
+
+    /**
+     * Retorna a taxa de deduplicação: bytes referenciados dividido pelos bytes
+     * guardados (1.0 quando não há fotos repetidas).
+     *
+     * @return Taxa de deduplicação
+     */
+    public double getTaxaDeduplicacao() {
+        if (bytesArmazenados == 0) {
+            return 1.0;
+        }
+        return (double) bytesReferenciados / bytesArmazenados;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d fotos guardadas, %d referências, %d bytes economizados (taxa %.2f)",
+                fotosArmazenadas, referencias, getBytesEconomizados(), getTaxaDeduplicacao());
+    }
+}
@@ -0,0 +1,97 @@
+package feed;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Estatísticas dos tempos de uma operação do Feed em um dado momento
+ * (quantidade de execuções, média, percentis e máximo, em microssegundos).
+ *
+ * Os objetos dessa classe não mudam depois de criados. São exibidos no
+ * painel de diagnóstico da tela e publicados via JMX (o JMX converte os
+ * getters em atributos de um CompositeData).
+ */
+public class EstatisticasOperacao {
+    // Nome da operação
+    private final String nome;
+    // Quantidade de execuções medidas
+    private final long contagem;
+    // Tempo médio (em microssegundos)
+    private final double mediaMicros;
+    // Percentis 50, 90 e 99 (em microssegundos)
+    private final double p50Micros;
+    private final double p90Micros;
+    private final double p99Micros;
+    // Tempo máximo (em microssegundos)
+    private final double maximoMicros;
+
+    /**
+     * Cria as estatísticas de uma operação.
+     *
+     * @param nome         Nome da operação
+     * @param contagem     Quantidade de execuções medidas
+     * @param mediaMicros  Tempo médio
+     * @param p50Micros    Percentil 50
+     * @param p90Micros    Percentil 90
+     * @param p99Micros    Percentil 99
+     * @param maximoMicros Tempo máximo
+     */
+    @ConstructorProperties({ "nome", "contagem", "mediaMicros", "p50Micros", "p90Micros", "p99Micros",
+            "maximoMicros" })
+    public EstatisticasOperacao(String nome, long contagem, double mediaMicros, double p50Micros, double p90Micros,
+            double p99Micros, double maximoMicros) {
+        this.nome = nome;
+        this.contagem = contagem;
+        this.mediaMicros = mediaMicros;
+        this.p50Micros = p50Micros;
+        this.p90Micros = p90Micros;
+        this.p99Micros = p99Micros;
+        this.maximoMicros = maximoMicros;
+    }
+
+    /**
+     * Calcula as estatísticas atuais de um histograma.
+     *
+     * @param nome       Nome da operação
+     * @param histograma Histograma dos tempos da operação
+     * @return Estatísticas da operação
+     */
+    static EstatisticasOperacao de(String nome, HistogramaLatencia histograma) {
+        return new EstatisticasOperacao(nome, histograma.getContagem(), histograma.getMediaNanos() / 1000.0,
+                histograma.getPercentilNanos(50) / 1000.0, histograma.getPercentilNanos(90) / 1000.0,
+                histograma.getPercentilNanos(99) / 1000.0, histograma.getMaximoNanos() / 1000.0);
+    }
+
+    public String getNome() {
+        return nome;
+    }
+
+    public long getContagem() {
+        return contagem;
+    }
+
+    public double getMediaMicros() {
+        return mediaMicros;
+    }
+
+    public double getP50Micros() {
+        return p50Micros;
+    }
+
+    public double getP90Micros() {
+        return p90Micros;
+    }
+
+    public double getP99Micros() {
+        return p99Micros;
+    }
+
+    public double getMaximoMicros() {
+        return maximoMicros;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d execuções, média %.1f µs, p50 %.1f µs, p90 %.1f µs, p99 %.1f µs, "
+                + "máx %.1f µs", nome, contagem, mediaMicros, p50Micros, p90Micros, p99Micros, maximoMicros);
+    }
+}
@@ -1,12 +1,44 @@
 package feed;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Classe que define o Feed de Noticias da Rede Social.
  * Possui uma lista de mensagens que pode ser de texto ou com foto e metodos
  * para postar as mensagens e getTextoExibicao todo o Feed.
  * 
+ * O Feed pode ser usado por várias threads ao mesmo tempo: as postagens são
+ * feitas com exclusividade (lock de escrita) e as leituras, curtidas e
+ * comentários compartilham o lock de leitura, já que curtidas e comentários
+ * só alteram a própria mensagem, que é segura para acesso concorrente.
+ * 
+ * O Feed pode ser apenas em memória ou persistente: no segundo caso cada
+ * operação é registrada em um diário em disco antes de o método retornar, e
+ * o Feed é reconstruído a partir do diário quando é criado novamente. Para
+ * que a reconstrução não fique cada vez mais lenta, periodicamente é gerado
+ * (em segundo plano) um instantâneo do Feed, e a parte do diário anterior a
+ * ele é apagada.
+ * 
+ * Uma política de retenção pode limitar quantas mensagens ficam em memória:
+ * as mais antigas são descartadas (de todas as listas e índices) e, se o Feed
+ * for persistente, guardadas em um arquivo de mensagens em disco.
+ * 
  * Esse eh um exemplo do livro: Programacao Orientada a Objetos com Java - uma
  * introducao pratica utilizando BlueJ.
  * 
@@ -15,16 +47,355 @@ import java.util.*;
  */
 public class FeedNoticias {
     // lista de mensagens publicadas no Feed
-    private List<Mensagem> mensagens;
-    // lista de autores de mensagens no Feed
-    private List<String> autores;
+    private ListaMensagens mensagens;
+    // índice das mensagens pelo identificador (busca em tempo constante)
+    private IndiceMensagens indiceMensagens;
+    // mensagens de cada autor, na ordem em que foram postadas, na posição do
+    // número do autor no dicionário de autores (null para os autores sem
+    // mensagens neste Feed)
+    private List<ListaMensagens> mensagensPorAutor;
+    // autores com mensagens no Feed, na ordem em que apareceram
+    private Set<String> autores;
+    // número de cada autor do Feed (as mensagens guardam o número, e os
+    // filtros por autor comparam números)
+    private DicionarioAutores dicionarioAutores;
+    // controla o acesso concorrente às listas e índices do Feed
+    private ReadWriteLock lock;
+    // objetos que querem ser avisados das alterações no Feed
+    private List<OuvinteFeed> ouvintes;
+    // ranking das mensagens mais curtidas e comentadas
+    private RankingMensagens ranking;
+    // índice de busca das palavras das mensagens e comentários
+    private IndiceTextual indiceTextual;
+    // tempos das operações do Feed
+    private MetricasFeed metricas;
+    // limites das mensagens mantidas em memória
+    private PoliticaRetencao politicaRetencao;
+    // thread que aplica periodicamente a idade máxima da política de
+    // retenção (null se a verificação não foi iniciada)
+    private ScheduledExecutorService verificadorRetencao;
+    // tamanho total estimado (em bytes) das mensagens em memória (atômico
+    // porque os comentários são feitos com o lock de leitura)
+    private AtomicLong bytesRetidos;
+    // quantidade padrão de operações registradas no diário entre dois
+    // instantâneos
+    public static final int OPERACOES_ENTRE_INSTANTANEOS = 100_000;
+    // intervalo máximo (em milissegundos) entre duas verificações da idade
+    // das mensagens
+    private static final long INTERVALO_VERIFICACAO_RETENCAO = 60_000;
+
+    // diário onde as operações são registradas (null se o Feed é apenas em
+    // memória)
+    private DiarioFeed diario;
+    // diretório onde ficam o diário e os instantâneos
+    private Path diretorioDados;
+    // quantidade de operações registradas no diário entre dois instantâneos
+    private int operacoesEntreInstantaneos;
+    // thread que grava os instantâneos em segundo plano
+    private ExecutorService gravadorInstantaneos;
+    // indica se um instantâneo está sendo gravado
+    private AtomicBoolean gerandoInstantaneo;
+    // número do instantâneo anterior ao mais recente gravado (ou carregado):
+    // ele e os segmentos do diário a partir dele são mantidos, para o caso de
+    // o mais recente estar corrompido
+    private long instantaneoAnterior;
+    // repositório onde ficam os bytes das fotos (criado na primeira foto se
+    // o Feed é apenas em memória)
+    private volatile RepositorioFotos repositorioFotos;
+    // arquivo das mensagens descartadas pela política de retenção (null se o
+    // Feed é apenas em memória)
+    private ArquivoMensagens arquivoMensagens;
+
+    /**
+     * Interface para as operações de registro no diário (usada para tratar
+     * os erros de escrita em um só lugar).
+     */
+    private interface RegistroDiario {
+        long registrar(DiarioFeed diario) throws IOException;
+    }
+
+    /**
+     * Reproduz as operações do diário ao abrir o Feed. Como em um lote, os
+     * textos das postagens e comentários são indexados para a busca todos de
+     * uma vez e o ranking é atualizado uma única vez por mensagem, em
+     * concluir, em vez de a cada operação.
+     */
+    private final class ReproducaoDiario implements DiarioFeed.Reprodutor {
+        // ids das mensagens e textos (postagens e comentários) a serem
+        // indexados para a busca
+        private int[] idsTextos = new int[1024];
+        private String[] textos = new String[1024];
+        private int nroTextos = 0;
+
+        @Override
+        public void postagemTexto(int id, long horaPostagem, String autor, String texto) {
+            incluirReproduzida(new MensagemTexto(id, autor, horaPostagem, texto));
+        }
+
+        @Override
+        public void postagemFoto(int id, long horaPostagem, String autor, byte[] bytesDaFoto, String legenda) {
+            ReferenciaFoto referenciaFoto;
+            try {
+                referenciaFoto = repositorioFotos.armazenar(bytesDaFoto);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Erro ao armazenar a foto no repositório do Feed", e);
+            }
+            incluirReproduzida(new MensagemFoto(id, autor, horaPostagem, referenciaFoto, legenda));
+        }
+
+        @Override
+        public void postagemFoto(int id, long horaPostagem, String autor, ReferenciaFoto referenciaFoto,
+                String legenda) {
+            incluirReproduzida(new MensagemFoto(id, autor, horaPostagem, referenciaFoto, legenda));
+        }
+
+        @Override
+        public void curtida(int idMensagem) {
+            Mensagem mensagem = indiceMensagens.buscar(idMensagem);
+            if (mensagem != null) {
+                mensagem.curtir();
+            }
+        }
+
+        @Override
+        public void comentario(int idMensagem, String comentario) {
+            Mensagem mensagem = indiceMensagens.buscar(idMensagem);
+            if (mensagem != null) {
+                mensagem.comentar(comentario);
+                bytesRetidos.addAndGet(Mensagem.tamanhoEstimadoComentario(comentario));
+                acrescentarTexto(idMensagem, comentario);
+            }
+        }
+
+        /**
+         * Inclui uma mensagem postada no diário, deixando o seu texto para ser
+         * indexado no final.
+         */
+        private void incluirReproduzida(Mensagem mensagem) {
+            incluirMensagem(mensagem);
+            acrescentarTexto(mensagem.getId(), mensagem.getTextoConteudo());
+        }
+
+        /**
+         * Guarda um texto a ser indexado para a mensagem de id passado.
+         */
+        private void acrescentarTexto(int idMensagem, String texto) {
+            if (nroTextos == textos.length) {
+                idsTextos = Arrays.copyOf(idsTextos, nroTextos * 2);
+                textos = Arrays.copyOf(textos, nroTextos * 2);
+            }
+            idsTextos[nroTextos] = idMensagem;
+            textos[nroTextos++] = texto;
+        }
+
+        /**
+         * Indexa os textos guardados e coloca no ranking as mensagens com
+         * curtidas ou comentários (a atualização não faz nada para as que já
+         * estão nele com a pontuação atual).
+         */
+        private void concluir() {
+            indiceTextual.indexar(idsTextos, textos, nroTextos);
+            idsTextos = null;
+            textos = null;
+            for (Mensagem mensagem : mensagens) {
+                if (RankingMensagens.pontuacao(mensagem) > 0) {
+                    ranking.atualizar(mensagem);
+                }
+            }
+        }
+    }
 
     /**
      * Cria o Feed de Noticias (apenas inicializa a lista de mensagens)
      */
     public FeedNoticias() {
-        mensagens = new ArrayList<>();
-        autores = new ArrayList<>();
+        this(PoliticaRetencao.SEM_LIMITES);
+    }
+
+    /**
+     * Cria o Feed de Noticias apenas em memória, com a política de retenção
+     * passada (as mensagens descartadas se perdem).
+     * 
+     * @param politicaRetencao Limites das mensagens mantidas em memória
+     */
+    public FeedNoticias(PoliticaRetencao politicaRetencao) {
+        mensagens = new ListaMensagens();
+        indiceMensagens = new IndiceMensagens();
+        mensagensPorAutor = new ArrayList<>();
+        autores = new LinkedHashSet<>();
+        dicionarioAutores = new DicionarioAutores();
+        lock = new ReentrantReadWriteLock();
+        ouvintes = new CopyOnWriteArrayList<>();
+        ranking = new RankingMensagens();
+        indiceTextual = new IndiceTextual();
+        metricas = new MetricasFeed();
+        this.politicaRetencao = politicaRetencao;
+        verificadorRetencao = null;
+        bytesRetidos = new AtomicLong();
+        diario = null;
+        diretorioDados = null;
+        gravadorInstantaneos = null;
+        gerandoInstantaneo = new AtomicBoolean(false);
+        repositorioFotos = null;
+        arquivoMensagens = null;
+    }
+
+    /**
+     * Cria um Feed de Noticias persistente, cujas operações são registradas no
+     * diretório passado. Se o diretório já tiver dados, o Feed é reconstruído
+     * (mensagens, curtidas, comentários e ids) a partir do instantâneo mais
+     * recente e das operações do diário posteriores a ele.
+     * 
+     * @param diretorioDados Diretório onde o diário é mantido
+     * @throws IOException Se houver erro na leitura ou criação do diário
+     */
+    public FeedNoticias(Path diretorioDados) throws IOException {
+        this(diretorioDados, OPERACOES_ENTRE_INSTANTANEOS);
+    }
+
+    /**
+     * Cria um Feed de Noticias persistente, definindo a cada quantas operações
+     * um novo instantâneo é gerado.
+     * 
+     * @param diretorioDados             Diretório onde o diário é mantido
+     * @param operacoesEntreInstantaneos Operações registradas entre dois
+     *                                   instantâneos
+     * @throws IOException Se houver erro na leitura ou criação do diário
+     */
+    public FeedNoticias(Path diretorioDados, int operacoesEntreInstantaneos) throws IOException {
+        this(diretorioDados, operacoesEntreInstantaneos, PoliticaRetencao.SEM_LIMITES);
+    }
+
+    /**
+     * Cria um Feed de Noticias persistente com a política de retenção
+     * passada. As mensagens descartadas da memória são guardadas no arquivo
+     * de mensagens do diretório, e não são carregadas ao abrir o Feed.
+     * 
+     * @param diretorioDados             Diretório onde o diário é mantido
+     * @param operacoesEntreInstantaneos Operações registradas entre dois
+     *                                   instantâneos
+     * @param politicaRetencao           Limites das mensagens mantidas em
+     *                                   memória
+     * @throws IOException Se houver erro na leitura ou criação do diário
+     */
+    public FeedNoticias(Path diretorioDados, int operacoesEntreInstantaneos, PoliticaRetencao politicaRetencao)
+            throws IOException {
+        this(politicaRetencao);
+        this.diretorioDados = diretorioDados;
+        this.operacoesEntreInstantaneos = operacoesEntreInstantaneos;
+        gravadorInstantaneos = Executors.newSingleThreadExecutor(tarefa -> {
+            Thread thread = new Thread(tarefa, "gravador-instantaneos-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Files.createDirectories(diretorioDados);
+        repositorioFotos = new RepositorioFotos(diretorioDados.resolve("fotos"), false);
+        arquivoMensagens = new ArquivoMensagens(diretorioDados);
+        List<Mensagem> mensagensInstantaneo = new ArrayList<>();
+        long primeiroSegmento = InstantaneoFeed.carregarMaisRecente(diretorioDados, repositorioFotos,
+                mensagensInstantaneo);
+        instantaneoAnterior = primeiroSegmento;
+        // a política de retenção só é aplicada depois de o diário inteiro ser
+        // reproduzido: as curtidas e comentários de uma mensagem vêm depois da
+        // sua postagem, e se ela fosse descartada (e arquivada) antes, eles
+        // seriam perdidos
+        for (Mensagem mensagem : mensagensInstantaneo) {
+            adicionarMensagem(mensagem);
+        }
+        ReproducaoDiario reproducao = new ReproducaoDiario();
+        diario = new DiarioFeed(diretorioDados, primeiroSegmento, reproducao);
+        reproducao.concluir();
+        descartarExcedentes(new ArrayList<>());
+    }
+
+    /**
+     * Fecha o Feed, garantindo que todas as operações estejam gravadas no
+     * diário (não faz nada se o Feed é apenas em memória).
+     * 
+     * @throws IOException Se houver erro na gravação do diário
+     */
+    public void fechar() throws IOException {
+        if (verificadorRetencao != null) {
+            verificadorRetencao.shutdownNow();
+        }
+        if (diario != null) {
+            // espera o instantâneo que estiver sendo gravado
+            gravadorInstantaneos.shutdown();
+            try {
+                gravadorInstantaneos.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            diario.fechar();
+            arquivoMensagens.fechar();
+        }
+    }
+
+    /**
+     * Gera um instantâneo do Feed (se o Feed for persistente e se nenhum outro
+     * estiver sendo gerado). O estado é capturado rapidamente com o Feed
+     * bloqueado, e a gravação em disco é feita em segundo plano; depois dela
+     * os segmentos antigos do diário são apagados.
+     * 
+     * @return Tarefa de gravação do instantâneo (null se não foi gerado)
+     */
+    public Future<?> gerarInstantaneo() {
+        if (diario == null || !gerandoInstantaneo.compareAndSet(false, true)) {
+            return null;
+        }
+        InstantaneoFeed instantaneo;
+        lock.writeLock().lock();
+        try {
+            // com o lock de escrita nenhuma operação está em andamento, então o
+            // estado capturado corresponde exatamente ao fim do segmento atual
+            long novoSegmento = diario.rotacionar();
+            instantaneo = new InstantaneoFeed(mensagens, novoSegmento);
+        } catch (IOException e) {
+            gerandoInstantaneo.set(false);
+            throw new UncheckedIOException("Erro ao iniciar um novo segmento do diário do Feed", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return gravadorInstantaneos.submit(() -> {
+            try {
+                instantaneo.gravar(diretorioDados);
+                // as mensagens descartadas que estavam apenas nos segmentos
+                // antigos precisam estar no arquivo antes de eles serem apagados
+                arquivoMensagens.sincronizar();
+                // o instantâneo anterior continua reproduzível: se o novo se
+                // corromper no disco, o Feed ainda abre a partir dele
+                diario.removerSegmentosAnteriores(instantaneoAnterior);
+                InstantaneoFeed.removerAnteriores(diretorioDados, instantaneoAnterior);
+                instantaneoAnterior = instantaneo.getNumeroSegmento();
+            } catch (IOException e) {
+                // o diário continua completo, então nada é perdido: o próximo
+                // instantâneo tenta novamente
+                e.printStackTrace();
+            } finally {
+                gerandoInstantaneo.set(false);
+            }
+        });
+    }
+
+    /**
+     * Gera um instantâneo se já foram registradas operações suficientes no
+     * diário desde o último.
+     */
+    private void verificarInstantaneo() {
+        if (diario != null && diario.getRegistrosNoSegmento() >= operacoesEntreInstantaneos) {
+            gerarInstantaneo();
+        }
+    }
+
+    /**
+     * Inscreve um objeto para ser avisado das alterações no Feed (postagens,
+     * curtidas e comentários).
+     * 
+     * @param ouvinte Objeto a ser avisado
+     */
+    public void adicionarOuvinte(OuvinteFeed ouvinte) {
+        ouvintes.add(ouvinte);
     }
 
     /**
@@ -33,23 +404,423 @@ public class FeedNoticias {
      * 
      * @param autor Nome do autor da mensagem.
      * @param texto Texto da mensagem em si.
+     * @return Identificador da nova mensagem
      */
-    public void postarMensagemTexto(String autor, String texto) {
-        mensagens.add(new MensagemTexto(autor, texto));
-        adicionarAutor(autor);
+    public int postarMensagemTexto(String autor, String texto) {
+        long inicio = System.nanoTime();
+        Mensagem mensagem;
+        boolean autorNovo;
+        int descartadas;
+        List<String> autoresRemovidos = new ArrayList<>();
+        long registro;
+        lock.writeLock().lock();
+        try {
+            // a mensagem é criada dentro do lock para que a ordem dos ids
+            // seja a mesma ordem da lista de mensagens (e do diário)
+            Mensagem novaMensagem = new MensagemTexto(autor, texto);
+            registro = registrarNoDiario(diario -> diario.registrarPostagemTexto(novaMensagem.getId(),
+                    novaMensagem.getHoraPostagem(), autor, texto));
+            mensagem = novaMensagem;
+            autorNovo = adicionarMensagem(mensagem);
+            descartadas = descartarExcedentes(autoresRemovidos);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        aguardarGravacaoDiario(registro);
+        verificarInstantaneo();
+        avisarPostagem(mensagem, autorNovo);
+        avisarDescarte(descartadas, autoresRemovidos);
+        metricas.registrar(MetricasFeed.POSTAGEM_TEXTO, inicio);
+        return mensagem.getId();
     }
 
     /**
      * Metodo para postar uma mensagem com foto no feed. Cria a mensagem e a
-     * adiciona na lista de mensagens.
+     * adiciona na lista de mensagens. Se uma foto idêntica já foi postada, os
+     * bytes não são guardados de novo.
      * 
      * @param autor       Nome do autor da mensagem.
-     * @param arquivoFoto Nome do arquivo da foto.
+     * @param bytesDaFoto Bytes da foto.
      * @param legenda     Legenda da foto.
+     * @return Identificador da nova mensagem
+     */
+    public int postarMensagemFoto(String autor, byte[] bytesDaFoto, String legenda) {
+        long inicio = System.nanoTime();
+        ReferenciaFoto referenciaFoto;
+        try {
+            referenciaFoto = obterRepositorioFotos().armazenar(bytesDaFoto);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao armazenar a foto no repositório do Feed", e);
+        }
+        int id = postarMensagemFoto(autor, referenciaFoto, legenda);
+        metricas.registrar(MetricasFeed.POSTAGEM_FOTO, inicio);
+        return id;
+    }
+
+    /**
+     * Metodo para postar uma mensagem com foto lida de um fluxo de entrada
+     * (por exemplo, de um arquivo). Os bytes são copiados para o repositório
+     * de fotos enquanto são lidos, calculando o hash ao mesmo tempo, sem que a
+     * foto inteira fique na memória.
+     * 
+     * @param autor   Nome do autor da mensagem.
+     * @param entrada Fluxo com os bytes da foto.
+     * @param tamanho Quantidade de bytes da foto.
+     * @param legenda Legenda da foto.
+     * @return Identificador da nova mensagem
+     * @throws IOException Se houver erro na leitura da foto
+     */
+    public int postarMensagemFoto(String autor, InputStream entrada, long tamanho, String legenda)
+            throws IOException {
+        long inicio = System.nanoTime();
+        ReferenciaFoto referenciaFoto = obterRepositorioFotos().armazenar(entrada, tamanho);
+        int id = postarMensagemFoto(autor, referenciaFoto, legenda);
+        metricas.registrar(MetricasFeed.POSTAGEM_FOTO, inicio);
+        return id;
+    }
+
+    /**
+     * Posta uma mensagem com uma foto que já está no repositório de fotos. Se
+     * o Feed é persistente, a foto é gravada em disco antes de a referência ser
+     * registrada no diário (que guarda apenas a referência).
+     * 
+     * @param autor          Nome do autor da mensagem.
+     * @param referenciaFoto Referência da foto no repositório.
+     * @param legenda        Legenda da foto.
+     * @return Identificador da nova mensagem
+     */
+    private int postarMensagemFoto(String autor, ReferenciaFoto referenciaFoto, String legenda) {
+        if (diario != null) {
+            try {
+                repositorioFotos.sincronizar(referenciaFoto);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Erro ao gravar a foto no repositório do Feed", e);
+            }
+        }
+        Mensagem mensagem;
+        boolean autorNovo;
+        int descartadas;
+        List<String> autoresRemovidos = new ArrayList<>();
+        long registro;
+        lock.writeLock().lock();
+        try {
+            Mensagem novaMensagem = new MensagemFoto(autor, referenciaFoto, legenda);
+            registro = registrarNoDiario(diario -> diario.registrarPostagemFoto(novaMensagem.getId(),
+                    novaMensagem.getHoraPostagem(), autor, referenciaFoto, legenda));
+            mensagem = novaMensagem;
+            autorNovo = adicionarMensagem(mensagem);
+            descartadas = descartarExcedentes(autoresRemovidos);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        aguardarGravacaoDiario(registro);
+        verificarInstantaneo();
+        avisarPostagem(mensagem, autorNovo);
+        avisarDescarte(descartadas, autoresRemovidos);
+        return mensagem.getId();
+    }
+
+    /**
+     * Retorna as estatísticas de deduplicação das fotos do Feed (quantas fotos
+     * diferentes estão guardadas e quantos bytes foram economizados).
+     * 
+     * @return Estatísticas das fotos
+     */
+    public EstatisticasFotos getEstatisticasFotos() {
+        RepositorioFotos repositorio = repositorioFotos;
+        if (repositorio == null) {
+            return new EstatisticasFotos(0, 0, 0, 0);
+        }
+        return repositorio.getEstatisticas();
+    }
+
+    /**
+     * Retorna o repositório de fotos, criando um repositório temporário na
+     * primeira foto de um Feed apenas em memória.
+     * 
+     * @return O repositório de fotos
+     * @throws IOException Se houver erro ao criar o repositório
+     */
+    private RepositorioFotos obterRepositorioFotos() throws IOException {
+        RepositorioFotos repositorio = repositorioFotos;
+        if (repositorio == null) {
+            synchronized (this) {
+                repositorio = repositorioFotos;
+                if (repositorio == null) {
+                    repositorio = RepositorioFotos.criarTemporario();
+                    repositorioFotos = repositorio;
+                }
+            }
+        }
+        return repositorio;
+    }
+
+    /**
+     * Registra uma operação no diário (se o Feed for persistente). Um erro de
+     * escrita é relançado como UncheckedIOException, e a operação não é
+     * aplicada ao Feed.
+     * 
+     * @param registroDiario Operação de registro no diário
+     * @return Número do registro (0 se o Feed é apenas em memória)
+     */
+    private long registrarNoDiario(RegistroDiario registroDiario) {
+        if (diario == null) {
+            return 0;
+        }
+        try {
+            return registroDiario.registrar(diario);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao registrar operação no diário do Feed", e);
+        }
+    }
+
+    /**
+     * Aguarda até que o registro passado esteja gravado em disco (se o Feed
+     * for persistente).
+     * 
+     * @param registro Número do registro no diário
+     */
+    private void aguardarGravacaoDiario(long registro) {
+        if (diario == null) {
+            return;
+        }
+        try {
+            diario.aguardarGravacao(registro);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao gravar o diário do Feed", e);
+        }
+    }
+
+    /**
+     * Adiciona uma mensagem na lista de mensagens, no índice por
+     * identificador e na lista de mensagens do seu autor, contando a
+     * referência à sua foto (se houver), colocando-a no ranking (se já tiver
+     * curtidas ou comentários, como as carregadas de um instantâneo) e
+     * indexando o seu texto e comentários para a busca. Deve ser chamado com o
+     * lock de escrita.
+     * 
+     * @param mensagem Mensagem a ser adicionada
+     * @return true se é a primeira mensagem do autor no Feed
      */
-    public void postarMensagemFoto(String autor, byte[] bytesDaFoto, String legenda) {
-        mensagens.add(new MensagemFoto(autor, bytesDaFoto, legenda));
-        adicionarAutor(autor);
+    private boolean adicionarMensagem(Mensagem mensagem) {
+        boolean autorNovo = incluirMensagem(mensagem);
+        indiceTextual.indexar(mensagem.getId(), mensagem.getTextoConteudo());
+        for (String comentario : mensagem.getComentarios()) {
+            indiceTextual.indexar(mensagem.getId(), comentario);
+        }
+        return autorNovo;
+    }
+
+    /**
+     * Adiciona uma mensagem nas listas, no índice por identificador e no
+     * ranking (sem indexar o seu texto para a busca, o que é feito por
+     * adicionarMensagem ou, nos lotes, para todas as mensagens de uma vez).
+     * Deve ser chamado com o lock de escrita.
+     * 
+     * @param mensagem Mensagem a ser adicionada
+     * @return true se é a primeira mensagem do autor no Feed
+     */
+    private boolean incluirMensagem(Mensagem mensagem) {
+        mensagens.add(mensagem);
+        bytesRetidos.addAndGet(mensagem.getTamanhoEstimado());
+        indiceMensagens.adicionar(mensagem);
+        ReferenciaFoto referenciaFoto = mensagem.getReferenciaFoto();
+        if (referenciaFoto != null) {
+            repositorioFotos.adicionarReferencia(referenciaFoto);
+        }
+        // uma mensagem nova não tem curtidas nem comentários, e não entra no
+        // ranking
+        if (RankingMensagens.pontuacao(mensagem) > 0) {
+            ranking.atualizar(mensagem);
+        }
+        return adicionarAutor(mensagem);
+    }
+
+    /**
+     * Descarta as mensagens mais antigas enquanto algum limite da política de
+     * retenção estiver ultrapassado. Cada mensagem descartada é retirada da
+     * lista de mensagens, da lista do autor, do índice por identificador, do
+     * ranking e do índice de busca, e a referência à sua foto é liberada. Se o
+     * Feed é persistente, a mensagem é antes guardada no arquivo de mensagens.
+     * O autor que fica sem mensagens deixa de ser um autor do Feed. Deve ser
+     * chamado com o lock de escrita.
+     * 
+     * @param autoresRemovidos Lista onde são acrescentados os autores que
+     *                         ficaram sem mensagens
+     * @return Quantidade de mensagens descartadas
+     */
+    private int descartarExcedentes(List<String> autoresRemovidos) {
+        int descartadas = 0;
+        long agora = System.currentTimeMillis();
+        while (!mensagens.isEmpty() && politicaRetencao.excedido(mensagens.size(),
+                mensagens.get(0).getHoraPostagem(), bytesRetidos.get(), agora)) {
+            Mensagem mensagem = mensagens.get(0);
+            if (arquivoMensagens != null) {
+                try {
+                    arquivoMensagens.arquivar(mensagem);
+                } catch (IOException e) {
+                    // a mensagem continua em memória (e no diário), e o
+                    // descarte é tentado novamente na próxima postagem
+                    e.printStackTrace();
+                    break;
+                }
+            }
+            mensagens.removerPrimeira();
+            // as listas dos autores também estão em ordem de postagem, então a
+            // mensagem mais antiga do Feed é a mais antiga do seu autor
+            int numeroAutor = mensagem.getNumeroAutor();
+            ListaMensagens mensagensDoAutor = mensagensPorAutor.get(numeroAutor);
+            mensagensDoAutor.removerPrimeira();
+            if (mensagensDoAutor.isEmpty()) {
+                mensagensPorAutor.set(numeroAutor, null);
+                autores.remove(mensagem.getAutor());
+                dicionarioAutores.liberar(numeroAutor);
+                autoresRemovidos.add(mensagem.getAutor());
+            }
+            indiceMensagens.remover(mensagem.getId());
+            ranking.remover(mensagem);
+            indiceTextual.remover(mensagem.getId(), mensagem.getTextoConteudo());
+            for (String comentario : mensagem.getComentarios()) {
+                indiceTextual.remover(mensagem.getId(), comentario);
+            }
+            ReferenciaFoto referenciaFoto = mensagem.getReferenciaFoto();
+            if (referenciaFoto != null) {
+                repositorioFotos.liberarReferencia(referenciaFoto);
+            }
+            bytesRetidos.addAndGet(-mensagem.getTamanhoEstimado());
+            descartadas++;
+        }
+        return descartadas;
+    }
+
+    /**
+     * Aplica a política de retenção sem que haja uma postagem (por exemplo,
+     * periodicamente, para descartar as mensagens que passaram da idade
+     * máxima mesmo quando o Feed não recebe postagens).
+     * 
+     * @return Quantidade de mensagens descartadas
+     */
+    public int aplicarPoliticaRetencao() {
+        int descartadas;
+        List<String> autoresRemovidos = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            descartadas = descartarExcedentes(autoresRemovidos);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        avisarDescarte(descartadas, autoresRemovidos);
+        return descartadas;
+    }
+
+    /**
+     * Passa a aplicar a política de retenção periodicamente (em segundo
+     * plano), para que as mensagens que passaram da idade máxima sejam
+     * descartadas mesmo quando o Feed não recebe postagens. Não faz nada se a
+     * política não tem idade máxima ou se a verificação já foi iniciada.
+     */
+    public synchronized void iniciarVerificacaoRetencao() {
+        if (politicaRetencao.getIdadeMaxima() == 0 || verificadorRetencao != null) {
+            return;
+        }
+        long intervalo = Math.min(politicaRetencao.getIdadeMaxima(), INTERVALO_VERIFICACAO_RETENCAO);
+        verificadorRetencao = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+            Thread thread = new Thread(tarefa, "verificador-retencao-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+        verificadorRetencao.scheduleWithFixedDelay(() -> {
+            try {
+                aplicarPoliticaRetencao();
+            } catch (RuntimeException e) {
+                // uma falha não pode cancelar as próximas verificações
+                e.printStackTrace();
+            }
+        }, intervalo, intervalo, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Retorna a quantidade de mensagens descartadas da memória que estão
+     * guardadas no arquivo de mensagens em disco.
+     * 
+     * @return Quantidade de mensagens arquivadas (0 se o Feed é apenas em
+     *         memória)
+     */
+    public long getNroMensagensArquivadas() {
+        return (arquivoMensagens == null) ? 0 : arquivoMensagens.getNroMensagensArquivadas();
+    }
+
+    /**
+     * Retorna o tamanho total estimado (em bytes) das mensagens em memória.
+     * 
+     * @return Tamanho estimado das mensagens
+     */
+    public long getBytesRetidos() {
+        return bytesRetidos.get();
+    }
+
+    /**
+     * Avisa os ouvintes que mensagens antigas foram descartadas pela política
+     * de retenção (não avisa se nenhuma foi descartada), e quais autores
+     * ficaram sem mensagens.
+     * 
+     * @param quantidade       Quantidade de mensagens descartadas
+     * @param autoresRemovidos Autores que ficaram sem mensagens no Feed
+     */
+    private void avisarDescarte(int quantidade, List<String> autoresRemovidos) {
+        if (quantidade == 0) {
+            return;
+        }
+        for (OuvinteFeed ouvinte : ouvintes) {
+            for (String autor : autoresRemovidos) {
+                ouvinte.autorRemovido(autor);
+            }
+            ouvinte.mensagensDescartadas(quantidade);
+        }
+    }
+
+    /**
+     * Avisa os ouvintes que uma mensagem foi postada (e que o autor é novo,
+     * se for o caso). Chamado fora do lock para que os ouvintes possam
+     * consultar o Feed.
+     * 
+     * @param mensagem  Mensagem postada
+     * @param autorNovo Se é a primeira mensagem do autor
+     */
+    private void avisarPostagem(Mensagem mensagem, boolean autorNovo) {
+        for (OuvinteFeed ouvinte : ouvintes) {
+            if (autorNovo) {
+                ouvinte.autorAdicionado(mensagem.getAutor());
+            }
+            ouvinte.mensagemPostada(mensagem);
+        }
+    }
+
+    /**
+     * Avisa os ouvintes que um lote de operações foi executado (um único
+     * aviso, em vez de um por operação).
+     * 
+     * @param autoresNovos     Autores que postaram a sua primeira mensagem no
+     *                         lote
+     * @param autoresRemovidos Autores que ficaram sem mensagens no Feed
+     * @param descartadas      Quantidade de mensagens descartadas pela política
+     *                         de retenção
+     */
+    private void avisarLote(List<String> autoresNovos, List<String> autoresRemovidos, int descartadas) {
+        for (OuvinteFeed ouvinte : ouvintes) {
+            ouvinte.loteExecutado(autoresNovos, autoresRemovidos, descartadas);
+        }
+    }
+
+    /**
+     * Avisa os ouvintes que uma mensagem foi curtida ou comentada.
+     * 
+     * @param mensagem Mensagem alterada
+     */
+    private void avisarAlteracao(Mensagem mensagem) {
+        for (OuvinteFeed ouvinte : ouvintes) {
+            ouvinte.mensagemAlterada(mensagem);
+        }
     }
 
     /**
@@ -59,12 +830,120 @@ public class FeedNoticias {
      * @return A lista de publicações do Feed
      */
     public List<Publicacao> getPublicacoes() {
-        // Cria uma lista de publicações somente-leitura
-        List<Publicacao> publicacoes = new ArrayList<>();
-        // Adiciona todas as mensagens do feed na lista de publicações
-        publicacoes.addAll(mensagens);
-        // Retorna a lista de publicações
-        return publicacoes;
+        lock.readLock().lock();
+        try {
+            // Cria uma lista de publicações somente-leitura
+            List<Publicacao> publicacoes = new ArrayList<>();
+            // Adiciona todas as mensagens do feed na lista de publicações
+            // (a cópia é feita com o lock, então nenhuma postagem fica pela metade)
+            publicacoes.addAll(mensagens);
+            // Retorna a lista de publicações
+            return publicacoes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retorna a publicação que está na posição passada do Feed (na ordem de
+     * postagem). Permite que a tela percorra apenas as publicações que está
+     * exibindo, sem copiar o Feed inteiro.
+     * 
+     * @param posicao Posição da publicação (começando em 0)
+     * @return A publicação na posição (null se não houver, por exemplo porque
+     *         mensagens antigas foram descartadas)
+     */
+    public Publicacao getPublicacao(int posicao) {
+        lock.readLock().lock();
+        try {
+            return (posicao < mensagens.size()) ? mensagens.get(posicao) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retorna a publicação que está na posição passada dentre as publicações
+     * de um autor (na ordem de postagem).
+     * 
+     * @param autor   autor das mensagens
+     * @param posicao Posição da publicação (começando em 0)
+     * @return A publicação na posição (null se não houver)
+     */
+    public Publicacao getPublicacao(String autor, int posicao) {
+        lock.readLock().lock();
+        try {
+            List<Mensagem> mensagensDoAutor = buscarMensagensDoAutor(autor);
+            if (mensagensDoAutor == null || posicao >= mensagensDoAutor.size()) {
+                return null;
+            }
+            return mensagensDoAutor.get(posicao);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retorna a posição de uma publicação no Feed, ou -1 se ela não estiver no
+     * Feed.
+     * 
+     * @param idMensagem Identificador da mensagem
+     * @return Posição da publicação ou -1
+     */
+    public int posicaoDaPublicacao(int idMensagem) {
+        lock.readLock().lock();
+        try {
+            return buscarPosicao(mensagens, idMensagem);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retorna a posição de uma publicação dentre as publicações de um autor,
+     * ou -1 se ela não for desse autor.
+     * 
+     * @param autor      autor das mensagens
+     * @param idMensagem Identificador da mensagem
+     * @return Posição da publicação ou -1
+     */
+    public int posicaoDaPublicacao(String autor, int idMensagem) {
+        lock.readLock().lock();
+        try {
+            List<Mensagem> mensagensDoAutor = buscarMensagensDoAutor(autor);
+            if (mensagensDoAutor == null) {
+                return -1;
+            }
+            return buscarPosicao(mensagensDoAutor, idMensagem);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Faz uma busca binária pelo identificador em uma lista de mensagens. As
+     * listas estão sempre ordenadas pelo id, já que as mensagens são criadas
+     * e adicionadas dentro do lock de escrita.
+     * 
+     * @param lista      Lista de mensagens ordenada pelo id
+     * @param idMensagem Identificador procurado
+     * @return Posição da mensagem na lista ou -1
+     */
+    private static int buscarPosicao(List<Mensagem> lista, int idMensagem) {
+        int inicio = 0;
+        int fim = lista.size() - 1;
+        while (inicio <= fim) {
+            int meio = (inicio + fim) >>> 1;
+            int id = lista.get(meio).getId();
+            if (id < idMensagem) {
+                inicio = meio + 1;
+            } else if (id > idMensagem) {
+                fim = meio - 1;
+            } else {
+                return meio;
+            }
+        }
+        return -1;
     }
 
     /**
@@ -72,13 +951,28 @@ public class FeedNoticias {
      * Se for uma postagem com foto, por exemplo, retorna a imagem.
      * Mas se a postagem não tiver dados binários, retorna null.
      * 
+     * Os bytes não são copiados: o buffer retornado (somente-leitura) aponta
+     * diretamente para o repositório de fotos mapeado em memória. A foto é
+     * obtida com o lock de leitura, para que a mensagem não seja descartada (e
+     * o espaço da foto recuperado) entre a busca e a leitura.
+     * 
      * @param idMensagem id da mensagem cujos dados serão retornados.
-     * @return null ou vetor de bytes associado à postagem.
+     * @return null ou buffer com os bytes associados à postagem.
      */
-    public byte[] getDadosBinarios(int idMensagem) {
-        Mensagem mensagem = buscarMensagemPeloId(idMensagem);
-        byte[] bytes = mensagem.getDadosBinarios();
-        return bytes;
+    public ByteBuffer getDadosBinarios(int idMensagem) {
+        lock.readLock().lock();
+        try {
+            Mensagem mensagem = indiceMensagens.buscar(idMensagem);
+            ReferenciaFoto referenciaFoto = (mensagem == null) ? null : mensagem.getReferenciaFoto();
+            if (referenciaFoto == null) {
+                return null;
+            }
+            return repositorioFotos.ler(referenciaFoto);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao ler a foto do repositório do Feed", e);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     /**
@@ -86,10 +980,28 @@ public class FeedNoticias {
      * identificador da mensagem).
      * 
      * @param idMensagem Identificador da mensagem
+     * @throws IllegalArgumentException Se a mensagem não está no Feed (ou já
+     *                                  foi descartada da memória)
      */
     public void curtir(int idMensagem) {
-        Mensagem mensagem = buscarMensagemPeloId(idMensagem);
-        mensagem.curtir();
+        long inicio = System.nanoTime();
+        Mensagem mensagem;
+        long registro;
+        // o lock de leitura é mantido até a curtida ser aplicada, para que um
+        // instantâneo nunca capture uma curtida registrada pela metade
+        lock.readLock().lock();
+        try {
+            mensagem = buscarNoIndice(idMensagem);
+            registro = registrarNoDiario(diario -> diario.registrarCurtida(idMensagem));
+            mensagem.curtir();
+            ranking.atualizar(mensagem);
+        } finally {
+            lock.readLock().unlock();
+        }
+        aguardarGravacaoDiario(registro);
+        verificarInstantaneo();
+        avisarAlteracao(mensagem);
+        metricas.registrar(MetricasFeed.CURTIDA, inicio);
     }
 
     /**
@@ -98,10 +1010,142 @@ public class FeedNoticias {
      * 
      * @param idMensagem Identificador da mensagem
      * @param comentario Comentário a ser acrescentado
+     * @throws IllegalArgumentException Se a mensagem não está no Feed (ou já
+     *                                  foi descartada da memória)
      */
     public void comentar(int idMensagem, String comentario) {
-        Mensagem mensagem = buscarMensagemPeloId(idMensagem);
-        mensagem.comentar(comentario);
+        long inicio = System.nanoTime();
+        Mensagem mensagem;
+        long registro;
+        lock.readLock().lock();
+        try {
+            mensagem = buscarNoIndice(idMensagem);
+            registro = registrarNoDiario(diario -> diario.registrarComentario(idMensagem, comentario));
+            mensagem.comentar(comentario);
+            bytesRetidos.addAndGet(Mensagem.tamanhoEstimadoComentario(comentario));
+            ranking.atualizar(mensagem);
+            indiceTextual.indexar(idMensagem, comentario);
+        } finally {
+            lock.readLock().unlock();
+        }
+        aguardarGravacaoDiario(registro);
+        verificarInstantaneo();
+        avisarAlteracao(mensagem);
+        metricas.registrar(MetricasFeed.COMENTARIO, inicio);
+    }
+
+    /**
+     * Executa um lote de operações (postagens de texto, curtidas e
+     * comentários) de uma só vez: o Feed é bloqueado uma única vez, os ids das
+     * novas mensagens são reservados em bloco, o espaço das listas e do índice
+     * é reservado antes das inclusões, os textos são indexados para a busca
+     * de uma vez, o ranking é atualizado uma vez por mensagem alterada, a
+     * gravação do diário é aguardada apenas no final e os ouvintes recebem um
+     * único aviso.
+     * 
+     * Antes de aplicar qualquer operação, verifica se todas as mensagens
+     * curtidas e comentadas estão no Feed; se alguma não estiver, nada é
+     * aplicado. Por isso, uma curtida ou comentário do lote não pode se referir
+     * a uma mensagem postada no mesmo lote (o id dela ainda não existe na
+     * verificação).
+     * 
+     * O lote inteiro é gravado no diário como um único registro antes de
+     * qualquer alteração na memória: se a gravação falhar, nada é aplicado; e
+     * um lote gravado pela metade é descartado por inteiro ao reabrir o Feed.
+     * 
+     * @param lote Operações a serem executadas
+     * @return Ids das mensagens postadas, na ordem das postagens no lote
+     * @throws IllegalArgumentException Se alguma mensagem curtida ou comentada
+     *                                  não está no Feed
+     * @throws UncheckedIOException     Se o lote não puder ser registrado no
+     *                                  diário (nesse caso, nada é aplicado)
+     */
+    public int[] executar(LoteOperacoes lote) {
+        long inicio = System.nanoTime();
+        List<LoteOperacoes.Operacao> operacoes = lote.getOperacoes();
+        int[] idsPostados = new int[lote.getNroPostagens()];
+        List<String> autoresNovos = new ArrayList<>();
+        List<String> autoresRemovidos = new ArrayList<>();
+        int descartadas;
+        long registro;
+        lock.writeLock().lock();
+        try {
+            for (LoteOperacoes.Operacao operacao : operacoes) {
+                if (operacao.tipo != LoteOperacoes.POSTAGEM_TEXTO) {
+                    buscarNoIndice(operacao.idMensagem);
+                }
+            }
+            int proximoId = Mensagem.reservarIds(idsPostados.length);
+            long horaPostagem = System.currentTimeMillis();
+            try {
+                registro = registrarNoDiario(diario -> diario.registrarLote(operacoes, proximoId, horaPostagem));
+            } catch (RuntimeException e) {
+                Mensagem.devolverIds(proximoId, idsPostados.length);
+                throw e;
+            }
+            mensagens.reservar(idsPostados.length);
+            indiceMensagens.reservar(idsPostados.length);
+            int postadas = 0;
+            // mensagens curtidas ou comentadas, atualizadas no ranking no
+            // final (uma mensagem alterada mais de uma vez aparece repetida,
+            // mas só a primeira atualização muda o ranking)
+            List<Mensagem> alteradas = new ArrayList<>();
+            // textos das postagens e comentários a serem indexados para a busca
+            int[] idsTextos = new int[operacoes.size()];
+            String[] textos = new String[operacoes.size()];
+            int nroTextos = 0;
+            for (LoteOperacoes.Operacao operacao : operacoes) {
+                if (operacao.tipo == LoteOperacoes.POSTAGEM_TEXTO) {
+                    int id = proximoId + postadas;
+                    Mensagem mensagem = new MensagemTexto(id, operacao.autor, horaPostagem, operacao.texto);
+                    idsTextos[nroTextos] = id;
+                    textos[nroTextos++] = operacao.texto;
+                    if (incluirMensagem(mensagem)) {
+                        autoresNovos.add(operacao.autor);
+                    }
+                    idsPostados[postadas++] = id;
+                } else if (operacao.tipo == LoteOperacoes.CURTIDA) {
+                    Mensagem mensagem = indiceMensagens.buscar(operacao.idMensagem);
+                    mensagem.curtir();
+                    alteradas.add(mensagem);
+                } else {
+                    Mensagem mensagem = indiceMensagens.buscar(operacao.idMensagem);
+                    mensagem.comentar(operacao.texto);
+                    bytesRetidos.addAndGet(Mensagem.tamanhoEstimadoComentario(operacao.texto));
+                    idsTextos[nroTextos] = operacao.idMensagem;
+                    textos[nroTextos++] = operacao.texto;
+                    alteradas.add(mensagem);
+                }
+            }
+            indiceTextual.indexar(idsTextos, textos, nroTextos);
+            for (Mensagem mensagem : alteradas) {
+                ranking.atualizar(mensagem);
+            }
+            descartadas = descartarExcedentes(autoresRemovidos);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        aguardarGravacaoDiario(registro);
+        verificarInstantaneo();
+        avisarLote(autoresNovos, autoresRemovidos, descartadas);
+        metricas.registrar(MetricasFeed.LOTE, inicio);
+        return idsPostados;
+    }
+
+    /**
+     * Busca a mensagem no índice por identificador para curti-la ou
+     * comentá-la. Deve ser chamado com o lock.
+     * 
+     * @param idMensagem Identificador da mensagem
+     * @return A mensagem
+     * @throws IllegalArgumentException Se a mensagem não está no índice
+     */
+    private Mensagem buscarNoIndice(int idMensagem) {
+        Mensagem mensagem = indiceMensagens.buscar(idMensagem);
+        if (mensagem == null) {
+            throw new IllegalArgumentException("Não há mensagem com o id " + idMensagem + " no Feed");
+        }
+        return mensagem;
     }
 
     /**
@@ -110,60 +1154,85 @@ public class FeedNoticias {
      * @return A quantidade de mensagens já publicadas
      */
     public int nroMensagens() {
-        return mensagens.size();
+        lock.readLock().lock();
+        try {
+            return mensagens.size();
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     /**
-     * Faz uma busca na lista de autores de mensagens.
+     * Retorna a quantidade de mensagens publicadas por um autor
      * 
-     * @param nome nome do autor da mensagem
-     * @return nome do autor caso ele exista, null caso contrário
+     * @param autor autor das mensagens
+     * @return A quantidade de mensagens do autor
      */
-    private String buscarAutor(String nome) {
-        for (String autor : autores) {
-            if (autor.equals(nome)) {
-                return autor;
-            }
+    public int nroMensagens(String autor) {
+        lock.readLock().lock();
+        try {
+            List<Mensagem> mensagensDoAutor = buscarMensagensDoAutor(autor);
+            return mensagensDoAutor == null ? 0 : mensagensDoAutor.size();
+        } finally {
+            lock.readLock().unlock();
         }
-        return null;
     }
 
     /**
-     * Se um ator não existe, o adiciona na lista de autores.
+     * Adiciona a mensagem na lista de mensagens do seu autor. Se o autor
+     * ainda não existe, ele passa a fazer parte dos autores do Feed.
      * 
-     * @param autor autor de uma mensagem
+     * @param mensagem mensagem recém-postada
+     * @return true se o autor ainda não existia
      */
-    private void adicionarAutor(String autor) {
-        if (buscarAutor(autor) != null) {
-            return;
+    private boolean adicionarAutor(Mensagem mensagem) {
+        boolean autorNovo = false;
+        int numeroAutor = dicionarioAutores.obterNumero(mensagem.getAutor());
+        mensagem.associarAutor(numeroAutor, dicionarioAutores.getNome(numeroAutor));
+        while (mensagensPorAutor.size() <= numeroAutor) {
+            mensagensPorAutor.add(null);
+        }
+        ListaMensagens mensagensDoAutor = mensagensPorAutor.get(numeroAutor);
+        if (mensagensDoAutor == null) {
+            mensagensDoAutor = new ListaMensagens();
+            mensagensPorAutor.set(numeroAutor, mensagensDoAutor);
+            autores.add(mensagem.getAutor());
+            autorNovo = true;
         }
-        autores.add(autor);
+        mensagensDoAutor.add(mensagem);
+        return autorNovo;
     }
 
     /**
-     * Retorna uma lista de autores que já mandaram mensagens no sistema
+     * Retorna a lista de mensagens de um autor pelo nome: o nome é convertido
+     * uma única vez no número do autor, que indexa diretamente as listas.
+     * Deve ser chamado com o lock.
      * 
-     * @return uma lista contendo os autores
+     * @param autor autor das mensagens
+     * @return Mensagens do autor (null se ele não tem mensagens no Feed)
      */
-    public List<String> obterAutores() {
-        return new ArrayList<>(autores);
+    private ListaMensagens buscarMensagensDoAutor(String autor) {
+        int numeroAutor = dicionarioAutores.buscarNumero(autor);
+        if (numeroAutor < 0 || numeroAutor >= mensagensPorAutor.size()) {
+            return null;
+        }
+        return mensagensPorAutor.get(numeroAutor);
     }
 
     /**
-     * Retorna a mensagem correspondente ao identificador passado. Retorna null
-     * se não existir mensagem com esse identificador no feed. Obs: realiza
-     * busca simples (percorrendo a lista).
+     * Retorna uma lista dos autores que têm mensagens no Feed (os autores cujas
+     * mensagens foram todas descartadas pela política de retenção não estão
+     * nela)
      * 
-     * @param idMensagem Identificador da mensagem
-     * @return Mensagem correspondente ao identificador
+     * @return uma lista contendo os autores
      */
-    private Mensagem buscarMensagemPeloId(int idMensagem) {
-        for (Mensagem mensagem : mensagens) {
-            if (mensagem.getId() == idMensagem) {
-                return mensagem;
-            }
+    public List<String> obterAutores() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(autores);
+        } finally {
+            lock.readLock().unlock();
         }
-        return null;
     }
 
     /**
@@ -174,12 +1243,187 @@ public class FeedNoticias {
      * @return lista de mensagens
      */
     public List<Publicacao> getPublicacoes(String autor) {
-        List<Publicacao> mensagens = new ArrayList<>();
-        for (Publicacao mensagem : this.mensagens) {
-            if (mensagem.getAutor().equals(autor)) {
-                mensagens.add(mensagem);
+        lock.readLock().lock();
+        try {
+            List<Publicacao> mensagens = new ArrayList<>();
+            List<Mensagem> mensagensDoAutor = buscarMensagensDoAutor(autor);
+            if (mensagensDoAutor != null) {
+                mensagens.addAll(mensagensDoAutor);
+            }
+            return mensagens;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retorna uma página de publicações do Feed, da mais recente para a mais
+     * antiga. Apenas as publicações da página são copiadas.
+     * 
+     * Para a primeira página, use o cursor PaginaPublicacoes.INICIO; para as
+     * seguintes, o cursor retornado pela página anterior.
+     * 
+     * @param cursor Cursor da página (apenas publicações com id menor que ele
+     *               são retornadas)
+     * @param limite Quantidade máxima de publicações na página
+     * @return A página de publicações
+     */
+    public PaginaPublicacoes getPublicacoes(int cursor, int limite) {
+        long inicio = System.nanoTime();
+        PaginaPublicacoes pagina;
+        lock.readLock().lock();
+        try {
+            pagina = paginar(mensagens, cursor, limite);
+        } finally {
+            lock.readLock().unlock();
+        }
+        metricas.registrar(MetricasFeed.PAGINA, inicio);
+        return pagina;
+    }
+
+    /**
+     * Retorna uma página de publicações de um autor, da mais recente para a
+     * mais antiga.
+     * 
+     * @param autor  autor das mensagens
+     * @param cursor Cursor da página (PaginaPublicacoes.INICIO para a primeira)
+     * @param limite Quantidade máxima de publicações na página
+     * @return A página de publicações (vazia se o autor não existe)
+     */
+    public PaginaPublicacoes getPublicacoes(String autor, int cursor, int limite) {
+        long inicio = System.nanoTime();
+        PaginaPublicacoes pagina;
+        lock.readLock().lock();
+        try {
+            List<Mensagem> mensagensDoAutor = buscarMensagensDoAutor(autor);
+            if (mensagensDoAutor == null) {
+                pagina = new PaginaPublicacoes(new ArrayList<>(), PaginaPublicacoes.FIM);
+            } else {
+                pagina = paginar(mensagensDoAutor, cursor, limite);
             }
+        } finally {
+            lock.readLock().unlock();
         }
-        return mensagens;
+        metricas.registrar(MetricasFeed.PAGINA, inicio);
+        return pagina;
+    }
+
+    /**
+     * Monta uma página a partir de uma lista ordenada pelo id: localiza o
+     * cursor por busca binária e copia apenas as publicações da página.
+     * 
+     * @param lista  Lista de mensagens ordenada pelo id
+     * @param cursor Cursor da página
+     * @param limite Quantidade máxima de publicações
+     * @return A página de publicações
+     */
+    private static PaginaPublicacoes paginar(List<Mensagem> lista, int cursor, int limite) {
+        if (limite <= 0) {
+            throw new IllegalArgumentException("O limite da página deve ser positivo: " + limite);
+        }
+        int fim = contarAnteriores(lista, cursor);
+        int inicio = Math.max(0, fim - limite);
+        List<Publicacao> publicacoes = new ArrayList<>(fim - inicio);
+        for (int i = fim - 1; i >= inicio; i--) {
+            publicacoes.add(lista.get(i));
+        }
+        int proximoCursor = (inicio > 0) ? lista.get(inicio).getId() : PaginaPublicacoes.FIM;
+        return new PaginaPublicacoes(publicacoes, proximoCursor);
+    }
+
+    /**
+     * Conta quantas mensagens de uma lista ordenada pelo id têm id menor que
+     * o passado (busca binária).
+     * 
+     * @param lista Lista de mensagens ordenada pelo id
+     * @param id    Identificador limite
+     * @return Quantidade de mensagens com id menor
+     */
+    private static int contarAnteriores(List<Mensagem> lista, int id) {
+        int inicio = 0;
+        int fim = lista.size();
+        while (inicio < fim) {
+            int meio = (inicio + fim) >>> 1;
+            if (lista.get(meio).getId() < id) {
+                inicio = meio + 1;
+            } else {
+                fim = meio;
+            }
+        }
+        return inicio;
+    }
+
+    /**
+     * Retorna as publicações mais populares do Feed (com mais curtidas e
+     * comentários somados), da mais para a menos popular. O ranking é mantido
+     * a cada curtida e comentário, então a consulta percorre apenas as
+     * publicações retornadas. Publicações sem curtidas nem comentários não
+     * aparecem.
+     * 
+     * @param quantidade Quantidade máxima de publicações
+     * @return As publicações mais populares
+     */
+    public List<Publicacao> getMaisPopulares(int quantidade) {
+        return ranking.getPrimeiras(quantidade);
+    }
+
+    /**
+     * Busca as publicações que contêm todas as palavras da consulta (no texto,
+     * na legenda da foto ou nos comentários), da mais recente para a mais
+     * antiga. A busca ignora maiúsculas, acentos e cedilha, e uma palavra
+     * terminada em "*" é buscada como prefixo (ex.: "fot*").
+     * 
+     * @param consulta Palavras buscadas, separadas por espaço
+     * @param limite   Quantidade máxima de publicações retornadas
+     * @return As publicações encontradas
+     */
+    public List<Publicacao> buscar(String consulta, int limite) {
+        long inicio = System.nanoTime();
+        int[] ids = indiceTextual.buscar(consulta, limite);
+        List<Publicacao> encontradas = new ArrayList<>(ids.length);
+        lock.readLock().lock();
+        try {
+            for (int id : ids) {
+                Mensagem mensagem = indiceMensagens.buscar(id);
+                if (mensagem != null) {
+                    encontradas.add(mensagem);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        metricas.registrar(MetricasFeed.BUSCA, inicio);
+        return encontradas;
+    }
+
+    /**
+     * Retorna as métricas das operações do Feed (tempos de postagens,
+     * curtidas, comentários, lotes, buscas e páginas), que podem ser exibidas
+     * ou publicadas via JMX.
+     * 
+     * @return As métricas do Feed
+     */
+    public MetricasFeed getMetricas() {
+        return metricas;
+    }
+
+    /**
+     * Retorna quantas vezes o texto de exibição de uma publicação foi
+     * aproveitado do cache (desde que o programa foi iniciado).
+     * 
+     * @return Quantidade de acertos do cache de texto
+     */
+    public long getAcertosCacheTexto() {
+        return Mensagem.getAcertosCacheTexto();
+    }
+
+    /**
+     * Retorna quantas vezes o texto de exibição de uma publicação precisou ser
+     * formatado por não estar no cache (desde que o programa foi iniciado).
+     * 
+     * @return Quantidade de falhas do cache de texto
+     */
+    public long getFalhasCacheTexto() {
+        return Mensagem.getFalhasCacheTexto();
     }
 }
@@ -0,0 +1,166 @@
+package feed;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma dos tempos de uma operação (em nanossegundos), no estilo dos
+ * histogramas HDR: cada potência de 2 é dividida em 16 faixas iguais, então
+ * qualquer tempo (de 1 ns a horas) cai em uma de menos de mil faixas,
+ * com erro relativo de no máximo 1/16 (cerca de 6%).
+ *
+ * Registrar um tempo não usa lock: apenas incrementa contadores atômicos, o
+ * que permite medir operações feitas por várias threads ao mesmo tempo sem
+ * que a medição atrapalhe o que está sendo medido.
+ */
+public class HistogramaLatencia {
+    // Quantidade de bits usados para as faixas dentro de cada potência de 2
+    private static final int BITS_FAIXAS = 4;
+    // Quantidade de faixas dentro de cada potência de 2
+    private static final int FAIXAS = 1 << BITS_FAIXAS;
+    // Quantidade total de faixas (até o maior long)
+    private static final int TOTAL_FAIXAS = (64 - BITS_FAIXAS + 1) * FAIXAS;
+
+    // Quantidade de tempos registrados em cada faixa
+    private final AtomicLongArray contagens;
+    // Quantidade total de tempos registrados
+    private final LongAdder contagem;
+    // Soma dos tempos registrados
+    private final LongAdder soma;
+    // Maior tempo registrado
+    private final LongAccumulator maximo;
+
+    /**
+     * Cria o histograma vazio.
+     */
+    public HistogramaLatencia() {
+        contagens = new AtomicLongArray(TOTAL_FAIXAS);
+        contagem = new LongAdder();
+        soma = new LongAdder();
+        maximo = new LongAccumulator(Math::max, 0);
+    }
+
+    /**
+     * Registra o tempo de uma execução da operação.
+     *
+     * @param nanos Tempo da execução (em nanossegundos)
+     */
+    public void registrar(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        contagens.incrementAndGet(faixa(nanos));
+        contagem.increment();
+        soma.add(nanos);
+        maximo.accumulate(nanos);
+    }
+
+    /**
+     * Registra o tempo decorrido desde o instante passado.
+     *
+     * @param inicioNanos Instante do início da execução (System.nanoTime)
+     */
+    public void registrarDesde(long inicioNanos) {
+        registrar(System.nanoTime() - inicioNanos);
+    }
+
+    /**
+     * Retorna a quantidade de tempos registrados.
+     *
+     * @return Quantidade de execuções medidas
+     */
+    public long getContagem() {
+        return contagem.sum();
+    }
+
+    /**
+     * Retorna a média dos tempos registrados.
+     *
+     * @return Tempo médio (em nanossegundos), ou 0 se não há registros
+     */
+    public double getMediaNanos() {
+        long quantidade = contagem.sum();
+        return (quantidade == 0) ? 0 : (double) soma.sum() / quantidade;
+    }
+
+    /**
+     * Retorna o maior tempo registrado.
+     *
+     * @return Tempo máximo (em nanossegundos)
+     */
+    public long getMaximoNanos() {
+        return maximo.get();
+    }
+
+    /**
+     * Retorna o tempo abaixo do qual está o percentual passado das execuções
+     * (ex.: 99 para o percentil 99). O valor retornado é o limite superior da
+     * faixa do percentil (nunca maior que o máximo registrado).
+     *
+     * @param percentual Percentual das execuções (de 0 a 100)
+     * @return Tempo do percentil (em nanossegundos), ou 0 se não há registros
+     */
+    public long getPercentilNanos(double percentual) {
+        long[] copia = new long[TOTAL_FAIXAS];
+        long total = 0;
+        for (int i = 0; i < TOTAL_FAIXAS; i++) {
+            copia[i] = contagens.get(i);
+            total += copia[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long posicao = Math.max(1, (long) Math.ceil(total * percentual / 100.0));
+        long acumulado = 0;
+        for (int i = 0; i < TOTAL_FAIXAS; i++) {
+            acumulado += copia[i];
+            if (acumulado >= posicao) {
+                // o início das faixas além do maior long é negativo
+                long proximaFaixa = (i + 1 < TOTAL_FAIXAS) ? inicioDaFaixa(i + 1) : -1;
+                long limiteSuperior = (proximaFaixa > 0) ? proximaFaixa - 1 : Long.MAX_VALUE;
+                return Math.min(limiteSuperior, maximo.get());
+            }
+        }
+        return maximo.get();
+    }
+
+    /**
+     * Descarta todos os tempos registrados. Registros feitos ao mesmo tempo
+     * por outras threads podem ser descartados apenas em parte.
+     */
+    public void zerar() {
+        for (int i = 0; i < TOTAL_FAIXAS; i++) {
+            contagens.set(i, 0);
+        }
+        contagem.reset();
+        soma.reset();
+        maximo.reset();
+    }
+
+    /**
+     * Calcula a faixa de um tempo: os valores menores que 16 têm uma faixa
+     * cada; os demais, pela potência de 2 e pelos 4 bits seguintes ao mais
+     * significativo.
+     */
+    private static int faixa(long valor) {
+        if (valor < FAIXAS) {
+            return (int) valor;
+        }
+        int expoente = 63 - Long.numberOfLeadingZeros(valor);
+        int subFaixa = (int) (valor >>> (expoente - BITS_FAIXAS)) & (FAIXAS - 1);
+        return (expoente - BITS_FAIXAS + 1) * FAIXAS + subFaixa;
+    }
+
+    /**
+     * Retorna o menor valor de uma faixa (o inverso de faixa).
+     */
+    private static long inicioDaFaixa(int faixa) {
+        if (faixa < FAIXAS) {
+            return faixa;
+        }
+        int expoente = faixa / FAIXAS + BITS_FAIXAS - 1;
+        long subFaixa = faixa % FAIXAS;
+        return (FAIXAS + subFaixa) << (expoente - BITS_FAIXAS);
+    }
+}
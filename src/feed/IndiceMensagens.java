@@ -0,0 +1,176 @@
+package feed;
+
+/**
+ * Índice que associa o identificador de uma mensagem à própria mensagem.
+ *
+ * É uma tabela hash de endereçamento aberto (sondagem linear) que usa chaves
+ * do tipo int diretamente, evitando a criação de objetos Integer que um
+ * HashMap<Integer, Mensagem> exigiria. Dessa forma a busca de uma mensagem
+ * pelo identificador tem custo constante, independente do tamanho do feed.
+ *
+ * Obs.: os identificadores das mensagens começam em 1, por isso o valor 0 é
+ * usado para marcar uma posição vazia da tabela.
+ */
+class IndiceMensagens {
+    // Capacidade inicial da tabela (precisa ser potência de 2)
+    private static final int CAPACIDADE_INICIAL = 16;
+
+    // Chaves (identificadores) armazenadas na tabela
+    private int[] chaves;
+    // Mensagens armazenadas na tabela (mesma posição da chave)
+    private Mensagem[] valores;
+    // Quantidade de mensagens no índice
+    private int tamanho;
+
+    /**
+     * Cria o índice vazio.
+     */
+    public IndiceMensagens() {
+        chaves = new int[CAPACIDADE_INICIAL];
+        valores = new Mensagem[CAPACIDADE_INICIAL];
+        tamanho = 0;
+    }
+
+    /**
+     * Adiciona uma mensagem ao índice (ou substitui a mensagem que tinha o
+     * mesmo identificador).
+     *
+     * @param mensagem Mensagem a ser indexada
+     */
+    public void adicionar(Mensagem mensagem) {
+        // mantém a ocupação da tabela abaixo de 50%
+        if ((tamanho + 1) * 2 > chaves.length) {
+            redimensionar(chaves.length * 2);
+        }
+        int id = mensagem.getId();
+        int posicao = posicaoDaChave(id, chaves.length);
+        while (chaves[posicao] != 0 && chaves[posicao] != id) {
+            posicao = (posicao + 1) & (chaves.length - 1);
+        }
+        if (chaves[posicao] == 0) {
+            tamanho++;
+        }
+        chaves[posicao] = id;
+        valores[posicao] = mensagem;
+    }
+
+    /**
+     * Garante espaço para mais mensagens sem que a tabela precise ser
+     * realocada várias vezes durante a inclusão de um lote.
+     *
+     * @param quantidade Quantidade de mensagens que serão adicionadas
+     */
+    public void reservar(int quantidade) {
+        long necessario = 2L * (tamanho + quantidade);
+        if (necessario > chaves.length) {
+            int capacidade = chaves.length;
+            while (capacidade < necessario) {
+                capacidade *= 2;
+            }
+            redimensionar(capacidade);
+        }
+    }
+
+    /**
+     * Retorna a mensagem com o identificador passado, ou null se ela não
+     * estiver no índice.
+     *
+     * @param id Identificador da mensagem
+     * @return Mensagem correspondente ou null
+     */
+    public Mensagem buscar(int id) {
+        if (id == 0) {
+            return null;
+        }
+        int posicao = posicaoDaChave(id, chaves.length);
+        while (chaves[posicao] != 0) {
+            if (chaves[posicao] == id) {
+                return valores[posicao];
+            }
+            posicao = (posicao + 1) & (chaves.length - 1);
+        }
+        return null;
+    }
+
+    /**
+     * Retira do índice a mensagem com o identificador passado (se estiver
+     * nele). As chaves seguintes do mesmo grupo são deslocadas para trás, já
+     * que uma posição vazia no meio do grupo interromperia a busca por elas.
+     *
+     * @param id Identificador da mensagem
+     */
+    public void remover(int id) {
+        if (id == 0) {
+            return;
+        }
+        int mascara = chaves.length - 1;
+        int posicao = posicaoDaChave(id, chaves.length);
+        while (chaves[posicao] != id) {
+            if (chaves[posicao] == 0) {
+                return;
+            }
+            posicao = (posicao + 1) & mascara;
+        }
+        int vazia = posicao;
+        int seguinte = (vazia + 1) & mascara;
+        while (chaves[seguinte] != 0) {
+            int ideal = posicaoDaChave(chaves[seguinte], chaves.length);
+            // a chave pode ocupar a posição vazia se a sua posição ideal não
+            // estiver entre a vazia (exclusive) e a posição atual dela
+            if (((seguinte - ideal) & mascara) >= ((seguinte - vazia) & mascara)) {
+                chaves[vazia] = chaves[seguinte];
+                valores[vazia] = valores[seguinte];
+                vazia = seguinte;
+            }
+            seguinte = (seguinte + 1) & mascara;
+        }
+        chaves[vazia] = 0;
+        valores[vazia] = null;
+        tamanho--;
+    }
+
+    /**
+     * Retorna a quantidade de mensagens no índice.
+     *
+     * @return Quantidade de mensagens indexadas
+     */
+    public int tamanho() {
+        return tamanho;
+    }
+
+    /**
+     * Realoca a tabela com uma nova capacidade, reinserindo todas as chaves.
+     *
+     * @param novaCapacidade Nova capacidade (potência de 2)
+     */
+    private void redimensionar(int novaCapacidade) {
+        int[] chavesAntigas = chaves;
+        Mensagem[] valoresAntigos = valores;
+        chaves = new int[novaCapacidade];
+        valores = new Mensagem[novaCapacidade];
+        for (int i = 0; i < chavesAntigas.length; i++) {
+            if (chavesAntigas[i] != 0) {
+                int posicao = posicaoDaChave(chavesAntigas[i], novaCapacidade);
+                while (chaves[posicao] != 0) {
+                    posicao = (posicao + 1) & (novaCapacidade - 1);
+                }
+                chaves[posicao] = chavesAntigas[i];
+                valores[posicao] = valoresAntigos[i];
+            }
+        }
+    }
+
+    /**
+     * Calcula a posição inicial de uma chave na tabela. Espalha os bits do
+     * identificador, já que identificadores sequenciais cairiam em posições
+     * vizinhas.
+     *
+     * @param chave      Identificador da mensagem
+     * @param capacidade Capacidade da tabela (potência de 2)
+     * @return Posição inicial da chave
+     */
+    private static int posicaoDaChave(int chave, int capacidade) {
+        int h = chave * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (capacidade - 1);
+    }
+}
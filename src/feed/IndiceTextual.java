@@ -0,0 +1,544 @@
+package feed;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Índice invertido das palavras das mensagens do Feed: para cada termo,
+ * guarda os ids (em ordem crescente) das mensagens em que ele aparece, seja
+ * no texto, na legenda da foto ou nos comentários.
+ *
+ * Os termos são normalizados para a busca em português: letras minúsculas e
+ * sem acentos ou cedilha ("Ação" e "acao" são o mesmo termo). Os termos ficam
+ * em um mapa ordenado, o que permite buscar por prefixo ("fot*" encontra
+ * "foto", "fotografia", ...).
+ *
+ * O índice pode ser usado por várias threads ao mesmo tempo. A lista de ids de
+ * um termo só recebe ids novos no final (o caso comum, já que os ids crescem)
+ * e perde os ids do começo (as mensagens mais antigas, descartadas pela
+ * política de retenção) apenas avançando a posição inicial. Os ids que chegam
+ * fora de ordem (ex.: um comentário em uma mensagem antiga) ficam em um vetor
+ * pequeno à parte, trocado por um novo a cada alteração, que só é incorporado
+ * à lista quando cresce. Assim uma consulta pode percorrer uma cópia rasa da
+ * lista sem bloquear quem indexa, e um id fora de ordem custa O(raiz de n),
+ * e não uma cópia da lista inteira.
+ */
+class IndiceTextual {
+    // Vetor vazio de ids fora de ordem (compartilhado pelas listas)
+    private static final int[] NENHUM_ID = new int[0];
+    // Quantidade mínima de ids fora de ordem guardados à parte antes de serem
+    // incorporados à lista
+    private static final int MINIMO_FORA_DE_ORDEM = 32;
+
+    // Ids das mensagens de cada termo
+    private ConcurrentSkipListMap<String, ListaIds> termos;
+
+    /**
+     * Lista de ids em ordem crescente, sem repetições.
+     */
+    private static final class ListaIds {
+        // Ids (apenas as "tamanho" posições a partir de "inicio" são válidas)
+        private int[] ids;
+        // Posição do primeiro id (as anteriores são de ids já retirados)
+        private int inicio;
+        // Quantidade de ids
+        private int tamanho;
+        // Ids acrescentados fora de ordem (menores que o último da lista), em
+        // ordem crescente e que não estão em "ids"; o vetor nunca é alterado,
+        // apenas trocado por outro
+        private int[] foraDeOrdem;
+
+        private ListaIds() {
+            ids = new int[2];
+            inicio = 0;
+            tamanho = 0;
+            foraDeOrdem = NENHUM_ID;
+        }
+
+        /**
+         * Acrescenta um id na lista (se ainda não estiver nela).
+         */
+        private synchronized void adicionar(int id) {
+            if (foraDeOrdem.length > 0 && Arrays.binarySearch(foraDeOrdem, id) >= 0) {
+                return;
+            }
+            int fim = inicio + tamanho;
+            if (tamanho > 0 && ids[fim - 1] >= id) {
+                if (Arrays.binarySearch(ids, inicio, fim, id) >= 0) {
+                    return;
+                }
+                // o id vai para o vetor dos ids fora de ordem (um vetor novo,
+                // para não mover ids de um vetor que uma consulta possa estar
+                // lendo)
+                int posicao = -Arrays.binarySearch(foraDeOrdem, id) - 1;
+                int[] novos = new int[foraDeOrdem.length + 1];
+                System.arraycopy(foraDeOrdem, 0, novos, 0, posicao);
+                novos[posicao] = id;
+                System.arraycopy(foraDeOrdem, posicao, novos, posicao + 1, foraDeOrdem.length - posicao);
+                foraDeOrdem = novos;
+                if (foraDeOrdem.length > Math.max(MINIMO_FORA_DE_ORDEM, (int) Math.sqrt(tamanho))) {
+                    incorporarForaDeOrdem();
+                }
+                return;
+            }
+            if (fim == ids.length) {
+                ids = Arrays.copyOfRange(ids, inicio, inicio + Math.max(2, tamanho * 2));
+                inicio = 0;
+            }
+            ids[inicio + tamanho] = id;
+            tamanho++;
+        }
+
+        /**
+         * Junta os ids fora de ordem aos da lista, em um vetor novo. Com o
+         * limite de raiz de n ids fora de ordem, a junção (O(n)) acontece a
+         * cada raiz de n ids acrescentados fora de ordem.
+         */
+        private void incorporarForaDeOrdem() {
+            int total = tamanho + foraDeOrdem.length;
+            int[] novos = new int[Math.max(ids.length, total)];
+            int i = inicio;
+            int fim = inicio + tamanho;
+            int j = 0;
+            for (int k = 0; k < total; k++) {
+                if (j == foraDeOrdem.length || (i < fim && ids[i] < foraDeOrdem[j])) {
+                    novos[k] = ids[i++];
+                } else {
+                    novos[k] = foraDeOrdem[j++];
+                }
+            }
+            ids = novos;
+            inicio = 0;
+            tamanho = total;
+            foraDeOrdem = NENHUM_ID;
+        }
+
+        /**
+         * Acrescenta um id no final da lista sem manter a ordem (usado apenas
+         * nas listas temporárias de um lote, que são ordenadas depois).
+         */
+        private void anexar(int id) {
+            if (tamanho == ids.length) {
+                ids = Arrays.copyOf(ids, tamanho * 2);
+            }
+            ids[tamanho++] = id;
+        }
+
+        /**
+         * Ordena a lista e retira os ids repetidos (usado apenas nas listas
+         * temporárias de um lote).
+         */
+        private void ordenarSemRepeticoes() {
+            Arrays.sort(ids, 0, tamanho);
+            int unicos = 0;
+            for (int i = 0; i < tamanho; i++) {
+                if (unicos == 0 || ids[unicos - 1] != ids[i]) {
+                    ids[unicos++] = ids[i];
+                }
+            }
+            tamanho = unicos;
+        }
+
+        /**
+         * Acrescenta vários ids (em ordem crescente) na lista: de uma vez, se
+         * forem todos maiores que o último da lista, ou um a um.
+         */
+        private synchronized void adicionarTodos(ListaIds novos) {
+            if ((tamanho > 0 && ids[inicio + tamanho - 1] >= novos.ids[novos.inicio]) || foraDeOrdem.length > 0) {
+                for (int i = 0; i < novos.tamanho; i++) {
+                    adicionar(novos.ids[novos.inicio + i]);
+                }
+                return;
+            }
+            if (inicio + tamanho + novos.tamanho > ids.length) {
+                ids = Arrays.copyOfRange(ids, inicio, inicio + Math.max(ids.length * 2, tamanho + novos.tamanho));
+                inicio = 0;
+            }
+            System.arraycopy(novos.ids, novos.inicio, ids, inicio + tamanho, novos.tamanho);
+            tamanho += novos.tamanho;
+        }
+
+        /**
+         * Retira um id da lista. O primeiro id (o caso comum, já que as
+         * mensagens descartadas são as mais antigas) é retirado apenas
+         * avançando o início, e o vetor só é compactado quando a maior parte
+         * dele ficou sem uso; um id do meio (ou fora de ordem) é retirado em
+         * um vetor novo, para não mover ids de um vetor que uma consulta possa
+         * estar lendo.
+         *
+         * @return true se a lista ficou vazia
+         */
+        private synchronized boolean remover(int id) {
+            int fim = inicio + tamanho;
+            int posicao = Arrays.binarySearch(ids, inicio, fim, id);
+            if (posicao < 0) {
+                posicao = Arrays.binarySearch(foraDeOrdem, id);
+                if (posicao >= 0) {
+                    int[] novos = (foraDeOrdem.length == 1) ? NENHUM_ID : new int[foraDeOrdem.length - 1];
+                    System.arraycopy(foraDeOrdem, 0, novos, 0, posicao);
+                    System.arraycopy(foraDeOrdem, posicao + 1, novos, posicao, novos.length - posicao);
+                    foraDeOrdem = novos;
+                }
+                return estaVazia();
+            }
+            if (posicao == inicio) {
+                inicio++;
+                tamanho--;
+                if (tamanho < ids.length / 4) {
+                    ids = Arrays.copyOfRange(ids, inicio, inicio + Math.max(2, tamanho * 2));
+                    inicio = 0;
+                }
+                return estaVazia();
+            }
+            int[] novos = new int[ids.length];
+            System.arraycopy(ids, inicio, novos, 0, posicao - inicio);
+            System.arraycopy(ids, posicao + 1, novos, posicao - inicio, fim - posicao - 1);
+            ids = novos;
+            inicio = 0;
+            tamanho--;
+            return estaVazia();
+        }
+
+        /**
+         * Indica se a lista não tem nenhum id.
+         */
+        private boolean estaVazia() {
+            return tamanho == 0 && foraDeOrdem.length == 0;
+        }
+
+        /**
+         * Retorna uma cópia rasa da lista: o vetor atual, o início, o tamanho
+         * e o vetor dos ids fora de ordem, que não mudam mais para quem os
+         * recebe.
+         */
+        private synchronized Fatia fatia() {
+            return new Fatia(ids, inicio, tamanho, foraDeOrdem);
+        }
+    }
+
+    /**
+     * Ids de um termo da consulta, percorridos do maior (a mensagem mais
+     * recente) para o menor.
+     */
+    private interface IdsDoTermo {
+        /**
+         * Quantidade de ids (para um prefixo, pode contar um id mais de uma
+         * vez).
+         */
+        int quantidade();
+
+        boolean contem(int id);
+
+        boolean temProximo();
+
+        /**
+         * Retorna o próximo id (o maior ainda não percorrido), sem avançar.
+         */
+        int proximo();
+
+        void avancar();
+    }
+
+    /**
+     * Trecho de um vetor de ids em ordem crescente, mais os ids fora de ordem
+     * (também em ordem crescente) que ainda não foram incorporados a ele.
+     */
+    private static final class Fatia implements IdsDoTermo {
+        private final int[] ids;
+        private final int inicio;
+        private final int tamanho;
+        private final int[] foraDeOrdem;
+        // Posições do próximo id a ser percorrido na lista e nos ids fora de
+        // ordem (os dois são percorridos juntos, do fim para o começo)
+        private int posicaoLista;
+        private int posicaoForaDeOrdem;
+
+        private Fatia(int[] ids, int inicio, int tamanho, int[] foraDeOrdem) {
+            this.ids = ids;
+            this.inicio = inicio;
+            this.tamanho = tamanho;
+            this.foraDeOrdem = foraDeOrdem;
+            posicaoLista = inicio + tamanho - 1;
+            posicaoForaDeOrdem = foraDeOrdem.length - 1;
+        }
+
+        @Override
+        public int quantidade() {
+            return tamanho + foraDeOrdem.length;
+        }
+
+        @Override
+        public boolean contem(int id) {
+            return Arrays.binarySearch(ids, inicio, inicio + tamanho, id) >= 0
+                    || (foraDeOrdem.length > 0 && Arrays.binarySearch(foraDeOrdem, id) >= 0);
+        }
+
+        @Override
+        public boolean temProximo() {
+            return posicaoLista >= inicio || posicaoForaDeOrdem >= 0;
+        }
+
+        @Override
+        public int proximo() {
+            return proximoNaLista() ? ids[posicaoLista] : foraDeOrdem[posicaoForaDeOrdem];
+        }
+
+        @Override
+        public void avancar() {
+            if (proximoNaLista()) {
+                posicaoLista--;
+            } else {
+                posicaoForaDeOrdem--;
+            }
+        }
+
+        /**
+         * Indica se o próximo id é o da lista (e não o dos ids fora de ordem).
+         */
+        private boolean proximoNaLista() {
+            return posicaoForaDeOrdem < 0
+                    || (posicaoLista >= inicio && ids[posicaoLista] > foraDeOrdem[posicaoForaDeOrdem]);
+        }
+    }
+
+    /**
+     * União dos ids dos termos que começam com um prefixo. Os ids não são
+     * copiados para um vetor só: são percorridos intercalando as listas dos
+     * termos (a de maior próximo id primeiro), então uma busca que só precisa
+     * das mensagens mais recentes não percorre as listas inteiras.
+     */
+    private static final class UniaoFatias implements IdsDoTermo {
+        // Listas dos termos
+        private final List<Fatia> fatias;
+        // Listas que ainda têm ids a percorrer, pelo próximo id (o maior
+        // primeiro)
+        private final PriorityQueue<Fatia> aPercorrer;
+        // Soma das quantidades das listas
+        private final int quantidade;
+
+        private UniaoFatias(List<Fatia> fatias) {
+            this.fatias = fatias;
+            aPercorrer = new PriorityQueue<>(Math.max(1, fatias.size()),
+                    (uma, outra) -> Integer.compare(outra.proximo(), uma.proximo()));
+            int soma = 0;
+            for (Fatia fatia : fatias) {
+                soma += fatia.quantidade();
+                if (fatia.temProximo()) {
+                    aPercorrer.add(fatia);
+                }
+            }
+            quantidade = soma;
+        }
+
+        @Override
+        public int quantidade() {
+            return quantidade;
+        }
+
+        @Override
+        public boolean contem(int id) {
+            for (Fatia fatia : fatias) {
+                if (fatia.contem(id)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean temProximo() {
+            return !aPercorrer.isEmpty();
+        }
+
+        @Override
+        public int proximo() {
+            return aPercorrer.peek().proximo();
+        }
+
+        @Override
+        public void avancar() {
+            // avança todas as listas em que o id aparece (uma mensagem pode
+            // ter mais de um termo com o prefixo)
+            int id = proximo();
+            while (!aPercorrer.isEmpty() && aPercorrer.peek().proximo() == id) {
+                Fatia fatia = aPercorrer.poll();
+                fatia.avancar();
+                if (fatia.temProximo()) {
+                    aPercorrer.add(fatia);
+                }
+            }
+        }
+    }
+
+    /**
+     * Cria o índice vazio.
+     */
+    public IndiceTextual() {
+        termos = new ConcurrentSkipListMap<>();
+    }
+
+    /**
+     * Indexa os termos de um texto para a mensagem de id passado.
+     *
+     * @param idMensagem Identificador da mensagem
+     * @param texto      Texto (da mensagem, legenda ou comentário)
+     */
+    public void indexar(int idMensagem, String texto) {
+        for (String termo : extrairTermos(texto)) {
+            termos.computeIfAbsent(termo, t -> new ListaIds()).adicionar(idMensagem);
+        }
+    }
+
+    /**
+     * Indexa vários textos de uma vez (ex.: as postagens e comentários de um
+     * lote): os ids são agrupados por termo antes, e cada termo é procurado
+     * no mapa ordenado uma única vez, em vez de uma vez por texto.
+     *
+     * @param idsMensagens Identificador da mensagem de cada texto
+     * @param textos       Textos a serem indexados
+     * @param quantidade   Quantidade de textos (primeiras posições dos vetores)
+     */
+    public void indexar(int[] idsMensagens, String[] textos, int quantidade) {
+        HashMap<String, ListaIds> termosDoLote = new HashMap<>();
+        for (int i = 0; i < quantidade; i++) {
+            for (String termo : extrairTermos(textos[i])) {
+                termosDoLote.computeIfAbsent(termo, t -> new ListaIds()).anexar(idsMensagens[i]);
+            }
+        }
+        for (Map.Entry<String, ListaIds> termo : termosDoLote.entrySet()) {
+            termo.getValue().ordenarSemRepeticoes();
+            termos.computeIfAbsent(termo.getKey(), t -> new ListaIds()).adicionarTodos(termo.getValue());
+        }
+    }
+
+    /**
+     * Retira a mensagem de id passado das listas dos termos de um texto. Os
+     * termos que ficam sem mensagens são retirados do índice, para que ele não
+     * cresça com cada palavra já postada; por isso não pode haver indexação
+     * em andamento (no Feed, é chamado com o lock de escrita).
+     *
+     * @param idMensagem Identificador da mensagem
+     * @param texto      Texto que havia sido indexado para a mensagem
+     */
+    public void remover(int idMensagem, String texto) {
+        for (String termo : extrairTermos(texto)) {
+            ListaIds lista = termos.get(termo);
+            if (lista != null && lista.remover(idMensagem)) {
+                termos.remove(termo, lista);
+            }
+        }
+    }
+
+    /**
+     * Busca as mensagens que contêm todos os termos da consulta, da mais
+     * recente para a mais antiga. Um termo terminado em "*" é buscado como
+     * prefixo.
+     *
+     * @param consulta Termos separados por espaço (ex.: "praia fot*")
+     * @param limite   Quantidade máxima de ids retornados
+     * @return Ids das mensagens encontradas (vazio se a consulta não tiver
+     *         termos)
+     */
+    public int[] buscar(String consulta, int limite) {
+        List<IdsDoTermo> idsDosTermos = new ArrayList<>();
+        for (String parte : consulta.trim().split("\\s+")) {
+            boolean prefixo = parte.endsWith("*");
+            List<String> termosDaParte = extrairTermos(parte);
+            for (int i = 0; i < termosDaParte.size(); i++) {
+                String termo = termosDaParte.get(i);
+                // apenas o último termo de uma parte com "*" é prefixo
+                // (ex.: "guarda-chu*" vira "guarda" e o prefixo "chu")
+                boolean ultimo = i == termosDaParte.size() - 1;
+                IdsDoTermo ids = (prefixo && ultimo) ? buscarPrefixo(termo) : buscarTermo(termo);
+                if (ids.quantidade() == 0) {
+                    return new int[0];
+                }
+                idsDosTermos.add(ids);
+            }
+        }
+        if (idsDosTermos.isEmpty()) {
+            return new int[0];
+        }
+        // percorre a menor lista, do fim (mais recentes) para o começo,
+        // verificando os ids nas demais por busca binária
+        idsDosTermos.sort(Comparator.comparingInt(IdsDoTermo::quantidade));
+        IdsDoTermo menor = idsDosTermos.get(0);
+        int[] encontrados = new int[Math.min(limite, menor.quantidade())];
+        int quantidade = 0;
+        while (menor.temProximo() && quantidade < encontrados.length) {
+            int id = menor.proximo();
+            menor.avancar();
+            boolean emTodas = true;
+            for (int j = 1; j < idsDosTermos.size() && emTodas; j++) {
+                emTodas = idsDosTermos.get(j).contem(id);
+            }
+            if (emTodas) {
+                encontrados[quantidade++] = id;
+            }
+        }
+        return Arrays.copyOf(encontrados, quantidade);
+    }
+
+    /**
+     * Retorna os ids das mensagens de um termo exato.
+     */
+    private Fatia buscarTermo(String termo) {
+        ListaIds lista = termos.get(termo);
+        return (lista == null) ? new Fatia(NENHUM_ID, 0, 0, NENHUM_ID) : lista.fatia();
+    }
+
+    /**
+     * Retorna os ids das mensagens de todos os termos que começam com o
+     * prefixo.
+     */
+    private IdsDoTermo buscarPrefixo(String prefixo) {
+        Map<String, ListaIds> comPrefixo = termos.subMap(prefixo, prefixo + Character.MAX_VALUE);
+        List<Fatia> fatias = new ArrayList<>();
+        for (ListaIds lista : comPrefixo.values()) {
+            fatias.add(lista.fatia());
+        }
+        return (fatias.size() == 1) ? fatias.get(0) : new UniaoFatias(fatias);
+    }
+
+    /**
+     * Separa um texto em termos normalizados: sequências de letras e dígitos,
+     * em minúsculas e sem acentos nem cedilha.
+     *
+     * @param texto Texto a ser separado
+     * @return Termos do texto (na ordem em que aparecem, podendo repetir)
+     */
+    static List<String> extrairTermos(String texto) {
+        List<String> termosDoTexto = new ArrayList<>();
+        if (texto == null) {
+            return termosDoTexto;
+        }
+        // a decomposição separa cada letra acentuada em letra + acento, e os
+        // acentos são então ignorados
+        String decomposto = Normalizer.normalize(texto, Normalizer.Form.NFD);
+        StringBuilder termo = new StringBuilder();
+        for (int i = 0; i < decomposto.length(); i++) {
+            char c = decomposto.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                termo.append(c);
+            } else if (termo.length() > 0) {
+                termosDoTexto.add(termo.toString().toLowerCase(Locale.ROOT));
+                termo.setLength(0);
+            }
+        }
+        if (termo.length() > 0) {
+            termosDoTexto.add(termo.toString().toLowerCase(Locale.ROOT));
+        }
+        return termosDoTexto;
+    }
+}
@@ -0,0 +1,353 @@
+package feed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Instantâneo (snapshot) do estado completo do Feed de Notícias: mensagens,
+ * autores, curtidas, comentários e fotos.
+ *
+ * O instantâneo de número N contém o estado resultante de todos os segmentos
+ * do diário anteriores ao segmento N. Ao abrir o Feed basta carregar o
+ * instantâneo mais recente e reproduzir os segmentos a partir do N. O Feed
+ * mantém também o instantâneo anterior e os segmentos a partir dele, para
+ * poder usá-lo se o mais recente estiver corrompido.
+ *
+ * A captura é feita com o Feed bloqueado, mas guarda apenas referências e
+ * contadores (as mensagens só crescem: o texto e a foto não mudam, e os
+ * comentários são apenas acrescentados). A gravação em disco, que é a parte
+ * demorada, pode então ser feita em outra thread enquanto o Feed continua
+ * recebendo operações.
+ *
+ * O arquivo é gravado com um nome temporário e renomeado apenas no final,
+ * então um instantâneo interrompido no meio nunca é confundido com um
+ * instantâneo válido.
+ */
+class InstantaneoFeed {
+    // Prefixo e extensão dos arquivos de instantâneo
+    private static final String PREFIXO = "instantaneo-";
+    private static final String EXTENSAO = ".snap";
+    // Extensão do arquivo enquanto está sendo gravado
+    private static final String EXTENSAO_TEMPORARIA = ".tmp";
+    // Marcadores de início e fim do arquivo e versão do formato
+    private static final int MARCADOR_INICIO = 0x46454544;
+    private static final int MARCADOR_FIM = 0x46494D21;
+    // (na versão 1 os bytes das fotos ficavam dentro do instantâneo; na 2 fica
+    // apenas a referência para o repositório de fotos)
+    private static final int VERSAO = 2;
+    // Tipos de mensagem no arquivo
+    private static final byte MENSAGEM_TEXTO = 1;
+    private static final byte MENSAGEM_FOTO = 2;
+    // Tamanho do buffer usado na leitura e na escrita
+    private static final int TAMANHO_BUFFER = 64 * 1024;
+
+    // Número do primeiro segmento do diário que não está no instantâneo
+    private long numeroSegmento;
+    // Mensagens do Feed no momento da captura
+    private Mensagem[] mensagens;
+    // Curtidas de cada mensagem no momento da captura
+    private long[] curtidas;
+    // Quantidade de comentários de cada mensagem no momento da captura
+    private int[] nroComentarios;
+
+    /**
+     * Captura o estado do Feed. Deve ser chamado sem que nenhuma operação
+     * esteja alterando o Feed (com o lock de escrita do Feed).
+     *
+     * @param mensagens      Mensagens do Feed
+     * @param numeroSegmento Primeiro segmento do diário posterior à captura
+     */
+    public InstantaneoFeed(List<Mensagem> mensagens, long numeroSegmento) {
+        this.numeroSegmento = numeroSegmento;
+        this.mensagens = mensagens.toArray(new Mensagem[0]);
+        curtidas = new long[this.mensagens.length];
+        nroComentarios = new int[this.mensagens.length];
+        for (int i = 0; i < this.mensagens.length; i++) {
+            curtidas[i] = this.mensagens[i].getNroCurtidas();
+            nroComentarios[i] = this.mensagens[i].getNroComentarios();
+        }
+    }
+
+    /**
+     * Retorna o número do primeiro segmento do diário que não está no
+     * instantâneo.
+     *
+     * @return Número do segmento
+     */
+    public long getNumeroSegmento() {
+        return numeroSegmento;
+    }
+
+    /**
+     * Grava o instantâneo no diretório passado (em um arquivo temporário que é
+     * renomeado depois de gravado em disco).
+     *
+     * @param diretorio Diretório de dados do Feed
+     * @throws IOException Se houver erro na gravação
+     */
+    public void gravar(Path diretorio) throws IOException {
+        Path arquivo = caminho(diretorio, numeroSegmento);
+        Path temporario = arquivo.resolveSibling(arquivo.getFileName() + EXTENSAO_TEMPORARIA);
+        try (FileChannel canal = FileChannel.open(temporario, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream saidaCanal = Channels.newOutputStream(canal);
+            DataOutputStream saida = new DataOutputStream(new BufferedOutputStream(saidaCanal, TAMANHO_BUFFER));
+            saida.writeInt(MARCADOR_INICIO);
+            saida.writeInt(VERSAO);
+            saida.writeLong(numeroSegmento);
+            saida.writeInt(mensagens.length);
+            for (int i = 0; i < mensagens.length; i++) {
+                escreverMensagem(saida, mensagens[i], curtidas[i], nroComentarios[i]);
+            }
+            saida.writeInt(MARCADOR_FIM);
+            saida.flush();
+            canal.force(true);
+        }
+        Files.move(temporario, arquivo, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        // sem isso a renomeação pode se perder em uma queda de energia,
+        // mesmo com o conteúdo do arquivo já gravado
+        sincronizarDiretorio(diretorio);
+    }
+
+    /**
+     * Força em disco as entradas do diretório (arquivos criados, renomeados
+     * ou apagados). Em sistemas que não permitem abrir um diretório (ex.:
+     * Windows) não faz nada.
+     */
+    private static void sincronizarDiretorio(Path diretorio) throws IOException {
+        FileChannel canal;
+        try {
+            canal = FileChannel.open(diretorio, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (canal) {
+            canal.force(true);
+        }
+    }
+
+    /**
+     * Escreve uma mensagem (com as curtidas e comentários capturados). Também
+     * usado pelo arquivo de mensagens descartadas da memória.
+     */
+    static void escreverMensagem(DataOutputStream saida, Mensagem mensagem, long curtidas,
+            int nroComentarios) throws IOException {
+        if (mensagem instanceof MensagemFoto) {
+            MensagemFoto mensagemFoto = (MensagemFoto) mensagem;
+            saida.writeByte(MENSAGEM_FOTO);
+            escreverCabecalho(saida, mensagem);
+            DiarioFeed.escreverTexto(saida, mensagemFoto.getLegenda());
+            DiarioFeed.escreverReferencia(saida, mensagemFoto.getReferenciaFoto());
+        } else {
+            saida.writeByte(MENSAGEM_TEXTO);
+            escreverCabecalho(saida, mensagem);
+            DiarioFeed.escreverTexto(saida, ((MensagemTexto) mensagem).getTexto());
+        }
+        saida.writeLong(curtidas);
+        saida.writeInt(nroComentarios);
+        // os comentários recebidos depois da captura ficam no diário
+        Iterator<String> comentarios = mensagem.getComentarios().iterator();
+        for (int i = 0; i < nroComentarios; i++) {
+            DiarioFeed.escreverTexto(saida, comentarios.next());
+        }
+    }
+
+    /**
+     * Escreve os dados comuns a todas as mensagens.
+     */
+    private static void escreverCabecalho(DataOutputStream saida, Mensagem mensagem) throws IOException {
+        saida.writeInt(mensagem.getId());
+        saida.writeLong(mensagem.getHoraPostagem());
+        DiarioFeed.escreverTexto(saida, mensagem.getAutor());
+    }
+
+    /**
+     * Carrega o instantâneo válido mais recente do diretório. Se o mais recente
+     * estiver corrompido, tenta os anteriores, mas só aceita um instantâneo
+     * anterior se o diário ainda tiver o segmento a partir do qual ele deve
+     * ser reproduzido; caso contrário o estado não pode ser reconstruído e a
+     * abertura falha (em vez de abrir o Feed com operações faltando).
+     *
+     * @param diretorio       Diretório de dados do Feed
+     * @param repositorioFotos Repositório onde as fotos de instantâneos antigos
+     *                         (com os bytes das fotos) são guardadas
+     * @param mensagens        Lista onde as mensagens carregadas são colocadas
+     * @return Número do primeiro segmento do diário a ser reproduzido depois
+     *         do instantâneo (1 se não há instantâneo)
+     * @throws IOException Se houver erro ao listar o diretório ou se nenhum
+     *                     instantâneo utilizável for encontrado
+     */
+    public static long carregarMaisRecente(Path diretorio, RepositorioFotos repositorioFotos,
+            List<Mensagem> mensagens) throws IOException {
+        List<Path> arquivos = listar(diretorio);
+        if (arquivos.isEmpty()) {
+            return 1;
+        }
+        IOException erro = null;
+        for (int i = arquivos.size() - 1; i >= 0; i--) {
+            Path arquivo = arquivos.get(i);
+            if (erro != null && !DiarioFeed.existeSegmento(diretorio, numero(arquivo))) {
+                break;
+            }
+            try {
+                return carregar(arquivo, repositorioFotos, mensagens);
+            } catch (IOException e) {
+                System.err.println("Instantâneo inválido ignorado: " + arquivo + " (" + e + ")");
+                mensagens.clear();
+                if (erro == null) {
+                    erro = e;
+                }
+            }
+        }
+        // sem nenhum instantâneo, o diário precisa estar completo
+        if (DiarioFeed.existeSegmento(diretorio, 1)) {
+            return 1;
+        }
+        throw new IOException("Nenhum instantâneo válido e os segmentos do diário anteriores a "
+                + arquivos.get(arquivos.size() - 1) + " já foram apagados", erro);
+    }
+
+    /**
+     * Carrega as mensagens de um arquivo de instantâneo.
+     *
+     * @return Número do primeiro segmento do diário posterior ao instantâneo
+     */
+    private static long carregar(Path arquivo, RepositorioFotos repositorioFotos, List<Mensagem> mensagens)
+            throws IOException {
+        try (InputStream entradaArquivo = Files.newInputStream(arquivo);
+                DataInputStream entrada = new DataInputStream(
+                        new BufferedInputStream(entradaArquivo, TAMANHO_BUFFER))) {
+            if (entrada.readInt() != MARCADOR_INICIO) {
+                throw new IOException("Formato de instantâneo desconhecido");
+            }
+            int versao = entrada.readInt();
+            if (versao < 1 || versao > VERSAO) {
+                throw new IOException("Versão de instantâneo desconhecida: " + versao);
+            }
+            long numeroSegmento = entrada.readLong();
+            int quantidade = entrada.readInt();
+            for (int i = 0; i < quantidade; i++) {
+                mensagens.add(lerMensagem(entrada, versao, repositorioFotos));
+            }
+            if (entrada.readInt() != MARCADOR_FIM) {
+                throw new IOException("Instantâneo incompleto");
+            }
+            return numeroSegmento;
+        }
+    }
+
+    /**
+     * Lê uma mensagem escrita por escreverMensagem.
+     */
+    private static Mensagem lerMensagem(DataInputStream entrada, int versao, RepositorioFotos repositorioFotos)
+            throws IOException {
+        byte tipo = entrada.readByte();
+        int id = entrada.readInt();
+        long horaPostagem = entrada.readLong();
+        String autor = lerTexto(entrada);
+        Mensagem mensagem;
+        if (tipo == MENSAGEM_FOTO) {
+            String legenda = lerTexto(entrada);
+            ReferenciaFoto referenciaFoto;
+            if (versao == 1) {
+                byte[] bytesDaFoto = new byte[entrada.readInt()];
+                entrada.readFully(bytesDaFoto);
+                referenciaFoto = repositorioFotos.armazenar(bytesDaFoto);
+            } else {
+                referenciaFoto = new ReferenciaFoto(entrada.readInt(), entrada.readInt(), entrada.readInt());
+            }
+            mensagem = new MensagemFoto(id, autor, horaPostagem, referenciaFoto, legenda);
+        } else if (tipo == MENSAGEM_TEXTO) {
+            mensagem = new MensagemTexto(id, autor, horaPostagem, lerTexto(entrada));
+        } else {
+            throw new IOException("Tipo de mensagem desconhecido no instantâneo: " + tipo);
+        }
+        long curtidas = entrada.readLong();
+        int nroComentarios = entrada.readInt();
+        List<String> comentarios = new ArrayList<>(nroComentarios);
+        for (int i = 0; i < nroComentarios; i++) {
+            comentarios.add(lerTexto(entrada));
+        }
+        mensagem.restaurarInteracoes(curtidas, comentarios);
+        return mensagem;
+    }
+
+    /**
+     * Lê um texto escrito por DiarioFeed.escreverTexto.
+     */
+    private static String lerTexto(DataInputStream entrada) throws IOException {
+        byte[] bytes = new byte[entrada.readInt()];
+        entrada.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Apaga os instantâneos anteriores ao de número passado (e arquivos
+     * temporários de gravações interrompidas).
+     *
+     * @param diretorio      Diretório de dados do Feed
+     * @param numeroSegmento Número do instantâneo mais recente
+     */
+    public static void removerAnteriores(Path diretorio, long numeroSegmento) throws IOException {
+        for (Path arquivo : listar(diretorio)) {
+            if (numero(arquivo) < numeroSegmento) {
+                Files.deleteIfExists(arquivo);
+            }
+        }
+        try (DirectoryStream<Path> temporarios = Files.newDirectoryStream(diretorio,
+                PREFIXO + "*" + EXTENSAO + EXTENSAO_TEMPORARIA)) {
+            for (Path temporario : temporarios) {
+                if (numero(temporario) < numeroSegmento) {
+                    Files.deleteIfExists(temporario);
+                }
+            }
+        }
+    }
+
+    /**
+     * Lista os instantâneos completos do diretório, do mais antigo para o mais
+     * recente.
+     */
+    private static List<Path> listar(Path diretorio) throws IOException {
+        List<Path> arquivos = new ArrayList<>();
+        try (DirectoryStream<Path> instantaneos = Files.newDirectoryStream(diretorio, PREFIXO + "*" + EXTENSAO)) {
+            for (Path arquivo : instantaneos) {
+                arquivos.add(arquivo);
+            }
+        }
+        arquivos.sort(Comparator.comparingLong(InstantaneoFeed::numero));
+        return arquivos;
+    }
+
+    /**
+     * Retorna o número de um arquivo de instantâneo a partir do nome.
+     */
+    private static long numero(Path arquivo) {
+        String nome = arquivo.getFileName().toString();
+        return Long.parseLong(nome.substring(PREFIXO.length(), nome.indexOf('.')));
+    }
+
+    /**
+     * Retorna o caminho do instantâneo de número passado.
+     */
+    private static Path caminho(Path diretorio, long numeroSegmento) {
+        return diretorio.resolve(String.format("%s%06d%s", PREFIXO, numeroSegmento, EXTENSAO));
+    }
+}
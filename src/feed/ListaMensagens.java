@@ -0,0 +1,112 @@
+package feed;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Lista de mensagens em ordem de postagem que permite retirar as mais antigas
+ * (do começo da lista) em tempo constante, como é feito pela política de
+ * retenção do Feed.
+ *
+ * As mensagens ficam em um vetor a partir da posição "inicio"; retirar a
+ * primeira mensagem apenas avança o início. O espaço livre no começo do vetor
+ * é reaproveitado quando o vetor enche.
+ */
+class ListaMensagens extends AbstractList<Mensagem> implements RandomAccess {
+    // Capacidade inicial do vetor
+    private static final int CAPACIDADE_INICIAL = 16;
+
+    // Mensagens (apenas as posições de "inicio" até "fim" são válidas)
+    private Mensagem[] elementos;
+    // Posição da primeira mensagem no vetor
+    private int inicio;
+    // Posição seguinte à última mensagem no vetor
+    private int fim;
+
+    /**
+     * Cria a lista vazia.
+     */
+    public ListaMensagens() {
+        elementos = new Mensagem[CAPACIDADE_INICIAL];
+        inicio = 0;
+        fim = 0;
+    }
+
+    @Override
+    public Mensagem get(int posicao) {
+        if (posicao < 0 || posicao >= fim - inicio) {
+            throw new IndexOutOfBoundsException("Posição " + posicao + ", tamanho " + (fim - inicio));
+        }
+        return elementos[inicio + posicao];
+    }
+
+    @Override
+    public int size() {
+        return fim - inicio;
+    }
+
+    @Override
+    public boolean add(Mensagem mensagem) {
+        if (fim == elementos.length) {
+            abrirEspaco();
+        }
+        elementos[fim++] = mensagem;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Garante espaço para mais mensagens no final do vetor sem que ele precise
+     * ser realocado várias vezes durante a inclusão de um lote.
+     *
+     * @param quantidade Quantidade de mensagens que serão adicionadas
+     */
+    public void reservar(int quantidade) {
+        int tamanho = fim - inicio;
+        if (fim + quantidade > elementos.length) {
+            int capacidade = Math.max(elementos.length, CAPACIDADE_INICIAL);
+            while (capacidade < tamanho + quantidade) {
+                capacidade *= 2;
+            }
+            elementos = Arrays.copyOfRange(elementos, inicio, inicio + capacidade);
+            inicio = 0;
+            fim = tamanho;
+        }
+    }
+
+    /**
+     * Retira a primeira (mais antiga) mensagem da lista.
+     *
+     * @return A mensagem retirada
+     */
+    public Mensagem removerPrimeira() {
+        if (inicio == fim) {
+            throw new IndexOutOfBoundsException("Lista de mensagens vazia");
+        }
+        Mensagem primeira = elementos[inicio];
+        elementos[inicio++] = null;
+        if (inicio == fim) {
+            inicio = 0;
+            fim = 0;
+        }
+        modCount++;
+        return primeira;
+    }
+
+    /**
+     * Abre espaço no final do vetor: move as mensagens para o começo se mais
+     * da metade do vetor estiver livre, ou dobra a capacidade.
+     */
+    private void abrirEspaco() {
+        int tamanho = fim - inicio;
+        if (inicio > elementos.length / 2) {
+            System.arraycopy(elementos, inicio, elementos, 0, tamanho);
+            Arrays.fill(elementos, tamanho, fim, null);
+        } else {
+            elementos = Arrays.copyOfRange(elementos, inicio, inicio + elementos.length * 2);
+        }
+        inicio = 0;
+        fim = tamanho;
+    }
+}
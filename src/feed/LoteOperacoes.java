@@ -0,0 +1,116 @@
+package feed;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Lote de operações (postagens de texto, curtidas e comentários) a serem
+ * executadas de uma só vez no Feed, por exemplo ao importar um histórico.
+ *
+ * O lote apenas guarda as operações, na ordem em que foram acrescentadas; elas
+ * são aplicadas por FeedNoticias.executar, que bloqueia o Feed uma única vez,
+ * reserva os ids das novas mensagens em bloco, espera a gravação do diário
+ * apenas no final e avisa os ouvintes uma única vez.
+ */
+public class LoteOperacoes {
+    // Tipos de operação
+    static final byte POSTAGEM_TEXTO = 1;
+    static final byte CURTIDA = 2;
+    static final byte COMENTARIO = 3;
+
+    /**
+     * Uma operação do lote.
+     */
+    static class Operacao {
+        // Tipo da operação
+        final byte tipo;
+        // Identificador da mensagem curtida ou comentada (0 nas postagens)
+        final int idMensagem;
+        // Autor da mensagem postada (null nas curtidas e comentários)
+        final String autor;
+        // Texto da mensagem ou do comentário (null nas curtidas)
+        final String texto;
+
+        private Operacao(byte tipo, int idMensagem, String autor, String texto) {
+            this.tipo = tipo;
+            this.idMensagem = idMensagem;
+            this.autor = autor;
+            this.texto = texto;
+        }
+    }
+
+    // Operações do lote, na ordem em que serão executadas
+    private List<Operacao> operacoes;
+    // Quantidade de postagens no lote
+    private int nroPostagens;
+
+    /**
+     * Cria um lote vazio.
+     */
+    public LoteOperacoes() {
+        operacoes = new ArrayList<>();
+        nroPostagens = 0;
+    }
+
+    /**
+     * Acrescenta no lote a postagem de uma mensagem de texto.
+     *
+     * @param autor Nome do autor da mensagem.
+     * @param texto Texto da mensagem em si.
+     */
+    public void postarMensagemTexto(String autor, String texto) {
+        operacoes.add(new Operacao(POSTAGEM_TEXTO, 0, autor, texto));
+        nroPostagens++;
+    }
+
+    /**
+     * Acrescenta no lote a curtida de uma mensagem que já está no Feed.
+     * A mensagem não pode ser uma postada neste mesmo lote (o id dela só
+     * existe depois que o lote é executado).
+     *
+     * @param idMensagem Identificador da mensagem
+     */
+    public void curtir(int idMensagem) {
+        operacoes.add(new Operacao(CURTIDA, idMensagem, null, null));
+    }
+
+    /**
+     * Acrescenta no lote um comentário em uma mensagem que já está no Feed.
+     * A mensagem não pode ser uma postada neste mesmo lote (o id dela só
+     * existe depois que o lote é executado).
+     *
+     * @param idMensagem Identificador da mensagem
+     * @param comentario Comentário a ser acrescentado
+     */
+    public void comentar(int idMensagem, String comentario) {
+        operacoes.add(new Operacao(COMENTARIO, idMensagem, null, comentario));
+    }
+
+    /**
+     * Retorna a quantidade de operações no lote.
+     *
+     * @return Quantidade de operações
+     */
+    public int tamanho() {
+        return operacoes.size();
+    }
+
+    /**
+     * Retorna a quantidade de postagens no lote.
+     *
+     * @return Quantidade de postagens
+     */
+    public int getNroPostagens() {
+        return nroPostagens;
+    }
+
+    /**
+     * Retorna as operações do lote (somente-leitura).
+     *
+     * @return Operações na ordem em que foram acrescentadas
+     */
+    List<Operacao> getOperacoes() {
+        return Collections.unmodifiableList(operacoes);
+    }
+}
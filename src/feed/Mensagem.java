@@ -1,6 +1,10 @@
 package feed;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Classe que representa uma mensagem em uma rede social.
@@ -22,31 +26,143 @@ import java.util.*;
 abstract class Mensagem implements Publicacao {
     // Identificador da mensagem
     private int id;
-    // Atributo estático para controlar os IDs das mensagens
-    private static int proximoId = 1;
-    // Nome do autor da mensagem
+    // Atributo estático para controlar os IDs das mensagens (atômico para que
+    // duas mensagens criadas ao mesmo tempo não recebam o mesmo id)
+    private static final AtomicInteger proximoId = new AtomicInteger(1);
+    // Nome do autor da mensagem (ao entrar no Feed, passa a ser a mesma
+    // instância guardada no dicionário de autores do Feed)
     private String autor;
-    // Quantidade de curtidas que a mensagem recebeu
-    private int nroCurtidas;
+    // Número do autor no dicionário de autores do Feed (-1 enquanto a
+    // mensagem não foi adicionada a um Feed)
+    private int numeroAutor;
+    // Quantidade de curtidas que a mensagem recebeu (incrementada de forma
+    // atômica, sem lock, por várias threads ao mesmo tempo)
+    private volatile long nroCurtidas;
     // Hora na qual a mensagem foi postada (em milissegundos)
     private long horaPostagem;
-    // Lista de comentários que a mensagem recebeu
-    private ArrayList<String> comentarios;
+    // Comentários que a mensagem recebeu, na ordem em que foram feitos, em
+    // blocos de até TAMANHO_BLOCO_COMENTARIOS (null enquanto não houver
+    // nenhum). Um comentário novo ocupa a próxima posição livre, sem copiar os
+    // anteriores, e as posições já ocupadas nunca mudam (ver
+    // acrescentarComentarios)
+    private volatile String[][] blocosComentarios;
+    // Quantidade de comentários nos blocos (atualizada depois de o comentário
+    // estar no bloco, então quem lê primeiro a quantidade vê todos eles)
+    private volatile int nroComentarios;
+    // Quantidade de comentários em cada bloco (o primeiro bloco começa menor
+    // e cresce até esse tamanho, para não ocupar memória à toa nas mensagens
+    // com poucos comentários)
+    private static final int TAMANHO_BLOCO_COMENTARIOS = 32;
+
+    // Texto de exibição já formatado do início da mensagem (id, autor e
+    // conteúdo), que nunca muda depois que a mensagem é criada
+    private String textoCabecalho;
+    // Texto de exibição já formatado do final da mensagem (curtidas e
+    // comentários), descartado quando a mensagem é curtida ou comentada
+    private volatile TextoEmCache textoRodape;
+    // Versão da mensagem, incrementada a cada curtida ou comentário (o texto
+    // em cache só é usado se tiver sido gerado na versão atual)
+    private volatile int versao;
+    // Permite incrementar a versão de forma atômica sem criar um objeto por
+    // mensagem
+    private static final AtomicIntegerFieldUpdater<Mensagem> atualizadorVersao = AtomicIntegerFieldUpdater
+            .newUpdater(Mensagem.class, "versao");
+    // Permite alterar as curtidas de forma atômica sem um objeto por mensagem
+    // (como o LongAdder usado antes, que ocupava mais memória que a própria
+    // mensagem)
+    private static final AtomicLongFieldUpdater<Mensagem> atualizadorCurtidas = AtomicLongFieldUpdater
+            .newUpdater(Mensagem.class, "nroCurtidas");
+
+    // Quantidade de vezes que o texto em cache foi aproveitado (todas as
+    // mensagens)
+    private static final LongAdder acertosCacheTexto = new LongAdder();
+    // Quantidade de vezes que o texto precisou ser formatado novamente
+    private static final LongAdder falhasCacheTexto = new LongAdder();
+
+    /**
+     * Texto formatado guardado junto com a versão da mensagem em que foi
+     * gerado.
+     */
+    private static class TextoEmCache {
+        // Versão da mensagem quando o texto foi gerado
+        private final int versao;
+        // Texto formatado
+        private final String texto;
+
+        private TextoEmCache(int versao, String texto) {
+            this.versao = versao;
+            this.texto = texto;
+        }
+    }
 
     /**
      * Constroi uma mensagem a partir do nome do autor.
      * Define automaticamente a hora da postagem; inicializa as curtidas com
-     * zero e cria a lista de comentarios vazia.
+     * zero e a mensagem começa sem comentarios.
      * 
      * @param autor Nome do autor da mensagem
      */
     public Mensagem(String autor) {
         this.autor = autor;
-        this.id = proximoId;
-        proximoId++;
+        numeroAutor = -1;
+        this.id = proximoId.getAndIncrement();
         nroCurtidas = 0;
         horaPostagem = System.currentTimeMillis();
-        comentarios = new ArrayList<String>();
+        blocosComentarios = null;
+        nroComentarios = 0;
+    }
+
+    /**
+     * Reconstroi uma mensagem que já havia sido postada (ex.: lida do diário
+     * do Feed), mantendo o id e a hora da postagem originais. Garante que as
+     * próximas mensagens criadas recebam ids maiores que o dela.
+     * 
+     * @param id           Identificador original da mensagem
+     * @param autor        Nome do autor da mensagem
+     * @param horaPostagem Hora original da postagem (em milissegundos)
+     */
+    Mensagem(int id, String autor, long horaPostagem) {
+        this.autor = autor;
+        numeroAutor = -1;
+        this.id = id;
+        proximoId.accumulateAndGet(id + 1, Math::max);
+        nroCurtidas = 0;
+        this.horaPostagem = horaPostagem;
+        blocosComentarios = null;
+        nroComentarios = 0;
+    }
+
+    /**
+     * Garante que as próximas mensagens criadas recebam ids maiores que o
+     * passado (ex.: o maior id de uma mensagem já descartada da memória).
+     * 
+     * @param id Maior id já usado
+     */
+    static void reservarIdsAte(int id) {
+        proximoId.accumulateAndGet(id + 1, Math::max);
+    }
+
+    /**
+     * Reserva um bloco de ids consecutivos para mensagens que serão criadas
+     * em lote (com o construtor que recebe o id).
+     * 
+     * @param quantidade Quantidade de ids
+     * @return O primeiro id do bloco
+     */
+    static int reservarIds(int quantidade) {
+        return proximoId.getAndAdd(quantidade);
+    }
+
+    /**
+     * Devolve um bloco de ids reservado por reservarIds que não chegou a ser
+     * usado (ex.: o lote não pôde ser registrado no diário). Se outros ids já
+     * foram distribuídos depois do bloco, ele fica sem uso.
+     * 
+     * @param primeiroId Primeiro id do bloco
+     * @param quantidade Quantidade de ids
+     */
+    static void devolverIds(int primeiroId, int quantidade) {
+        proximoId.compareAndSet(primeiroId + quantidade, primeiroId);
     }
 
     /**
@@ -68,21 +184,68 @@ abstract class Mensagem implements Publicacao {
     }
 
     /**
-     * Retorna dados binários associados à mensagem.
-     * Ex.: a imagem de uma postagem com foto.
+     * Retorna o número do autor da mensagem no dicionário de autores do Feed
+     * (usado pelo Feed para filtrar as mensagens por autor comparando
+     * números).
+     * 
+     * @return Número do autor (-1 se a mensagem não está em um Feed)
+     */
+    int getNumeroAutor() {
+        return numeroAutor;
+    }
+
+    /**
+     * Associa a mensagem ao autor no dicionário do Feed em que ela entra: guarda
+     * o número do autor e passa a usar o nome guardado no dicionário (assim a
+     * cópia do nome lida do diário ou do instantâneo pode ser descartada).
+     * Chamado pelo Feed com o lock de escrita, antes de a mensagem ficar
+     * visível nas listas.
+     * 
+     * @param numeroAutor Número do autor no dicionário do Feed
+     * @param autor       Nome do autor guardado no dicionário
+     */
+    void associarAutor(int numeroAutor, String autor) {
+        this.numeroAutor = numeroAutor;
+        this.autor = autor;
+    }
+
+    /**
+     * Retorna a hora na qual a mensagem foi postada
+     * 
+     * @return Hora da postagem (em milissegundos)
+     */
+    long getHoraPostagem() {
+        return horaPostagem;
+    }
+
+    /**
+     * Retorna a referência para os dados binários associados à mensagem no
+     * repositório de fotos. Ex.: a imagem de uma postagem com foto.
      * 
      * @return null, já que aqui na superclasse não há o que ser retornado.
      */
-    public byte[] getDadosBinarios() {
+    public ReferenciaFoto getReferenciaFoto() {
         return null;
     }
 
+    /**
+     * Retorna se a mensagem tem uma foto (ou seja, se tem uma referência no
+     * repositório de fotos).
+     * 
+     * @return true se a mensagem tem foto
+     */
+    @Override
+    public boolean temFoto() {
+        return getReferenciaFoto() != null;
+    }
+
     /**
      * Realiza a ação de curtir uma mensagem. Na pratica apenas conta mais
      * uma curtida.
      */
     public void curtir() {
-        nroCurtidas++;
+        atualizadorCurtidas.incrementAndGet(this);
+        invalidarTextoEmCache();
     }
 
     /**
@@ -92,7 +255,194 @@ abstract class Mensagem implements Publicacao {
      * @param comentario Texto do comentario
      */
     public void comentar(String comentario) {
-        comentarios.add(comentario);
+        acrescentarComentarios(new String[] { comentario });
+        invalidarTextoEmCache();
+    }
+
+    /**
+     * Descarta o texto de curtidas e comentários guardado em cache (a
+     * próxima exibição formata o texto novamente).
+     */
+    private void invalidarTextoEmCache() {
+        atualizadorVersao.incrementAndGet(this);
+        textoRodape = null;
+    }
+
+    /**
+     * Retorna quantas vezes o texto de exibição guardado em cache foi
+     * aproveitado (somando todas as mensagens).
+     * 
+     * @return Quantidade de acertos do cache
+     */
+    static long getAcertosCacheTexto() {
+        return acertosCacheTexto.sum();
+    }
+
+    /**
+     * Retorna quantas vezes o texto de exibição precisou ser formatado por
+     * não estar em cache (somando todas as mensagens).
+     * 
+     * @return Quantidade de falhas do cache
+     */
+    static long getFalhasCacheTexto() {
+        return falhasCacheTexto.sum();
+    }
+
+    /**
+     * Retorna a quantidade de curtidas que a mensagem recebeu
+     * 
+     * @return Quantidade de curtidas
+     */
+    long getNroCurtidas() {
+        return nroCurtidas;
+    }
+
+    /**
+     * Retorna os comentários da mensagem (somente-leitura), na ordem em que
+     * foram feitos.
+     * 
+     * @return Comentários da mensagem
+     */
+    Collection<String> getComentarios() {
+        // a quantidade é lida antes dos blocos (ver acrescentarComentarios)
+        int quantidade = nroComentarios;
+        if (quantidade == 0) {
+            return Collections.emptyList();
+        }
+        return new ComentariosCapturados(blocosComentarios, quantidade);
+    }
+
+    /**
+     * Comentários que a mensagem tinha em um momento (somente-leitura). Usa os
+     * próprios blocos da mensagem, sem copiá-los: as posições capturadas nunca
+     * mudam, e os comentários feitos depois ficam além da quantidade
+     * capturada.
+     */
+    private static class ComentariosCapturados extends AbstractList<String> implements RandomAccess {
+        // Blocos de comentários da mensagem
+        private final String[][] blocos;
+        // Quantidade de comentários capturados
+        private final int quantidade;
+
+        private ComentariosCapturados(String[][] blocos, int quantidade) {
+            this.blocos = blocos;
+            this.quantidade = quantidade;
+        }
+
+        @Override
+        public String get(int posicao) {
+            Objects.checkIndex(posicao, quantidade);
+            return blocos[posicao / TAMANHO_BLOCO_COMENTARIOS][posicao % TAMANHO_BLOCO_COMENTARIOS];
+        }
+
+        @Override
+        public int size() {
+            return quantidade;
+        }
+    }
+
+    /**
+     * Restaura as curtidas e comentários de uma mensagem reconstruída (ex.:
+     * lida de um instantâneo do Feed).
+     * 
+     * @param curtidas    Quantidade de curtidas
+     * @param comentarios Comentários da mensagem
+     */
+    void restaurarInteracoes(long curtidas, Collection<String> comentarios) {
+        atualizadorCurtidas.addAndGet(this, curtidas);
+        if (!comentarios.isEmpty()) {
+            acrescentarComentarios(comentarios.toArray(new String[0]));
+        }
+        invalidarTextoEmCache();
+    }
+
+    /**
+     * Acrescenta comentários nas próximas posições livres dos blocos de
+     * comentários, criando um bloco novo quando o último está cheio (os
+     * comentários anteriores nunca são copiados, exceto os do primeiro bloco
+     * enquanto ele cresce até o tamanho dos demais). Só então a quantidade de
+     * comentários é atualizada, o que os torna visíveis para quem lê.
+     * 
+     * Quem comenta a mesma mensagem ao mesmo tempo espera a vez (o lock é da
+     * própria mensagem, então comentários em mensagens diferentes não esperam
+     * um pelo outro); quem lê os comentários não usa lock.
+     * 
+     * @param novos Comentários a serem acrescentados
+     */
+    private synchronized void acrescentarComentarios(String[] novos) {
+        String[][] blocos = blocosComentarios;
+        int quantidade = nroComentarios;
+        if (blocos == null) {
+            blocos = new String[1][];
+        }
+        for (String comentario : novos) {
+            int nroBloco = quantidade / TAMANHO_BLOCO_COMENTARIOS;
+            int posicao = quantidade % TAMANHO_BLOCO_COMENTARIOS;
+            if (nroBloco == blocos.length) {
+                // apenas as referências aos blocos são copiadas
+                blocos = Arrays.copyOf(blocos, blocos.length * 2);
+            }
+            String[] bloco = blocos[nroBloco];
+            if (bloco == null) {
+                int tamanhoBloco = (nroBloco == 0) ? Math.min(novos.length, TAMANHO_BLOCO_COMENTARIOS)
+                        : TAMANHO_BLOCO_COMENTARIOS;
+                bloco = new String[tamanhoBloco];
+                blocos[nroBloco] = bloco;
+            } else if (posicao == bloco.length) {
+                // só acontece no primeiro bloco, que tem no máximo
+                // TAMANHO_BLOCO_COMENTARIOS posições
+                bloco = Arrays.copyOf(bloco, Math.min(bloco.length * 2, TAMANHO_BLOCO_COMENTARIOS));
+                blocos[nroBloco] = bloco;
+            }
+            bloco[posicao] = comentario;
+            quantidade++;
+        }
+        blocosComentarios = blocos;
+        // a escrita no campo volatile publica os comentários para quem ler a
+        // quantidade antes dos blocos
+        nroComentarios = quantidade;
+    }
+
+    /**
+     * Retorna uma estimativa da memória ocupada pela mensagem: o objeto, o
+     * texto (2 bytes por caractere; o nome do autor fica no dicionário de
+     * autores), os comentários e os bytes da foto (se
+     * houver). Usada pela política de retenção do Feed.
+     * 
+     * @return Tamanho estimado (em bytes)
+     */
+    long getTamanhoEstimado() {
+        String conteudo = getTextoConteudo();
+        long tamanho = 64 + 2L * (conteudo == null ? 0 : conteudo.length());
+        for (String comentario : getComentarios()) {
+            tamanho += tamanhoEstimadoComentario(comentario);
+        }
+        ReferenciaFoto referenciaFoto = getReferenciaFoto();
+        if (referenciaFoto != null) {
+            tamanho += referenciaFoto.getTamanho();
+        }
+        return tamanho;
+    }
+
+    /**
+     * Retorna a estimativa da memória ocupada por um comentário (a String e a
+     * sua posição no vetor de comentários).
+     * 
+     * @param comentario Texto do comentário
+     * @return Tamanho estimado (em bytes)
+     */
+    static long tamanhoEstimadoComentario(String comentario) {
+        return 40 + 2L * comentario.length();
+    }
+
+    /**
+     * Retorna a quantidade de comentários que a mensagem recebeu
+     * 
+     * @return Quantidade de comentários
+     */
+    @Override
+    public int getNroComentarios() {
+        return nroComentarios;
     }
 
     /**
@@ -103,20 +453,81 @@ abstract class Mensagem implements Publicacao {
      */
     @Override
     public String getTextoExibicao() {
-        String texto = "  [" + id + "]   " + autor + " escreveu: " + getConteudoTextoExibicao();
-        texto += "\n        " + getTextoTempo();
-        texto += "\n        " + nroCurtidas + " pessoas curtiram isso!";
-        texto += "\n        " + getTextoComentarios();
+        StringBuilder texto = new StringBuilder();
+        escreverTextoExibicao(texto);
+        return texto.toString();
+    }
+
+    /**
+     * Escreve a mensagem formatada para o Feed no final do StringBuilder
+     * passado (mesmo texto de getTextoExibicao). Permite que o Feed inteiro
+     * seja escrito em um único buffer, sem criar uma String por mensagem.
+     * 
+     * Apenas o tempo desde a postagem é formatado a cada chamada; o restante
+     * vem do cache enquanto a mensagem não for curtida ou comentada.
+     * 
+     * @param destino StringBuilder onde o texto será acrescentado
+     */
+    @Override
+    public void escreverTextoExibicao(StringBuilder destino) {
+        destino.append(getTextoCabecalho());
+        escreverTextoTempo(destino);
+        destino.append(getTextoRodape());
+    }
+
+    /**
+     * Retorna o início do texto de exibição (id, autor e conteúdo),
+     * formatando-o apenas na primeira vez.
+     * 
+     * @return Início do texto de exibição
+     */
+    private String getTextoCabecalho() {
+        String texto = textoCabecalho;
+        if (texto == null) {
+            StringBuilder cabecalho = new StringBuilder();
+            cabecalho.append("  [").append(id).append("]   ").append(getAutor()).append(" escreveu: ");
+            escreverConteudoTextoExibicao(cabecalho);
+            cabecalho.append("\n        ");
+            texto = cabecalho.toString();
+            // se duas threads formatarem ao mesmo tempo, ambas geram o mesmo texto
+            textoCabecalho = texto;
+        }
+        return texto;
+    }
+
+    /**
+     * Retorna o final do texto de exibição (curtidas e comentários), usando o
+     * cache se ele tiver sido gerado na versão atual da mensagem.
+     * 
+     * @return Final do texto de exibição
+     */
+    private String getTextoRodape() {
+        TextoEmCache cache = textoRodape;
+        int versaoAtual = versao;
+        if (cache != null && cache.versao == versaoAtual) {
+            acertosCacheTexto.increment();
+            return cache.texto;
+        }
+        falhasCacheTexto.increment();
+        // a versão foi lida antes das curtidas e comentários; se a mensagem for
+        // alterada durante a formatação, o texto fica com versão antiga e será
+        // descartado na próxima exibição
+        StringBuilder rodape = new StringBuilder();
+        rodape.append("\n        ").append(nroCurtidas).append(" pessoas curtiram isso!");
+        rodape.append("\n        ");
+        escreverTextoComentarios(rodape);
+        String texto = rodape.toString();
+        textoRodape = new TextoEmCache(versaoAtual, texto);
         return texto;
     }
 
     /**
-     * Metodo auxiliar usado no metodo getTextoExibicao para que seja exibido ha
-     * quanto tempo a mensagem foi postada.
+     * Metodo auxiliar usado no metodo escreverTextoExibicao para que seja
+     * exibido ha quanto tempo a mensagem foi postada.
      * 
-     * @return Texto com a informacao formatada
+     * @param destino StringBuilder onde o texto será acrescentado
      */
-    private String getTextoTempo() {
+    private void escreverTextoTempo(StringBuilder destino) {
         long tempoAtual = System.currentTimeMillis();
         long diferenca = (tempoAtual - horaPostagem);
 
@@ -124,34 +535,43 @@ abstract class Mensagem implements Publicacao {
         long diferencaMin = diferencaSeg / 60;
 
         if (diferencaMin < 1) {
-            return "Há " + diferencaSeg + " segundos";
+            destino.append("Há ").append(diferencaSeg).append(" segundos");
         } else {
-            return "Há " + diferencaMin + " minutos";
+            destino.append("Há ").append(diferencaMin).append(" minutos");
         }
     }
 
     /**
-     * Metodo auxiliar usado pelo metodo getTextoExibicao para obter os
+     * Metodo auxiliar usado pelo metodo escreverTextoExibicao para escrever os
      * comentarios da mensagem.
+     * 
+     * @param destino StringBuilder onde o texto será acrescentado
      */
-    private String getTextoComentarios() {
-        String texto = "";
-        if (comentarios.isEmpty()) {
-            texto += "Não há comentários...\n";
+    private void escreverTextoComentarios(StringBuilder destino) {
+        Collection<String> atuais = getComentarios();
+        if (atuais.isEmpty()) {
+            destino.append("Não há comentários...\n");
         } else {
-            texto += "Comentários:\n";
-            for (String comentario : comentarios) {
-                texto += "            " + comentario + "\n";
+            destino.append("Comentários:\n");
+            for (String comentario : atuais) {
+                destino.append("            ").append(comentario).append('\n');
             }
         }
-        return texto;
     }
 
     /**
-     * Retorna o conteúdo da mensagem (a ser sobrescrito nas subclasses)
+     * Escreve o conteúdo da mensagem (a ser sobrescrito nas subclasses)
+     * 
+     * @param destino StringBuilder onde o conteúdo será acrescentado
+     */
+    protected abstract void escreverConteudoTextoExibicao(StringBuilder destino);
+
+    /**
+     * Retorna o texto escrito pelo autor na mensagem (usado no índice de
+     * busca; a ser sobrescrito nas subclasses)
      * 
-     * @return O conteúdo da mensagem
+     * @return O texto da mensagem
      */
-    protected abstract String getConteudoTextoExibicao();
+    abstract String getTextoConteudo();
 
 }
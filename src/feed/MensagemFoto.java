@@ -12,42 +12,78 @@ package feed;
  *         Traduzido e adaptado por Julio Cesar Alves
  */
 class MensagemFoto extends Mensagem {
-    // Bytes da foto
-    private byte[] bytesDaFoto;
+    // Referência para os bytes da foto no repositório de fotos (os bytes em si
+    // ficam fora do heap)
+    private ReferenciaFoto referenciaFoto;
     // Legenda da foto a ser usada na rede social
     private String legenda;
 
     /**
-     * Cria uma mensagem com foto a partir do nome do autor, bytes da foto
+     * Cria uma mensagem com foto a partir do nome do autor, referência da foto
      * e legenda da foto.
      * 
-     * @param autor       Nome do autor da mensagem
-     * @param bytesDaFoto Bytes da foto
-     * @param legenda     Legenda da foto
+     * @param autor          Nome do autor da mensagem
+     * @param referenciaFoto Referência da foto no repositório de fotos
+     * @param legenda        Legenda da foto
      */
-    public MensagemFoto(String autor, byte[] bytesDaFoto, String legenda) {
+    public MensagemFoto(String autor, ReferenciaFoto referenciaFoto, String legenda) {
         super(autor);
-        this.bytesDaFoto = bytesDaFoto;
+        this.referenciaFoto = referenciaFoto;
         this.legenda = legenda;
     }
 
     /**
-     * Retorna o conteúdo da mensagem (nesse caso a legenda da foto)
+     * Reconstroi uma mensagem com foto já postada, mantendo id e hora da
+     * postagem originais.
      * 
-     * @return O conteúdo da mensagem
+     * @param id             Identificador original da mensagem
+     * @param autor          Nome do autor da mensagem
+     * @param horaPostagem   Hora original da postagem
+     * @param referenciaFoto Referência da foto no repositório de fotos
+     * @param legenda        Legenda da foto
+     */
+    MensagemFoto(int id, String autor, long horaPostagem, ReferenciaFoto referenciaFoto, String legenda) {
+        super(id, autor, horaPostagem);
+        this.referenciaFoto = referenciaFoto;
+        this.legenda = legenda;
+    }
+
+    /**
+     * Retorna a legenda da foto
+     * 
+     * @return A legenda da foto
+     */
+    String getLegenda() {
+        return legenda;
+    }
+
+    /**
+     * Retorna o texto escrito pelo autor (nesse caso a legenda da foto)
+     * 
+     * @return A legenda da foto
+     */
+    @Override
+    String getTextoConteudo() {
+        return legenda;
+    }
+
+    /**
+     * Escreve o conteúdo da mensagem (nesse caso a legenda da foto)
+     * 
+     * @param destino StringBuilder onde o conteúdo será acrescentado
      */
     @Override
-    protected String getConteudoTextoExibicao() {
-        return "Postada foto com a legenda: " + legenda;
+    protected void escreverConteudoTextoExibicao(StringBuilder destino) {
+        destino.append("Postada foto com a legenda: ").append(legenda);
     }
 
     /**
-     * Retorna a foto da postagem
+     * Retorna a referência da foto da postagem no repositório de fotos
      * 
-     * @return Vetor de bytes contendo os dados da foto
+     * @return Referência da foto
      */
     @Override
-    public byte[] getDadosBinarios() {
-        return bytesDaFoto;
+    public ReferenciaFoto getReferenciaFoto() {
+        return referenciaFoto;
     }
 }
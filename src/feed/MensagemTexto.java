@@ -26,12 +26,45 @@ class MensagemTexto extends Mensagem {
     }
 
     /**
-     * Retorna o conteúdo da mensagem (nesse caso o texto da mensagem)
+     * Reconstroi uma mensagem de texto já postada, mantendo id e hora da
+     * postagem originais.
      * 
-     * @return O conteúdo da mensagem
+     * @param id           Identificador original da mensagem
+     * @param autor        Autor da mensagem
+     * @param horaPostagem Hora original da postagem
+     * @param texto        Texto da mensagem
+     */
+    MensagemTexto(int id, String autor, long horaPostagem, String texto) {
+        super(id, autor, horaPostagem);
+        this.texto = texto;
+    }
+
+    /**
+     * Retorna o texto da mensagem
+     * 
+     * @return O texto da mensagem
+     */
+    String getTexto() {
+        return texto;
+    }
+
+    /**
+     * Retorna o texto escrito pelo autor (nesse caso o texto da mensagem)
+     * 
+     * @return O texto da mensagem
      */
     @Override
-    protected String getConteudoTextoExibicao() {
+    String getTextoConteudo() {
         return texto;
     }
+
+    /**
+     * Escreve o conteúdo da mensagem (nesse caso o texto da mensagem)
+     * 
+     * @param destino StringBuilder onde o conteúdo será acrescentado
+     */
+    @Override
+    protected void escreverConteudoTextoExibicao(StringBuilder destino) {
+        destino.append(texto);
+    }
 }
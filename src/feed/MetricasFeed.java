@@ -0,0 +1,111 @@
+package feed;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Métricas das operações do Feed de Notícias: um histograma de tempos por
+ * operação (postagens, curtidas, comentários, lotes, buscas e páginas). A
+ * tela também registra aqui os seus próprios tempos (ex.: desenho das
+ * publicações), para que tudo apareça no mesmo painel de diagnóstico.
+ *
+ * As métricas podem ser publicadas via JMX (ver MetricasFeedMXBean).
+ */
+public class MetricasFeed implements MetricasFeedMXBean {
+    // Nomes das operações medidas pelo próprio Feed
+    public static final String POSTAGEM_TEXTO = "postarMensagemTexto";
+    public static final String POSTAGEM_FOTO = "postarMensagemFoto";
+    public static final String CURTIDA = "curtir";
+    public static final String COMENTARIO = "comentar";
+    public static final String LOTE = "executar (lote)";
+    public static final String BUSCA = "buscar";
+    public static final String PAGINA = "getPublicacoes (página)";
+
+    // Histograma de cada operação (a ordem de inclusão é guardada à parte)
+    private final Map<String, HistogramaLatencia> histogramas;
+    // Nomes das operações na ordem em que foram incluídas
+    private final List<String> nomes;
+
+    /**
+     * Cria as métricas com os histogramas das operações do Feed.
+     */
+    public MetricasFeed() {
+        histogramas = new ConcurrentHashMap<>();
+        nomes = new ArrayList<>();
+        for (String nome : new String[] { POSTAGEM_TEXTO, POSTAGEM_FOTO, CURTIDA, COMENTARIO, LOTE, BUSCA,
+                PAGINA }) {
+            getHistograma(nome);
+        }
+    }
+
+    /**
+     * Retorna o histograma de uma operação, criando-o se for a primeira vez
+     * que a operação é medida.
+     *
+     * @param nome Nome da operação
+     * @return Histograma dos tempos da operação
+     */
+    public HistogramaLatencia getHistograma(String nome) {
+        HistogramaLatencia histograma = histogramas.get(nome);
+        if (histograma == null) {
+            synchronized (nomes) {
+                histograma = histogramas.get(nome);
+                if (histograma == null) {
+                    histograma = new HistogramaLatencia();
+                    histogramas.put(nome, histograma);
+                    nomes.add(nome);
+                }
+            }
+        }
+        return histograma;
+    }
+
+    /**
+     * Registra o tempo de uma execução de uma operação, desde o instante
+     * passado até agora.
+     *
+     * @param nome        Nome da operação
+     * @param inicioNanos Instante do início da execução (System.nanoTime)
+     */
+    public void registrar(String nome, long inicioNanos) {
+        getHistograma(nome).registrarDesde(inicioNanos);
+    }
+
+    @Override
+    public List<EstatisticasOperacao> getOperacoes() {
+        List<String> nomesAtuais;
+        synchronized (nomes) {
+            nomesAtuais = new ArrayList<>(nomes);
+        }
+        List<EstatisticasOperacao> operacoes = new ArrayList<>(nomesAtuais.size());
+        for (String nome : nomesAtuais) {
+            operacoes.add(EstatisticasOperacao.de(nome, histogramas.get(nome)));
+        }
+        return operacoes;
+    }
+
+    @Override
+    public void zerar() {
+        for (HistogramaLatencia histograma : histogramas.values()) {
+            histograma.zerar();
+        }
+    }
+
+    /**
+     * Publica as métricas no servidor JMX da plataforma, com o nome
+     * "feed:type=MetricasFeed,name=<nome>".
+     *
+     * @param nome Nome que identifica o Feed
+     * @throws JMException Se o nome for inválido ou já estiver em uso
+     */
+    public void registrarNoJmx(String nome) throws JMException {
+        ObjectName nomeObjeto = new ObjectName("feed:type=MetricasFeed,name=" + ObjectName.quote(nome));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, nomeObjeto);
+    }
+}
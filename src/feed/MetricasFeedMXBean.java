@@ -0,0 +1,16 @@
+package feed;
+
+import java.util.List;
+
+/**
+ * Interface de gerenciamento (JMX) das métricas do Feed de Notícias: permite
+ * acompanhar os tempos das operações por ferramentas como o JConsole ou o
+ * VisualVM, sem a interface gráfica.
+ */
+public interface MetricasFeedMXBean {
+    // Retorna as estatísticas atuais de cada operação medida
+    List<EstatisticasOperacao> getOperacoes();
+
+    // Descarta os tempos medidos até agora
+    void zerar();
+}
@@ -0,0 +1,35 @@
+package feed;
+
+import java.util.List;
+
+/**
+ * Interface para quem quer ser avisado das alterações do Feed de Notícias
+ * (ex.: a tela, para atualizar apenas o que mudou).
+ *
+ * Obs.: os avisos são dados na thread que fez a alteração no Feed, que não
+ * é necessariamente a thread da interface gráfica.
+ */
+public interface OuvinteFeed {
+    // Avisa que uma nova publicação foi postada no Feed
+    void mensagemPostada(Publicacao publicacao);
+
+    // Avisa que uma publicação foi curtida ou comentada
+    void mensagemAlterada(Publicacao publicacao);
+
+    // Avisa que um autor postou sua primeira mensagem no Feed
+    void autorAdicionado(String autor);
+
+    // Avisa que as mensagens de um autor foram todas descartadas pela
+    // política de retenção (ele deixou de ser um autor do Feed)
+    void autorRemovido(String autor);
+
+    // Avisa que as publicações mais antigas foram descartadas pela política
+    // de retenção (as posições das demais mudaram)
+    void mensagensDescartadas(int quantidade);
+
+    // Avisa que um lote de operações foi executado (várias publicações podem
+    // ter sido postadas, curtidas, comentadas ou descartadas), com os autores
+    // que postaram a sua primeira mensagem no lote e os que ficaram sem
+    // mensagens
+    void loteExecutado(List<String> autoresNovos, List<String> autoresRemovidos, int descartadas);
+}
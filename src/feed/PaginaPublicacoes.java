@@ -0,0 +1,63 @@
+package feed;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Página de publicações do Feed, da mais recente para a mais antiga.
+ *
+ * As páginas são encadeadas por um cursor que é o id da última publicação da
+ * página: a próxima página começa na publicação anterior a ela. Como os ids
+ * só crescem, novas postagens não deslocam as páginas seguintes (elas
+ * aparecem apenas ao pedir de novo a primeira página).
+ */
+public class PaginaPublicacoes {
+    // Cursor que pede a primeira página (as publicações mais recentes)
+    public static final int INICIO = Integer.MAX_VALUE;
+    // Cursor retornado quando não há mais páginas
+    public static final int FIM = 0;
+
+    // Publicações da página, da mais recente para a mais antiga
+    private final List<Publicacao> publicacoes;
+    // Cursor da próxima página (FIM se esta é a última)
+    private final int proximoCursor;
+
+    /**
+     * Cria uma página de publicações.
+     *
+     * @param publicacoes   Publicações da página
+     * @param proximoCursor Cursor da próxima página (FIM se não houver)
+     */
+    PaginaPublicacoes(List<Publicacao> publicacoes, int proximoCursor) {
+        this.publicacoes = Collections.unmodifiableList(publicacoes);
+        this.proximoCursor = proximoCursor;
+    }
+
+    /**
+     * Retorna as publicações da página (somente-leitura), da mais recente para
+     * a mais antiga.
+     *
+     * @return Publicações da página
+     */
+    public List<Publicacao> getPublicacoes() {
+        return publicacoes;
+    }
+
+    /**
+     * Retorna o cursor a ser passado para obter a próxima página.
+     *
+     * @return Cursor da próxima página, ou FIM se esta é a última
+     */
+    public int getProximoCursor() {
+        return proximoCursor;
+    }
+
+    /**
+     * Retorna se há publicações mais antigas depois desta página.
+     *
+     * @return true se há uma próxima página
+     */
+    public boolean temProxima() {
+        return proximoCursor != FIM;
+    }
+}
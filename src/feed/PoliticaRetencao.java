@@ -0,0 +1,99 @@
+package feed;
+
+/**
+ * Limites de quanto o Feed mantém em memória: quantidade de mensagens, idade
+ * (desde a hora da postagem) e tamanho total estimado. Quando algum limite é
+ * ultrapassado, as mensagens mais antigas são descartadas da memória (e, se o
+ * Feed for persistente, guardadas no arquivo de mensagens em disco).
+ *
+ * Um limite igual a 0 significa "sem limite".
+ */
+public class PoliticaRetencao {
+    // Política que mantém todas as mensagens em memória
+    public static final PoliticaRetencao SEM_LIMITES = new PoliticaRetencao(0, 0, 0);
+    // Propriedades do sistema com os limites da política usada pela aplicação
+    // (ex.: -Dredesocial.retencao.maximoMensagens=100000)
+    public static final String PROPRIEDADE_MAXIMO_MENSAGENS = "redesocial.retencao.maximoMensagens";
+    public static final String PROPRIEDADE_IDADE_MAXIMA = "redesocial.retencao.idadeMaxima";
+    public static final String PROPRIEDADE_MAXIMO_BYTES = "redesocial.retencao.maximoBytes";
+
+    // Quantidade máxima de mensagens em memória
+    private final int maximoMensagens;
+    // Idade máxima (em milissegundos) das mensagens em memória
+    private final long idadeMaxima;
+    // Tamanho total máximo estimado (em bytes) das mensagens em memória
+    private final long maximoBytes;
+
+    /**
+     * Cria a política com os limites passados (0 para não limitar).
+     *
+     * @param maximoMensagens Quantidade máxima de mensagens
+     * @param idadeMaxima     Idade máxima das mensagens (em milissegundos)
+     * @param maximoBytes     Tamanho total máximo estimado (em bytes)
+     */
+    public PoliticaRetencao(int maximoMensagens, long idadeMaxima, long maximoBytes) {
+        if (maximoMensagens < 0 || idadeMaxima < 0 || maximoBytes < 0) {
+            throw new IllegalArgumentException("Os limites da política de retenção não podem ser negativos");
+        }
+        this.maximoMensagens = maximoMensagens;
+        this.idadeMaxima = idadeMaxima;
+        this.maximoBytes = maximoBytes;
+    }
+
+    /**
+     * Cria a política com os limites das propriedades do sistema
+     * PROPRIEDADE_MAXIMO_MENSAGENS, PROPRIEDADE_IDADE_MAXIMA (em
+     * milissegundos) e PROPRIEDADE_MAXIMO_BYTES; as que não foram definidas
+     * ficam sem limite.
+     *
+     * @return Política de retenção configurada
+     */
+    public static PoliticaRetencao lerPropriedades() {
+        return new PoliticaRetencao(Integer.getInteger(PROPRIEDADE_MAXIMO_MENSAGENS, 0),
+                Long.getLong(PROPRIEDADE_IDADE_MAXIMA, 0), Long.getLong(PROPRIEDADE_MAXIMO_BYTES, 0));
+    }
+
+    /**
+     * Retorna a quantidade máxima de mensagens em memória (0 se não há limite).
+     *
+     * @return Quantidade máxima de mensagens
+     */
+    public int getMaximoMensagens() {
+        return maximoMensagens;
+    }
+
+    /**
+     * Retorna a idade máxima das mensagens em memória (0 se não há limite).
+     *
+     * @return Idade máxima (em milissegundos)
+     */
+    public long getIdadeMaxima() {
+        return idadeMaxima;
+    }
+
+    /**
+     * Retorna o tamanho total máximo estimado das mensagens em memória (0 se
+     * não há limite).
+     *
+     * @return Tamanho máximo (em bytes)
+     */
+    public long getMaximoBytes() {
+        return maximoBytes;
+    }
+
+    /**
+     * Verifica se o Feed, com a quantidade de mensagens e o tamanho passados,
+     * ultrapassa algum dos limites.
+     *
+     * @param nroMensagens   Quantidade de mensagens em memória
+     * @param horaMaisAntiga Hora da postagem da mensagem mais antiga
+     * @param bytes          Tamanho total estimado das mensagens
+     * @param agora          Hora atual (em milissegundos)
+     * @return true se a mensagem mais antiga deve ser descartada
+     */
+    boolean excedido(int nroMensagens, long horaMaisAntiga, long bytes, long agora) {
+        return (maximoMensagens > 0 && nroMensagens > maximoMensagens)
+                || (idadeMaxima > 0 && agora - horaMaisAntiga > idadeMaxima)
+                || (maximoBytes > 0 && bytes > maximoBytes);
+    }
+}
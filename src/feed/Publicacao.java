@@ -16,4 +16,13 @@ public interface Publicacao {
     // Retorna a mensagem como uma string formatada
     String getTextoExibicao();
 
+    // Escreve a mensagem formatada no final do StringBuilder passado
+    void escreverTextoExibicao(StringBuilder destino);
+
+    // Retorna a quantidade de comentários da mensagem
+    int getNroComentarios();
+
+    // Retorna se a mensagem tem uma foto
+    boolean temFoto();
+
 }
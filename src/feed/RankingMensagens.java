@@ -0,0 +1,136 @@
+package feed;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Ranking das mensagens mais populares do Feed (pontuação = curtidas +
+ * comentários), atualizado a cada curtida ou comentário.
+ *
+ * As mensagens ficam em um conjunto ordenado pela pontuação, então as K mais
+ * populares são obtidas percorrendo apenas o começo do conjunto, sem ordenar
+ * o Feed inteiro. Cada curtida ou comentário custa O(log n). Mensagens sem
+ * nenhuma curtida ou comentário não entram no ranking.
+ *
+ * O ranking pode ser usado por várias threads ao mesmo tempo: as atualizações
+ * de uma mesma mensagem são feitas com o monitor da própria mensagem, sempre a
+ * partir dos seus valores atuais, então a última atualização sempre reflete a
+ * pontuação final.
+ */
+class RankingMensagens {
+    // Entradas do ranking, da maior para a menor pontuação
+    private ConcurrentSkipListSet<Entrada> ordem;
+    // Entrada atual de cada mensagem no ranking (pelo id)
+    private Map<Integer, Entrada> entradas;
+
+    /**
+     * Posição de uma mensagem no ranking: a mensagem e a pontuação que ela
+     * tinha quando a entrada foi criada (imutável, para que a ordem do
+     * conjunto nunca mude enquanto a entrada estiver nele).
+     */
+    private static final class Entrada implements Comparable<Entrada> {
+        // Mensagem classificada
+        private final Mensagem mensagem;
+        // Pontuação da mensagem
+        private final long pontuacao;
+
+        private Entrada(Mensagem mensagem, long pontuacao) {
+            this.mensagem = mensagem;
+            this.pontuacao = pontuacao;
+        }
+
+        @Override
+        public int compareTo(Entrada outra) {
+            // maior pontuação primeiro; no empate, a mensagem mais recente
+            int comparacao = Long.compare(outra.pontuacao, pontuacao);
+            if (comparacao == 0) {
+                comparacao = Integer.compare(outra.mensagem.getId(), mensagem.getId());
+            }
+            return comparacao;
+        }
+    }
+
+    /**
+     * Cria o ranking vazio.
+     */
+    public RankingMensagens() {
+        ordem = new ConcurrentSkipListSet<>();
+        entradas = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Atualiza a posição de uma mensagem no ranking a partir da sua quantidade
+     * atual de curtidas e comentários.
+     *
+     * @param mensagem Mensagem curtida, comentada ou carregada
+     */
+    public void atualizar(Mensagem mensagem) {
+        synchronized (mensagem) {
+            long pontuacao = pontuacao(mensagem);
+            Entrada anterior = entradas.get(mensagem.getId());
+            if (anterior != null && anterior.pontuacao == pontuacao) {
+                return;
+            }
+            if (pontuacao > 0) {
+                Entrada nova = new Entrada(mensagem, pontuacao);
+                // a nova entrada entra antes de a anterior sair, para que a
+                // mensagem nunca desapareça do ranking para quem o consulta
+                ordem.add(nova);
+                entradas.put(mensagem.getId(), nova);
+            } else {
+                entradas.remove(mensagem.getId());
+            }
+            if (anterior != null) {
+                ordem.remove(anterior);
+            }
+        }
+    }
+
+    /**
+     * Retira uma mensagem do ranking.
+     *
+     * @param mensagem Mensagem a ser retirada
+     */
+    public void remover(Mensagem mensagem) {
+        synchronized (mensagem) {
+            Entrada anterior = entradas.remove(mensagem.getId());
+            if (anterior != null) {
+                ordem.remove(anterior);
+            }
+        }
+    }
+
+    /**
+     * Retorna as mensagens mais populares, da maior para a menor pontuação.
+     *
+     * @param quantidade Quantidade máxima de mensagens
+     * @return As mensagens mais populares
+     */
+    public List<Publicacao> getPrimeiras(int quantidade) {
+        List<Publicacao> primeiras = new ArrayList<>(Math.min(quantidade, entradas.size()));
+        Iterator<Entrada> iterador = ordem.iterator();
+        while (primeiras.size() < quantidade && iterador.hasNext()) {
+            Entrada entrada = iterador.next();
+            // durante uma atualização a mensagem pode aparecer duas vezes (com
+            // a pontuação antiga e com a nova); apenas a entrada atual conta
+            if (entradas.get(entrada.mensagem.getId()) == entrada) {
+                primeiras.add(entrada.mensagem);
+            }
+        }
+        return primeiras;
+    }
+
+    /**
+     * Calcula a pontuação de uma mensagem no ranking.
+     *
+     * @param mensagem Mensagem
+     * @return Curtidas mais comentários da mensagem
+     */
+    static long pontuacao(Mensagem mensagem) {
+        return mensagem.getNroCurtidas() + mensagem.getNroComentarios();
+    }
+}
@@ -0,0 +1,70 @@
+package feed;
+
+/**
+ * Referência para os bytes de uma foto guardados no repositório de fotos:
+ * em qual segmento estão, a partir de qual posição e quantos bytes ocupam.
+ *
+ * É o que a mensagem com foto guarda no lugar da foto em si.
+ */
+class ReferenciaFoto {
+    // Número do segmento do repositório onde a foto está
+    private final int segmento;
+    // Posição da foto dentro do segmento
+    private final int posicao;
+    // Tamanho da foto em bytes
+    private final int tamanho;
+
+    /**
+     * Cria a referência para uma foto.
+     *
+     * @param segmento Número do segmento do repositório
+     * @param posicao  Posição da foto dentro do segmento
+     * @param tamanho  Tamanho da foto em bytes
+     */
+    public ReferenciaFoto(int segmento, int posicao, int tamanho) {
+        this.segmento = segmento;
+        this.posicao = posicao;
+        this.tamanho = tamanho;
+    }
+
+    /**
+     * Retorna o número do segmento onde a foto está
+     *
+     * @return Número do segmento
+     */
+    public int getSegmento() {
+        return segmento;
+    }
+
+    /**
+     * Retorna a posição da foto dentro do segmento
+     *
+     * @return Posição da foto
+     */
+    public int getPosicao() {
+        return posicao;
+    }
+
+    /**
+     * Retorna o tamanho da foto em bytes
+     *
+     * @return Tamanho da foto
+     */
+    public int getTamanho() {
+        return tamanho;
+    }
+
+    @Override
+    public boolean equals(Object outro) {
+        if (!(outro instanceof ReferenciaFoto)) {
+            return false;
+        }
+        ReferenciaFoto referencia = (ReferenciaFoto) outro;
+        return segmento == referencia.segmento && posicao == referencia.posicao && tamanho == referencia.tamanho;
+    }
+
+    @Override
+    public int hashCode() {
+        return (segmento * 31 + posicao) * 31 + tamanho;
+    }
+}
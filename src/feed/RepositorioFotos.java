@@ -0,0 +1,563 @@
+package feed;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+
+/**
+ * Repositório onde ficam os bytes das fotos postadas no Feed.
+ *
+ * As fotos são gravadas em arquivos de segmento ("fotos-NNNNNN.dat")
+ * mapeados em memória, ou seja, os bytes ficam fora do heap do Java (o
+ * sistema operacional decide o que fica na memória e o que fica no disco). As
+ * mensagens com foto guardam apenas uma ReferenciaFoto, e a leitura retorna um
+ * ByteBuffer que aponta diretamente para o arquivo mapeado, sem cópia.
+ *
+ * O repositório é endereçado pelo conteúdo: cada foto é identificada pelo seu
+ * hash SHA-256, e uma foto idêntica a outra já guardada não é gravada de novo
+ * (as duas mensagens recebem a mesma referência). Cada foto guardada conta
+ * quantas mensagens a referenciam.
+ *
+ * Em um segmento, cada foto é precedida de um cabeçalho com o seu tamanho e o
+ * seu hash, o que permite reconstruir o índice por hash ao reabrir o
+ * repositório sem reler as fotos. Os segmentos só recebem fotos novas
+ * enquanto o repositório está aberto: ao reabrir, as fotos novas vão para um
+ * novo segmento (os anteriores continuam disponíveis para leitura).
+ *
+ * Quando nenhuma mensagem referencia mais uma foto, o espaço dela só é
+ * recuperado no repositório temporário (Feed apenas em memória): a foto sai do
+ * índice, e um segmento que já não recebe fotos é apagado quando todas as
+ * suas fotos saem (quem ainda tem um ByteBuffer da foto continua lendo do
+ * mapeamento, que só é desfeito quando o buffer é coletado). No repositório
+ * do Feed persistente o espaço não é recuperado: as mensagens descartadas
+ * da memória continuam no arquivo de mensagens (e nos segmentos do diário
+ * ainda não apagados) com a referência da foto, então os bytes precisam
+ * continuar no segmento.
+ */
+class RepositorioFotos {
+    // Prefixo e extensão dos arquivos de segmento
+    private static final String PREFIXO_SEGMENTO = "fotos-";
+    private static final String EXTENSAO_SEGMENTO = ".dat";
+    // Capacidade padrão de um segmento (uma foto maior ganha um segmento só
+    // para ela)
+    private static final int CAPACIDADE_SEGMENTO = 256 * 1024 * 1024;
+    // Algoritmo e tamanho do hash das fotos
+    private static final String ALGORITMO_HASH = "SHA-256";
+    private static final int TAMANHO_HASH = 32;
+    // Tamanho do cabeçalho de cada foto no segmento (tamanho + hash)
+    private static final int TAMANHO_CABECALHO = 4 + TAMANHO_HASH;
+    // Tamanho dos blocos copiados ao armazenar uma foto a partir de um fluxo
+    private static final int TAMANHO_BLOCO = 64 * 1024;
+
+    // Diretório dos segmentos
+    private Path diretorio;
+    // Se os arquivos devem ser apagados quando o programa terminar
+    private boolean temporario;
+    // Segmentos mapeados em memória (pelo número)
+    private Map<Integer, MappedByteBuffer> segmentos;
+    // Número do segmento que está recebendo fotos (0 se nenhum)
+    private int segmentoAtual;
+    // Se o segmento atual foi criado desde que o repositório foi aberto (os
+    // segmentos encontrados ao abrir não recebem fotos novas)
+    private boolean segmentoAtualCriado;
+    // Posição livre do segmento que está recebendo fotos
+    private int posicaoLivre;
+    // Fotos guardadas, pelo hash do conteúdo (em hexadecimal)
+    private Map<String, FotoArmazenada> fotosPorHash;
+    // Fotos guardadas, pela referência
+    private Map<ReferenciaFoto, FotoArmazenada> fotosPorReferencia;
+    // Total de bytes das fotos guardadas (cada foto contada uma vez)
+    private long bytesArmazenados;
+    // Total de bytes das fotos referenciadas pelas mensagens (cada foto
+    // contada uma vez por mensagem)
+    private long bytesReferenciados;
+    // Total de referências às fotos
+    private long referencias;
+    // Quantidade de regiões em uso em cada segmento, pelo número (fotos no
+    // índice e espaços reservados para fotos sendo gravadas), usada para
+    // apagar os segmentos do repositório temporário que ficam sem fotos
+    private Map<Integer, Integer> regioesPorSegmento;
+
+    /**
+     * Foto guardada no repositório e a quantidade de mensagens que a
+     * referenciam.
+     */
+    private static class FotoArmazenada {
+        // Referência da foto nos segmentos
+        private final ReferenciaFoto referencia;
+        // Quantidade de mensagens que referenciam a foto
+        private int referencias;
+        // Quantidade de vezes que a foto foi retornada por armazenar e ainda
+        // não foi associada a uma mensagem (enquanto houver alguma, o espaço
+        // da foto não é recuperado, mesmo sem referências)
+        private int reservas;
+
+        private FotoArmazenada(ReferenciaFoto referencia) {
+            this.referencia = referencia;
+            this.referencias = 0;
+            this.reservas = 0;
+        }
+    }
+
+    /**
+     * Abre o repositório de fotos no diretório passado.
+     *
+     * @param diretorio  Diretório dos segmentos (criado se não existir)
+     * @param temporario Se os arquivos devem ser apagados quando o programa
+     *                   terminar (Feed apenas em memória)
+     * @throws IOException Se houver erro ao acessar o diretório
+     */
+    public RepositorioFotos(Path diretorio, boolean temporario) throws IOException {
+        this.diretorio = diretorio;
+        this.temporario = temporario;
+        Files.createDirectories(diretorio);
+        segmentos = new HashMap<>();
+        fotosPorHash = new HashMap<>();
+        fotosPorReferencia = new HashMap<>();
+        regioesPorSegmento = new HashMap<>();
+        segmentoAtual = 0;
+        segmentoAtualCriado = false;
+        try (DirectoryStream<Path> arquivos = Files.newDirectoryStream(diretorio,
+                PREFIXO_SEGMENTO + "*" + EXTENSAO_SEGMENTO)) {
+            for (Path arquivo : arquivos) {
+                String nome = arquivo.getFileName().toString();
+                int numero = Integer.parseInt(nome.substring(PREFIXO_SEGMENTO.length(),
+                        nome.length() - EXTENSAO_SEGMENTO.length()));
+                segmentoAtual = Math.max(segmentoAtual, numero);
+                indexarSegmento(numero);
+            }
+        }
+        // o segmento que recebe as fotos é criado na primeira foto armazenada
+        // (depois do último encontrado, que pode já estar mapeado e cheio)
+        posicaoLivre = 0;
+    }
+
+    /**
+     * Cria um repositório em um diretório temporário, apagado quando o programa
+     * terminar.
+     *
+     * @return O repositório criado
+     * @throws IOException Se houver erro ao criar o diretório
+     */
+    public static RepositorioFotos criarTemporario() throws IOException {
+        Path diretorio = Files.createTempDirectory("fotos-feed");
+        diretorio.toFile().deleteOnExit();
+        return new RepositorioFotos(diretorio, true);
+    }
+
+    /**
+     * Lê os cabeçalhos das fotos de um segmento existente e as coloca no
+     * índice por hash. Regiões devolvidas (tamanho negativo) são puladas, e a
+     * leitura para no primeiro cabeçalho vazio (o resto do segmento nunca foi
+     * usado).
+     *
+     * @param numero Número do segmento
+     */
+    private void indexarSegmento(int numero) throws IOException {
+        ByteBuffer segmento = segmento(numero).duplicate();
+        int posicao = 0;
+        byte[] hash = new byte[TAMANHO_HASH];
+        while (posicao <= segmento.capacity() - TAMANHO_CABECALHO) {
+            int tamanho = segmento.getInt(posicao);
+            if (tamanho < 0 && -tamanho <= segmento.capacity() - posicao - TAMANHO_CABECALHO) {
+                posicao += TAMANHO_CABECALHO - tamanho;
+                continue;
+            }
+            if (tamanho == 0 || tamanho > segmento.capacity() - posicao - TAMANHO_CABECALHO) {
+                break;
+            }
+            segmento.position(posicao + 4);
+            segmento.get(hash);
+            ReferenciaFoto referencia = new ReferenciaFoto(numero, posicao + TAMANHO_CABECALHO, tamanho);
+            regioesPorSegmento.merge(numero, 1, Integer::sum);
+            registrar(HexFormat.of().formatHex(hash), referencia);
+            posicao += TAMANHO_CABECALHO + tamanho;
+        }
+    }
+
+    /**
+     * Guarda os bytes de uma foto no repositório. Se uma foto idêntica já
+     * estiver guardada, nada é gravado e a referência dela é retornada.
+     *
+     * A foto só passa a ser contada como referenciada quando uma mensagem é
+     * associada a ela (veja adicionarReferencia); até lá o seu espaço não é
+     * recuperado.
+     *
+     * @param bytesDaFoto Bytes da foto
+     * @return Referência para a foto guardada
+     * @throws IOException Se houver erro ao criar um novo segmento
+     */
+    public ReferenciaFoto armazenar(byte[] bytesDaFoto) throws IOException {
+        MessageDigest digest = criarDigest();
+        byte[] hash = digest.digest(bytesDaFoto);
+        String chave = HexFormat.of().formatHex(hash);
+        synchronized (this) {
+            FotoArmazenada existente = fotosPorHash.get(chave);
+            if (existente != null) {
+                existente.reservas++;
+                return existente.referencia;
+            }
+        }
+        ReferenciaFoto referencia = reservar(bytesDaFoto.length);
+        // a cópia é feita fora do lock: a região já está reservada para esta foto
+        ByteBuffer destino = segmento(referencia.getSegmento()).duplicate();
+        destino.position(referencia.getPosicao());
+        destino.put(bytesDaFoto);
+        return concluir(chave, hash, referencia);
+    }
+
+    /**
+     * Guarda uma foto lida de um fluxo de entrada, calculando o hash enquanto
+     * os bytes são copiados para o segmento (a foto nunca fica inteira no
+     * heap). Se, ao final, já houver uma foto idêntica guardada, a referência
+     * dela é retornada e o espaço usado pela cópia é devolvido quando possível.
+     *
+     * @param entrada Fluxo com os bytes da foto
+     * @param tamanho Quantidade de bytes da foto
+     * @return Referência para a foto guardada
+     * @throws IOException Se houver erro de leitura ou se o fluxo não tiver
+     *                     exatamente a quantidade de bytes informada
+     */
+    public ReferenciaFoto armazenar(InputStream entrada, long tamanho) throws IOException {
+        if (tamanho <= 0 || tamanho > Integer.MAX_VALUE - TAMANHO_CABECALHO) {
+            throw new IOException("Tamanho de foto inválido: " + tamanho);
+        }
+        MessageDigest digest = criarDigest();
+        ReferenciaFoto referencia = reservar((int) tamanho);
+        ByteBuffer destino = segmento(referencia.getSegmento()).duplicate();
+        destino.position(referencia.getPosicao());
+        byte[] bloco = new byte[TAMANHO_BLOCO];
+        int restantes = referencia.getTamanho();
+        try {
+            while (restantes > 0) {
+                int lidos = entrada.read(bloco, 0, Math.min(bloco.length, restantes));
+                if (lidos < 0) {
+                    throw new IOException("A foto terminou antes do tamanho informado");
+                }
+                digest.update(bloco, 0, lidos);
+                destino.put(bloco, 0, lidos);
+                restantes -= lidos;
+            }
+            if (entrada.read() >= 0) {
+                throw new IOException("A foto é maior do que o tamanho informado");
+            }
+        } catch (IOException e) {
+            devolver(referencia);
+            throw e;
+        }
+        byte[] hash = digest.digest();
+        String chave = HexFormat.of().formatHex(hash);
+        synchronized (this) {
+            FotoArmazenada existente = fotosPorHash.get(chave);
+            if (existente != null) {
+                devolver(referencia);
+                existente.reservas++;
+                return existente.referencia;
+            }
+        }
+        return concluir(chave, hash, referencia);
+    }
+
+    /**
+     * Reserva espaço para uma foto (e o seu cabeçalho) no segmento atual,
+     * criando um novo segmento se não couber ou se o segmento atual foi
+     * encontrado ao abrir o repositório (a posição livre dele não é conhecida).
+     *
+     * @param tamanho Tamanho da foto
+     * @return Referência para o espaço reservado para os bytes da foto
+     */
+    private synchronized ReferenciaFoto reservar(int tamanho) throws IOException {
+        MappedByteBuffer segmento = segmentos.get(segmentoAtual);
+        int tamanhoTotal = TAMANHO_CABECALHO + tamanho;
+        if (!segmentoAtualCriado || posicaoLivre > segmento.capacity() - tamanhoTotal) {
+            int anterior = segmentoAtual;
+            segmentoAtual++;
+            mapear(segmentoAtual, Math.max(CAPACIDADE_SEGMENTO, tamanhoTotal), true);
+            segmentoAtualCriado = true;
+            posicaoLivre = 0;
+            // o segmento anterior deixa de receber fotos, então pode ser
+            // apagado se as que ele tinha já saíram
+            apagarSegmentoSemFotos(anterior);
+        }
+        regioesPorSegmento.merge(segmentoAtual, 1, Integer::sum);
+        ReferenciaFoto referencia = new ReferenciaFoto(segmentoAtual, posicaoLivre + TAMANHO_CABECALHO, tamanho);
+        posicaoLivre += tamanhoTotal;
+        return referencia;
+    }
+
+    /**
+     * Devolve o espaço reservado para uma foto que não será usada. Se outra
+     * foto já foi reservada depois dela, o espaço não pode ser reaproveitado:
+     * o cabeçalho recebe o tamanho negativo, para que a região seja pulada ao
+     * reabrir o repositório.
+     *
+     * @param referencia Referência do espaço reservado
+     */
+    private synchronized void devolver(ReferenciaFoto referencia) throws IOException {
+        int inicioCabecalho = referencia.getPosicao() - TAMANHO_CABECALHO;
+        int fim = referencia.getPosicao() + referencia.getTamanho();
+        if (referencia.getSegmento() == segmentoAtual && posicaoLivre == fim) {
+            // os bytes já copiados são zerados para que a próxima foto não
+            // deixe restos deles depois do seu fim (o que pareceria um
+            // cabeçalho ao reabrir o repositório)
+            ByteBuffer regiao = segmento(referencia.getSegmento()).duplicate();
+            regiao.position(inicioCabecalho);
+            byte[] zeros = new byte[Math.min(TAMANHO_BLOCO, fim - inicioCabecalho)];
+            while (regiao.position() < fim) {
+                regiao.put(zeros, 0, Math.min(zeros.length, fim - regiao.position()));
+            }
+            posicaoLivre = inicioCabecalho;
+        } else {
+            segmento(referencia.getSegmento()).putInt(inicioCabecalho, -referencia.getTamanho());
+        }
+        liberarRegiao(referencia.getSegmento());
+    }
+
+    /**
+     * Grava o cabeçalho de uma foto já copiada para o segmento e a coloca no
+     * índice. O tamanho é gravado por último, para que uma foto gravada pela
+     * metade nunca pareça completa ao reabrir o repositório.
+     *
+     * @param chave      Hash da foto em hexadecimal
+     * @param hash       Hash da foto
+     * @param referencia Referência da foto
+     * @return Referência da foto no índice (a de uma foto idêntica guardada ao
+     *         mesmo tempo por outra thread, se for o caso)
+     */
+    private ReferenciaFoto concluir(String chave, byte[] hash, ReferenciaFoto referencia) throws IOException {
+        ByteBuffer destino = segmento(referencia.getSegmento()).duplicate();
+        int inicioCabecalho = referencia.getPosicao() - TAMANHO_CABECALHO;
+        destino.position(inicioCabecalho + 4);
+        destino.put(hash);
+        destino.putInt(inicioCabecalho, referencia.getTamanho());
+        ReferenciaFoto registrada;
+        synchronized (this) {
+            registrada = registrar(chave, referencia);
+            fotosPorReferencia.get(registrada).reservas++;
+        }
+        if (!registrada.equals(referencia)) {
+            devolver(referencia);
+        }
+        return registrada;
+    }
+
+    /**
+     * Coloca uma foto no índice por hash, a não ser que já exista uma foto
+     * idêntica.
+     *
+     * @return Referência da foto que ficou no índice
+     */
+    private synchronized ReferenciaFoto registrar(String chave, ReferenciaFoto referencia) {
+        FotoArmazenada existente = fotosPorHash.get(chave);
+        if (existente != null) {
+            return existente.referencia;
+        }
+        FotoArmazenada foto = new FotoArmazenada(referencia);
+        fotosPorHash.put(chave, foto);
+        fotosPorReferencia.put(referencia, foto);
+        bytesArmazenados += referencia.getTamanho();
+        return referencia;
+    }
+
+    /**
+     * Conta mais uma mensagem que referencia a foto.
+     *
+     * @param referencia Referência da foto
+     */
+    public synchronized void adicionarReferencia(ReferenciaFoto referencia) {
+        FotoArmazenada foto = fotosPorReferencia.get(referencia);
+        if (foto != null) {
+            foto.referencias++;
+            if (foto.reservas > 0) {
+                foto.reservas--;
+            }
+            referencias++;
+            bytesReferenciados += referencia.getTamanho();
+        }
+    }
+
+    /**
+     * Desconta uma mensagem que referenciava a foto. No repositório
+     * temporário, a foto que fica sem referências (e sem reservas) sai do
+     * índice, e o seu segmento é apagado se ficar sem fotos.
+     *
+     * @param referencia Referência da foto
+     * @return Quantidade de mensagens que ainda referenciam a foto
+     */
+    public synchronized int liberarReferencia(ReferenciaFoto referencia) {
+        FotoArmazenada foto = fotosPorReferencia.get(referencia);
+        if (foto == null || foto.referencias == 0) {
+            return 0;
+        }
+        foto.referencias--;
+        referencias--;
+        bytesReferenciados -= referencia.getTamanho();
+        if (temporario && foto.referencias == 0 && foto.reservas == 0) {
+            descartar(foto);
+        }
+        return foto.referencias;
+    }
+
+    /**
+     * Retira do índice uma foto sem referências e, se o seu segmento ficar sem
+     * fotos, apaga o segmento (apenas no repositório temporário).
+     *
+     * @param foto Foto a ser retirada
+     */
+    private void descartar(FotoArmazenada foto) {
+        ReferenciaFoto referencia = foto.referencia;
+        // o hash (a chave do índice) é lido do cabeçalho da foto no segmento
+        ByteBuffer cabecalho = segmentos.get(referencia.getSegmento()).duplicate();
+        cabecalho.position(referencia.getPosicao() - TAMANHO_HASH);
+        byte[] hash = new byte[TAMANHO_HASH];
+        cabecalho.get(hash);
+        fotosPorHash.remove(HexFormat.of().formatHex(hash), foto);
+        fotosPorReferencia.remove(referencia);
+        bytesArmazenados -= referencia.getTamanho();
+        liberarRegiao(referencia.getSegmento());
+    }
+
+    /**
+     * Desconta uma região em uso do segmento e, se ele ficar sem nenhuma,
+     * tenta apagá-lo.
+     *
+     * @param numero Número do segmento
+     */
+    private void liberarRegiao(int numero) {
+        if (regioesPorSegmento.merge(numero, -1, Integer::sum) == 0) {
+            regioesPorSegmento.remove(numero);
+            apagarSegmentoSemFotos(numero);
+        }
+    }
+
+    /**
+     * Apaga um segmento do repositório temporário que não tem fotos no índice
+     * e que não está recebendo fotos. O mapeamento continua válido para os
+     * ByteBuffers já lidos dele (o sistema libera o espaço quando eles forem
+     * coletados).
+     *
+     * @param numero Número do segmento
+     */
+    private void apagarSegmentoSemFotos(int numero) {
+        if (!temporario || numero == 0 || regioesPorSegmento.containsKey(numero)
+                || (numero == segmentoAtual && segmentoAtualCriado)) {
+            return;
+        }
+        if (segmentos.remove(numero) != null) {
+            try {
+                Files.deleteIfExists(caminhoSegmento(numero));
+            } catch (IOException e) {
+                // o arquivo continua no diretório temporário, que é apagado
+                // quando o programa termina
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Retorna as estatísticas de deduplicação do repositório.
+     *
+     * @return Estatísticas atuais
+     */
+    public synchronized EstatisticasFotos getEstatisticas() {
+        return new EstatisticasFotos(fotosPorHash.size(), referencias, bytesArmazenados, bytesReferenciados);
+    }
+
+    /**
+     * Retorna os bytes de uma foto como um ByteBuffer somente-leitura que
+     * aponta diretamente para o segmento mapeado (sem cópia).
+     *
+     * @param referencia Referência da foto
+     * @return Bytes da foto
+     * @throws IOException Se houver erro ao mapear o segmento
+     */
+    public ByteBuffer ler(ReferenciaFoto referencia) throws IOException {
+        ByteBuffer segmento = segmento(referencia.getSegmento());
+        ByteBuffer foto = segmento.duplicate();
+        foto.position(referencia.getPosicao());
+        foto.limit(referencia.getPosicao() + referencia.getTamanho());
+        return foto.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Garante que os bytes de uma foto (e o seu cabeçalho) estão gravados em
+     * disco.
+     *
+     * @param referencia Referência da foto
+     * @throws IOException Se houver erro ao mapear o segmento
+     */
+    public void sincronizar(ReferenciaFoto referencia) throws IOException {
+        MappedByteBuffer segmento = segmento(referencia.getSegmento());
+        segmento.force(referencia.getPosicao() - TAMANHO_CABECALHO, TAMANHO_CABECALHO + referencia.getTamanho());
+    }
+
+    /**
+     * Cria o objeto que calcula o hash das fotos.
+     */
+    private static MessageDigest criarDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITMO_HASH);
+        } catch (NoSuchAlgorithmException e) {
+            // toda implementação do Java é obrigada a oferecer SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Retorna o segmento de número passado, mapeando-o se necessário.
+     */
+    private synchronized MappedByteBuffer segmento(int numero) throws IOException {
+        MappedByteBuffer segmento = segmentos.get(numero);
+        if (segmento == null) {
+            if (temporario) {
+                // todos os segmentos do repositório temporário são mapeados ao
+                // serem criados; se não está mapeado, já foi apagado
+                throw new IOException("O segmento de fotos " + numero + " foi apagado");
+            }
+            segmento = mapear(numero, 0, false);
+        }
+        return segmento;
+    }
+
+    /**
+     * Mapeia um arquivo de segmento em memória.
+     *
+     * @param numero     Número do segmento
+     * @param capacidade Capacidade de um segmento novo (ignorada se já existe)
+     * @param novo       Se o segmento está sendo criado agora
+     */
+    private MappedByteBuffer mapear(int numero, int capacidade, boolean novo) throws IOException {
+        Path arquivo = caminhoSegmento(numero);
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            long tamanho = novo ? capacidade : canal.size();
+            // o mapeamento continua válido depois que o canal é fechado
+            MappedByteBuffer segmento = canal.map(FileChannel.MapMode.READ_WRITE, 0, tamanho);
+            segmentos.put(numero, segmento);
+            if (temporario) {
+                arquivo.toFile().deleteOnExit();
+            }
+            return segmento;
+        }
+    }
+
+    /**
+     * Retorna o caminho do arquivo de um segmento.
+     *
+     * @param numero Número do segmento
+     */
+    private Path caminhoSegmento(int numero) {
+        return diretorio.resolve(String.format("%s%06d%s", PREFIXO_SEGMENTO, numero, EXTENSAO_SEGMENTO));
+    }
+}
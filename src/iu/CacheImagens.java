@@ -0,0 +1,82 @@
+package iu;
+
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache de imagens decodificadas, por uma chave (ex.: o id da mensagem),
+ * limitado pela memória ocupada pelas imagens: quando o limite é
+ * ultrapassado, as imagens usadas há mais tempo são descartadas (LRU).
+ *
+ * @param <C> Tipo da chave das imagens
+ */
+class CacheImagens<C> {
+    // Quantidade máxima de bytes ocupados pelas imagens do cache
+    private final long limiteBytes;
+    // Imagens pela chave, da usada há mais tempo para a mais recente
+    private LinkedHashMap<C, BufferedImage> imagens;
+    // Quantidade de bytes ocupados pelas imagens do cache
+    private long bytesEmUso;
+
+    /**
+     * Cria o cache com o limite de memória passado.
+     *
+     * @param limiteBytes Quantidade máxima de bytes ocupados pelas imagens
+     */
+    public CacheImagens(long limiteBytes) {
+        this.limiteBytes = limiteBytes;
+        // ordem de acesso: cada busca move a imagem para o fim da ordem
+        imagens = new LinkedHashMap<>(16, 0.75f, true);
+        bytesEmUso = 0;
+    }
+
+    /**
+     * Retorna a imagem de uma chave, ou null se ela não está no cache.
+     *
+     * @param chave Chave da imagem
+     * @return A imagem ou null
+     */
+    public synchronized BufferedImage buscar(C chave) {
+        return imagens.get(chave);
+    }
+
+    /**
+     * Guarda a imagem de uma chave, descartando as usadas há mais tempo se o
+     * limite de memória for ultrapassado.
+     *
+     * @param chave  Chave da imagem
+     * @param imagem Imagem decodificada
+     */
+    public synchronized void guardar(C chave, BufferedImage imagem) {
+        BufferedImage anterior = imagens.put(chave, imagem);
+        if (anterior != null) {
+            bytesEmUso -= tamanhoEmBytes(anterior);
+        }
+        bytesEmUso += tamanhoEmBytes(imagem);
+        Iterator<Map.Entry<C, BufferedImage>> iterador = imagens.entrySet().iterator();
+        // a imagem recém-guardada é mantida mesmo que sozinha passe do limite
+        while (bytesEmUso > limiteBytes && imagens.size() > 1) {
+            BufferedImage descartada = iterador.next().getValue();
+            iterador.remove();
+            bytesEmUso -= tamanhoEmBytes(descartada);
+        }
+    }
+
+    /**
+     * Retorna quantos bytes ocupados pelas imagens estão no cache.
+     *
+     * @return Bytes em uso
+     */
+    public synchronized long getBytesEmUso() {
+        return bytesEmUso;
+    }
+
+    /**
+     * Estima a memória ocupada por uma imagem (4 bytes por pixel).
+     */
+    private static long tamanhoEmBytes(BufferedImage imagem) {
+        return 4L * imagem.getWidth() * imagem.getHeight();
+    }
+}
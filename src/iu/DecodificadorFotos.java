@@ -0,0 +1,274 @@
+package iu;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+import feed.FeedNoticias;
+
+/**
+ * Decodifica as fotos das mensagens fora da thread da interface gráfica e
+ * guarda as imagens já decodificadas (e reduzidas) em caches, para que a
+ * mesma foto não seja decodificada de novo a cada exibição.
+ *
+ * São mantidos dois caches: o das miniaturas exibidas na tabela do feed e o
+ * das fotos abertas para visualização (reduzidas ao tamanho da tela, que
+ * também faz parte da chave). Pedidos repetidos de uma imagem que ainda está
+ * sendo decodificada recebem o mesmo resultado, sem uma segunda
+ * decodificação.
+ */
+class DecodificadorFotos {
+    // Lado máximo (em pixels) das miniaturas
+    public static final int LADO_MINIATURA = 64;
+    // Memória máxima ocupada pelas miniaturas e pelas fotos em cache
+    private static final long LIMITE_MINIATURAS = 16L * 1024 * 1024;
+    private static final long LIMITE_FOTOS = 64L * 1024 * 1024;
+    // Quantidade de threads que decodificam as fotos
+    private static final int NRO_THREADS = 2;
+
+    /**
+     * Chave de uma foto aberta para visualização: a mesma foto reduzida para
+     * tamanhos máximos diferentes é uma imagem diferente.
+     */
+    private static final class ChaveFoto {
+        private final int idMensagem;
+        private final int larguraMaxima;
+        private final int alturaMaxima;
+
+        private ChaveFoto(int idMensagem, int larguraMaxima, int alturaMaxima) {
+            this.idMensagem = idMensagem;
+            this.larguraMaxima = larguraMaxima;
+            this.alturaMaxima = alturaMaxima;
+        }
+
+        @Override
+        public boolean equals(Object outro) {
+            if (!(outro instanceof ChaveFoto)) {
+                return false;
+            }
+            ChaveFoto chave = (ChaveFoto) outro;
+            return idMensagem == chave.idMensagem && larguraMaxima == chave.larguraMaxima
+                    && alturaMaxima == chave.alturaMaxima;
+        }
+
+        @Override
+        public int hashCode() {
+            return (idMensagem * 31 + larguraMaxima) * 31 + alturaMaxima;
+        }
+    }
+
+    // Feed de onde as fotos são lidas
+    private FeedNoticias feed;
+    // Threads que decodificam as fotos
+    private ExecutorService executor;
+    // Miniaturas (pelo id da mensagem) e fotos já decodificadas
+    private CacheImagens<Integer> miniaturas;
+    private CacheImagens<ChaveFoto> fotos;
+    // Decodificações em andamento (pela mesma chave dos caches)
+    private Map<Integer, CompletableFuture<BufferedImage>> miniaturasPendentes;
+    private Map<ChaveFoto, CompletableFuture<BufferedImage>> fotosPendentes;
+    // Mensagens cujas fotos não são imagens válidas (não são tentadas de novo
+    // a cada vez que a linha é desenhada); um erro ao ler os bytes da foto
+    // não entra aqui, pois pode não se repetir
+    private Set<Integer> falhas;
+
+    /**
+     * Cria o decodificador das fotos do feed passado.
+     *
+     * @param feed Feed de onde as fotos são lidas
+     */
+    public DecodificadorFotos(FeedNoticias feed) {
+        this.feed = feed;
+        executor = Executors.newFixedThreadPool(NRO_THREADS, tarefa -> {
+            Thread thread = new Thread(tarefa, "decodificador-fotos");
+            thread.setDaemon(true);
+            // a interface gráfica tem prioridade sobre a decodificação
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+        miniaturas = new CacheImagens<>(LIMITE_MINIATURAS);
+        fotos = new CacheImagens<>(LIMITE_FOTOS);
+        miniaturasPendentes = new ConcurrentHashMap<>();
+        fotosPendentes = new ConcurrentHashMap<>();
+        falhas = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Retorna a miniatura da foto de uma mensagem se ela já foi decodificada
+     * (não inicia a decodificação).
+     *
+     * @param idMensagem Identificador da mensagem
+     * @return A miniatura, ou null se ainda não está disponível
+     */
+    public BufferedImage getMiniatura(int idMensagem) {
+        return miniaturas.buscar(idMensagem);
+    }
+
+    /**
+     * Retorna quantas decodificações de miniaturas estão pendentes.
+     *
+     * @return Quantidade de miniaturas pendentes
+     */
+    public int getMiniaturasPendentes() {
+        return miniaturasPendentes.size();
+    }
+
+    /**
+     * Obtém a miniatura da foto de uma mensagem, decodificando-a em segundo
+     * plano se ainda não estiver no cache.
+     *
+     * @param idMensagem Identificador da mensagem
+     * @return Resultado da decodificação (já concluído se estava no cache)
+     */
+    public CompletableFuture<BufferedImage> carregarMiniatura(int idMensagem) {
+        return carregar(idMensagem, idMensagem, miniaturas, miniaturasPendentes, LADO_MINIATURA, LADO_MINIATURA);
+    }
+
+    /**
+     * Obtém a foto de uma mensagem para visualização, reduzida para caber no
+     * tamanho máximo passado e decodificada em segundo plano se ainda não
+     * estiver no cache.
+     *
+     * @param idMensagem    Identificador da mensagem
+     * @param larguraMaxima Largura máxima da imagem
+     * @param alturaMaxima  Altura máxima da imagem
+     * @return Resultado da decodificação (já concluído se estava no cache)
+     */
+    public CompletableFuture<BufferedImage> carregarFoto(int idMensagem, int larguraMaxima, int alturaMaxima) {
+        return carregar(idMensagem, new ChaveFoto(idMensagem, larguraMaxima, alturaMaxima), fotos, fotosPendentes,
+                larguraMaxima, alturaMaxima);
+    }
+
+    /**
+     * Busca a imagem no cache ou inicia (uma única vez) a sua decodificação.
+     */
+    private <C> CompletableFuture<BufferedImage> carregar(int idMensagem, C chave, CacheImagens<C> cache,
+            Map<C, CompletableFuture<BufferedImage>> pendentes, int larguraMaxima, int alturaMaxima) {
+        BufferedImage imagem = cache.buscar(chave);
+        if (imagem != null) {
+            return CompletableFuture.completedFuture(imagem);
+        }
+        if (falhas.contains(idMensagem)) {
+            return CompletableFuture.failedFuture(new IOException("A foto da mensagem " + idMensagem
+                    + " não pôde ser decodificada"));
+        }
+        CompletableFuture<BufferedImage> resultado = new CompletableFuture<>();
+        CompletableFuture<BufferedImage> emAndamento = pendentes.putIfAbsent(chave, resultado);
+        if (emAndamento != null) {
+            return emAndamento;
+        }
+        executor.execute(() -> {
+            try {
+                ByteBuffer bytesDaFoto = feed.getDadosBinarios(idMensagem);
+                if (bytesDaFoto == null) {
+                    falhas.add(idMensagem);
+                    throw new IOException("A mensagem " + idMensagem + " não tem foto");
+                }
+                BufferedImage decodificada;
+                try {
+                    decodificada = decodificar(bytesDaFoto, larguraMaxima, alturaMaxima);
+                } catch (IOException | RuntimeException e) {
+                    falhas.add(idMensagem);
+                    throw e;
+                }
+                cache.guardar(chave, decodificada);
+                resultado.complete(decodificada);
+            } catch (IOException | RuntimeException e) {
+                resultado.completeExceptionally(e);
+            } finally {
+                pendentes.remove(chave, resultado);
+            }
+        });
+        return resultado;
+    }
+
+    /**
+     * Decodifica uma imagem já reduzida para caber no tamanho máximo. Imagens
+     * muito maiores que o tamanho máximo são lidas com subamostragem (apenas
+     * parte dos pixels é decodificada), o que evita decodificar a imagem
+     * inteira só para reduzi-la depois.
+     *
+     * @param bytes         Bytes da imagem (jpg, png, ...)
+     * @param larguraMaxima Largura máxima
+     * @param alturaMaxima  Altura máxima
+     * @return A imagem decodificada
+     * @throws IOException Se os bytes não forem de uma imagem conhecida
+     */
+    static BufferedImage decodificar(ByteBuffer bytes, int larguraMaxima, int alturaMaxima) throws IOException {
+        try (ImageInputStream entrada = new MemoryCacheImageInputStream(new EntradaByteBuffer(bytes))) {
+            Iterator<ImageReader> leitores = ImageIO.getImageReaders(entrada);
+            if (!leitores.hasNext()) {
+                throw new IOException("Formato de imagem desconhecido");
+            }
+            ImageReader leitor = leitores.next();
+            try {
+                leitor.setInput(entrada, true, true);
+                return lerReduzida(leitor, larguraMaxima, alturaMaxima);
+            } finally {
+                leitor.dispose();
+            }
+        }
+    }
+
+    /**
+     * Lê a primeira imagem de um leitor já associado à entrada, reduzida para
+     * caber no tamanho máximo. Imagens muito maiores que o tamanho máximo são
+     * lidas com subamostragem.
+     *
+     * @param leitor        Leitor de imagens com a entrada definida
+     * @param larguraMaxima Largura máxima
+     * @param alturaMaxima  Altura máxima
+     * @return A imagem lida
+     * @throws IOException Se houver erro na leitura da imagem
+     */
+    static BufferedImage lerReduzida(ImageReader leitor, int larguraMaxima, int alturaMaxima) throws IOException {
+        int fator = Math.max(1, Math.max(leitor.getWidth(0) / larguraMaxima, leitor.getHeight(0) / alturaMaxima));
+        ImageReadParam parametros = leitor.getDefaultReadParam();
+        parametros.setSourceSubsampling(fator, fator, 0, 0);
+        return reduzir(leitor.read(0, parametros), larguraMaxima, alturaMaxima);
+    }
+
+    /**
+     * Reduz uma imagem (mantendo a proporção) para caber no tamanho máximo.
+     * Retorna a própria imagem se ela já couber.
+     *
+     * @param imagem        Imagem original
+     * @param larguraMaxima Largura máxima
+     * @param alturaMaxima  Altura máxima
+     * @return A imagem reduzida
+     */
+    static BufferedImage reduzir(BufferedImage imagem, int larguraMaxima, int alturaMaxima) {
+        double escala = Math.min((double) larguraMaxima / imagem.getWidth(),
+                (double) alturaMaxima / imagem.getHeight());
+        if (escala >= 1) {
+            return imagem;
+        }
+        int largura = Math.max(1, (int) Math.round(imagem.getWidth() * escala));
+        int altura = Math.max(1, (int) Math.round(imagem.getHeight() * escala));
+        int tipo = imagem.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage reduzida = new BufferedImage(largura, altura, tipo);
+        Graphics2D g = reduzida.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(imagem, 0, 0, largura, altura, null);
+        } finally {
+            g.dispose();
+        }
+        return reduzida;
+    }
+}
@@ -0,0 +1,56 @@
+package iu;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Fluxo de entrada que lê os bytes de um ByteBuffer (usado para decodificar
+ * as fotos do Feed sem copiá-las para um vetor de bytes).
+ */
+class EntradaByteBuffer extends InputStream {
+    // Buffer de onde os bytes são lidos
+    private ByteBuffer buffer;
+
+    /**
+     * Cria o fluxo de entrada sobre o buffer passado (a posição do buffer
+     * avança conforme os bytes são lidos).
+     *
+     * @param buffer Buffer com os bytes
+     */
+    public EntradaByteBuffer(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+        return buffer.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] destino, int inicio, int tamanho) {
+        if (tamanho == 0) {
+            return 0;
+        }
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+        int lidos = Math.min(tamanho, buffer.remaining());
+        buffer.get(destino, inicio, lidos);
+        return lidos;
+    }
+
+    @Override
+    public long skip(long quantidade) {
+        int pulados = (int) Math.max(0, Math.min(quantidade, buffer.remaining()));
+        buffer.position(buffer.position() + pulados);
+        return pulados;
+    }
+
+    @Override
+    public int available() {
+        return buffer.remaining();
+    }
+}
@@ -0,0 +1,230 @@
+package iu;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import feed.FeedNoticias;
+
+/**
+ * Prepara as fotos escolhidas pelo usuário e as posta no feed, fora da thread
+ * da interface gráfica.
+ *
+ * O arquivo é validado (tamanho máximo e formato jpg ou png, pelos primeiros
+ * bytes e não pela extensão) e lido diretamente do disco. Fotos maiores que a
+ * resolução máxima são reduzidas (com subamostragem na leitura) e
+ * recodificadas antes de serem postadas; as que já cabem na resolução máxima
+ * são postadas com os bytes originais, sem perda de qualidade.
+ */
+class IngestaoFotos {
+    // Lado máximo (em pixels) padrão das fotos postadas
+    public static final int LADO_MAXIMO_PADRAO = 2048;
+    // Tamanho máximo padrão (em bytes) dos arquivos de foto aceitos
+    public static final long TAMANHO_MAXIMO_PADRAO = 50L * 1024 * 1024;
+    // Qualidade das fotos recodificadas como jpg (de 0 a 1)
+    private static final float QUALIDADE_JPEG = 0.85f;
+    // Assinaturas (primeiros bytes) dos formatos aceitos
+    private static final byte[] ASSINATURA_JPEG = { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF };
+    private static final byte[] ASSINATURA_PNG = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+
+    // Feed onde as fotos são postadas
+    private FeedNoticias feed;
+    // Lado máximo (em pixels) das fotos postadas
+    private int ladoMaximo;
+    // Tamanho máximo (em bytes) dos arquivos aceitos
+    private long tamanhoMaximo;
+    // Thread que prepara e posta as fotos
+    private ExecutorService executor;
+
+    /**
+     * Cria a ingestão de fotos com os limites padrão.
+     *
+     * @param feed Feed onde as fotos são postadas
+     */
+    public IngestaoFotos(FeedNoticias feed) {
+        this(feed, LADO_MAXIMO_PADRAO, TAMANHO_MAXIMO_PADRAO);
+    }
+
+    /**
+     * Cria a ingestão de fotos com os limites passados.
+     *
+     * @param feed          Feed onde as fotos são postadas
+     * @param ladoMaximo    Lado máximo (em pixels) das fotos postadas
+     * @param tamanhoMaximo Tamanho máximo (em bytes) dos arquivos aceitos
+     */
+    public IngestaoFotos(FeedNoticias feed, int ladoMaximo, long tamanhoMaximo) {
+        this.feed = feed;
+        this.ladoMaximo = ladoMaximo;
+        this.tamanhoMaximo = tamanhoMaximo;
+        executor = Executors.newSingleThreadExecutor(tarefa -> {
+            Thread thread = new Thread(tarefa, "ingestao-fotos");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Prepara a foto do arquivo e a posta no feed, em segundo plano.
+     *
+     * @param autor   Nome do autor da mensagem
+     * @param arquivo Arquivo da foto
+     * @param legenda Legenda da foto
+     * @return Resultado da postagem (concluído com erro se a foto for
+     *         recusada ou não puder ser lida)
+     */
+    public CompletableFuture<Void> postar(String autor, Path arquivo, String legenda) {
+        CompletableFuture<Void> resultado = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                prepararEPostar(autor, arquivo, legenda);
+                resultado.complete(null);
+            } catch (IOException | RuntimeException e) {
+                resultado.completeExceptionally(e);
+            }
+        });
+        return resultado;
+    }
+
+    /**
+     * Valida, reduz (se necessário) e posta a foto.
+     */
+    private void prepararEPostar(String autor, Path arquivo, String legenda) throws IOException {
+        long tamanho = Files.size(arquivo);
+        if (tamanho > tamanhoMaximo) {
+            throw new FotoRecusadaException(String.format("A foto tem %.1f MB; o limite é %.1f MB.",
+                    tamanho / (1024.0 * 1024), tamanhoMaximo / (1024.0 * 1024)));
+        }
+        String formato = detectarFormato(arquivo);
+        if (formato == null) {
+            throw new FotoRecusadaException("O arquivo não é uma imagem jpg ou png.");
+        }
+
+        BufferedImage reduzida;
+        try (FileImageInputStream entrada = new FileImageInputStream(arquivo.toFile())) {
+            Iterator<ImageReader> leitores = ImageIO.getImageReadersByFormatName(formato);
+            ImageReader leitor = leitores.next();
+            try {
+                leitor.setInput(entrada, true, true);
+                if (leitor.getWidth(0) <= ladoMaximo && leitor.getHeight(0) <= ladoMaximo) {
+                    reduzida = null;
+                } else {
+                    reduzida = DecodificadorFotos.lerReduzida(leitor, ladoMaximo, ladoMaximo);
+                }
+            } finally {
+                leitor.dispose();
+            }
+        }
+
+        if (reduzida == null) {
+            // a foto já cabe na resolução máxima: os bytes originais são
+            // copiados do arquivo para o feed sem passar pela memória
+            try (InputStream bytesDaFoto = Files.newInputStream(arquivo)) {
+                feed.postarMensagemFoto(autor, bytesDaFoto, tamanho, legenda);
+            }
+        } else {
+            feed.postarMensagemFoto(autor, codificar(reduzida), legenda);
+        }
+    }
+
+    /**
+     * Identifica o formato da imagem pelos primeiros bytes do arquivo.
+     *
+     * @param arquivo Arquivo da imagem
+     * @return "jpeg", "png" ou null se não for nenhum dos dois
+     * @throws IOException Se houver erro na leitura do arquivo
+     */
+    static String detectarFormato(Path arquivo) throws IOException {
+        byte[] cabecalho = new byte[ASSINATURA_PNG.length];
+        int lidos;
+        try (InputStream entrada = Files.newInputStream(arquivo)) {
+            lidos = entrada.readNBytes(cabecalho, 0, cabecalho.length);
+        }
+        if (comecaCom(cabecalho, lidos, ASSINATURA_JPEG)) {
+            return "jpeg";
+        }
+        if (comecaCom(cabecalho, lidos, ASSINATURA_PNG)) {
+            return "png";
+        }
+        return null;
+    }
+
+    /**
+     * Verifica se os bytes lidos começam com a assinatura passada.
+     */
+    private static boolean comecaCom(byte[] bytes, int tamanho, byte[] assinatura) {
+        if (tamanho < assinatura.length) {
+            return false;
+        }
+        for (int i = 0; i < assinatura.length; i++) {
+            if (bytes[i] != assinatura[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Codifica uma imagem reduzida: como png se ela tiver transparência, e
+     * como jpg caso contrário.
+     *
+     * @param imagem Imagem a ser codificada
+     * @return Bytes da imagem codificada
+     * @throws IOException Se houver erro na codificação
+     */
+    private static byte[] codificar(BufferedImage imagem) throws IOException {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        // a imagem é codificada direto na memória (sem arquivo temporário)
+        try (ImageOutputStream saidaImagem = new MemoryCacheImageOutputStream(saida)) {
+            if (imagem.getColorModel().hasAlpha()) {
+                ImageIO.write(imagem, "png", saidaImagem);
+            } else {
+                escreverJpeg(imagem, saidaImagem);
+            }
+        }
+        return saida.toByteArray();
+    }
+
+    /**
+     * Codifica uma imagem como jpg com a qualidade definida.
+     */
+    private static void escreverJpeg(BufferedImage imagem, ImageOutputStream saidaImagem) throws IOException {
+        ImageWriter escritor = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try {
+            escritor.setOutput(saidaImagem);
+            ImageWriteParam parametros = escritor.getDefaultWriteParam();
+            parametros.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            parametros.setCompressionQuality(QUALIDADE_JPEG);
+            escritor.write(null, new IIOImage(imagem, null, null), parametros);
+        } finally {
+            escritor.dispose();
+        }
+    }
+
+    /**
+     * Exceção lançada quando a foto escolhida não é aceita (tamanho ou formato
+     * inválido). A mensagem é própria para ser exibida ao usuário.
+     */
+    static class FotoRecusadaException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        FotoRecusadaException(String mensagem) {
+            super(mensagem);
+        }
+    }
+}
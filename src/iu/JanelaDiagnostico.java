@@ -0,0 +1,141 @@
+package iu;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.List;
+
+import javax.swing.BoxLayout;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.Timer;
+import javax.swing.table.DefaultTableModel;
+
+import feed.EstatisticasOperacao;
+import feed.FeedNoticias;
+
+/**
+ * Janela de diagnóstico: exibe os tempos das operações do feed e da tela
+ * (quantidade, média, percentis e máximo), além do tamanho do feed e das
+ * estatísticas das fotos e do cache de texto. Os valores são atualizados a
+ * cada segundo enquanto a janela está aberta.
+ */
+class JanelaDiagnostico {
+    // Intervalo (em milissegundos) entre as atualizações
+    private static final int INTERVALO_ATUALIZACAO = 1000;
+    // Colunas da tabela de operações
+    private static final String[] COLUNAS = { "Operação", "Execuções", "Média (µs)", "p50 (µs)", "p90 (µs)",
+            "p99 (µs)", "Máximo (µs)" };
+
+    // Feed cujas métricas são exibidas
+    private FeedNoticias feed;
+    // Janela de diagnóstico
+    private JDialog janela;
+    // Modelo da tabela de operações
+    private DefaultTableModel modeloOperacoes;
+    // Rótulo com o tamanho do feed
+    private JLabel rotuloFeed;
+    // Rótulo com as estatísticas das fotos
+    private JLabel rotuloFotos;
+    // Rótulo com as estatísticas do cache de texto
+    private JLabel rotuloCacheTexto;
+    // Temporizador que atualiza os valores (na thread da interface gráfica)
+    private Timer temporizador;
+
+    /**
+     * Cria a janela de diagnóstico (sem exibi-la).
+     *
+     * @param dona Janela principal
+     * @param feed Feed cujas métricas são exibidas
+     */
+    public JanelaDiagnostico(JFrame dona, FeedNoticias feed) {
+        this.feed = feed;
+        janela = new JDialog(dona, "Diagnóstico", false);
+        modeloOperacoes = new DefaultTableModel(COLUNAS, 0) {
+            @Override
+            public boolean isCellEditable(int linha, int coluna) {
+                return false;
+            }
+        };
+        rotuloFeed = new JLabel();
+        rotuloFotos = new JLabel();
+        rotuloCacheTexto = new JLabel();
+        JButton botaoZerar = new JButton("Zerar tempos");
+        botaoZerar.addActionListener(e -> {
+            feed.getMetricas().zerar();
+            atualizar();
+        });
+
+        JPanel painelResumo = new JPanel();
+        painelResumo.setLayout(new BoxLayout(painelResumo, BoxLayout.Y_AXIS));
+        painelResumo.add(rotuloFeed);
+        painelResumo.add(rotuloFotos);
+        painelResumo.add(rotuloCacheTexto);
+        JPanel painelBotoes = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        painelBotoes.add(botaoZerar);
+
+        janela.setLayout(new BorderLayout());
+        janela.add(painelResumo, BorderLayout.NORTH);
+        janela.add(new JScrollPane(new JTable(modeloOperacoes)), BorderLayout.CENTER);
+        janela.add(painelBotoes, BorderLayout.SOUTH);
+        janela.setSize(760, 360);
+        janela.setLocationRelativeTo(dona);
+
+        temporizador = new Timer(INTERVALO_ATUALIZACAO, e -> atualizar());
+        janela.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                temporizador.stop();
+            }
+        });
+        janela.setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+    }
+
+    /**
+     * Exibe a janela e começa a atualizar os valores.
+     */
+    public void exibir() {
+        atualizar();
+        temporizador.start();
+        janela.setVisible(true);
+    }
+
+    /**
+     * Atualiza os valores exibidos.
+     */
+    private void atualizar() {
+        rotuloFeed.setText(String.format("Mensagens em memória: %d (cerca de %.1f MB); arquivadas em disco: %d",
+                feed.nroMensagens(), feed.getBytesRetidos() / (1024.0 * 1024), feed.getNroMensagensArquivadas()));
+        rotuloFotos.setText("Fotos: " + feed.getEstatisticasFotos());
+        long acertos = feed.getAcertosCacheTexto();
+        long falhas = feed.getFalhasCacheTexto();
+        rotuloCacheTexto.setText(String.format("Cache de texto: %d acertos, %d falhas (%.1f%% de acertos)",
+                acertos, falhas, (acertos + falhas == 0) ? 0 : 100.0 * acertos / (acertos + falhas)));
+
+        List<EstatisticasOperacao> operacoes = feed.getMetricas().getOperacoes();
+        modeloOperacoes.setRowCount(operacoes.size());
+        for (int linha = 0; linha < operacoes.size(); linha++) {
+            EstatisticasOperacao operacao = operacoes.get(linha);
+            modeloOperacoes.setValueAt(operacao.getNome(), linha, 0);
+            modeloOperacoes.setValueAt(operacao.getContagem(), linha, 1);
+            modeloOperacoes.setValueAt(formatar(operacao.getMediaMicros()), linha, 2);
+            modeloOperacoes.setValueAt(formatar(operacao.getP50Micros()), linha, 3);
+            modeloOperacoes.setValueAt(formatar(operacao.getP90Micros()), linha, 4);
+            modeloOperacoes.setValueAt(formatar(operacao.getP99Micros()), linha, 5);
+            modeloOperacoes.setValueAt(formatar(operacao.getMaximoMicros()), linha, 6);
+        }
+    }
+
+    /**
+     * Formata um tempo em microssegundos com uma casa decimal.
+     */
+    private static String formatar(double micros) {
+        return String.format("%.1f", micros);
+    }
+}
@@ -0,0 +1,191 @@
+package iu;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import javax.swing.table.AbstractTableModel;
+
+import feed.FeedNoticias;
+import feed.Publicacao;
+
+/**
+ * Modelo da tabela que exibe o Feed de Notícias. Não guarda cópia das
+ * publicações: cada linha é buscada no feed (pela posição) apenas quando a
+ * tabela precisa desenhá-la, ou seja, só as linhas visíveis são formatadas.
+ *
+ * A quantidade de linhas é controlada pelo próprio modelo (e não lida do
+ * feed a cada chamada), pois a tabela precisa ser avisada de cada linha
+ * inserida, e o feed pode ter recebido postagens que a tela ainda não tratou.
+ *
+ * O modelo também pode exibir o resultado de uma consulta ao feed (as
+ * publicações mais populares ou o resultado de uma busca); nesse caso ele
+ * guarda a lista (pequena) retornada pela consulta, que é refeita ao
+ * recarregar.
+ */
+class ModeloTabelaFeed extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+
+    // Feed de notícias exibido
+    private FeedNoticias feed;
+    // Autor cujas publicações são exibidas (null para exibir todas)
+    private String autor;
+    // Quantidade de linhas exibidas na tabela
+    private int nroLinhas;
+    // Consulta cujo resultado é exibido (null se a tabela exibe o feed em
+    // ordem de postagem)
+    private Supplier<List<Publicacao>> consulta;
+    // Publicações retornadas pela consulta
+    private List<Publicacao> resultadoConsulta;
+
+    /**
+     * Cria o modelo exibindo todas as publicações do feed.
+     *
+     * @param feed Feed de notícias a ser exibido
+     */
+    public ModeloTabelaFeed(FeedNoticias feed) {
+        this.feed = feed;
+        autor = null;
+        consulta = null;
+        resultadoConsulta = null;
+        nroLinhas = feed.nroMensagens();
+    }
+
+    /**
+     * Muda o autor cujas publicações são exibidas e recarrega a tabela.
+     *
+     * @param autor Autor das publicações (null para exibir todas)
+     */
+    public void exibirAutor(String autor) {
+        this.autor = autor;
+        consulta = null;
+        recarregar();
+    }
+
+    /**
+     * Passa a exibir o resultado de uma consulta ao feed (ex.: as publicações
+     * mais populares) e recarrega a tabela.
+     *
+     * @param consulta Consulta que retorna as publicações a serem exibidas
+     */
+    public void exibirConsulta(Supplier<List<Publicacao>> consulta) {
+        this.autor = null;
+        this.consulta = consulta;
+        recarregar();
+    }
+
+    /**
+     * Retorna se a tabela está exibindo o resultado de uma consulta.
+     *
+     * @return true se exibe o resultado de uma consulta
+     */
+    public boolean isExibindoConsulta() {
+        return consulta != null;
+    }
+
+    /**
+     * Recarrega a quantidade de linhas a partir do feed e avisa a tabela que
+     * todos os dados mudaram.
+     */
+    public void recarregar() {
+        if (consulta != null) {
+            resultadoConsulta = consulta.get();
+            nroLinhas = resultadoConsulta.size();
+        } else {
+            resultadoConsulta = null;
+            nroLinhas = (autor == null) ? feed.nroMensagens() : feed.nroMensagens(autor);
+        }
+        fireTableDataChanged();
+    }
+
+    /**
+     * Trata a postagem de uma nova publicação: se ela for do autor exibido,
+     * acrescenta uma linha no final da tabela.
+     *
+     * @param publicacao Publicação postada
+     * @return Linha inserida, ou -1 se a publicação não é exibida
+     */
+    public int publicacaoPostada(Publicacao publicacao) {
+        // o resultado de uma consulta só muda ao ser recarregado
+        if (consulta != null || (autor != null && !autor.equals(publicacao.getAutor()))) {
+            return -1;
+        }
+        nroLinhas++;
+        fireTableRowsInserted(nroLinhas - 1, nroLinhas - 1);
+        return nroLinhas - 1;
+    }
+
+    /**
+     * Trata a alteração de uma publicação: se ela estiver sendo exibida, avisa
+     * a tabela que apenas a linha dela mudou.
+     *
+     * @param publicacao Publicação curtida ou comentada
+     * @return Linha alterada, ou -1 se a publicação não é exibida
+     */
+    public int publicacaoAlterada(Publicacao publicacao) {
+        int linha = linhaDaPublicacao(publicacao.getId());
+        if (linha >= 0) {
+            fireTableRowsUpdated(linha, linha);
+        }
+        return linha;
+    }
+
+    /**
+     * Retorna a linha em que uma publicação é exibida, ou -1 se ela não está
+     * na tabela.
+     *
+     * @param idMensagem Identificador da publicação
+     * @return Linha da publicação ou -1
+     */
+    public int linhaDaPublicacao(int idMensagem) {
+        if (resultadoConsulta != null) {
+            for (int linha = 0; linha < resultadoConsulta.size(); linha++) {
+                if (resultadoConsulta.get(linha).getId() == idMensagem) {
+                    return linha;
+                }
+            }
+            return -1;
+        }
+        int linha = (autor == null) ? feed.posicaoDaPublicacao(idMensagem)
+                : feed.posicaoDaPublicacao(autor, idMensagem);
+        return linha < nroLinhas ? linha : -1;
+    }
+
+    /**
+     * Retorna a publicação exibida em uma linha.
+     *
+     * @param linha Linha da tabela
+     * @return Publicação da linha (null se ela acabou de ser descartada do
+     *         feed e a tabela ainda não foi recarregada)
+     */
+    public Publicacao getPublicacao(int linha) {
+        if (resultadoConsulta != null) {
+            return resultadoConsulta.get(linha);
+        }
+        return (autor == null) ? feed.getPublicacao(linha) : feed.getPublicacao(autor, linha);
+    }
+
+    @Override
+    public int getRowCount() {
+        return nroLinhas;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return 1;
+    }
+
+    @Override
+    public String getColumnName(int coluna) {
+        return "Feed de Notícias";
+    }
+
+    @Override
+    public Class<?> getColumnClass(int coluna) {
+        return Publicacao.class;
+    }
+
+    @Override
+    public Object getValueAt(int linha, int coluna) {
+        return getPublicacao(linha);
+    }
+}
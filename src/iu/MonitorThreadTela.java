@@ -0,0 +1,235 @@
+package iu;
+
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.awt.event.ActionListener;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.AbstractButton;
+import javax.swing.JComboBox;
+import javax.swing.JTextField;
+
+import feed.HistogramaLatencia;
+
+/**
+ * Monitora a thread da interface gráfica (EDT): mede o tempo do tratamento
+ * de cada evento e, quando um evento a mantém ocupada por mais que o limite
+ * configurado, registra em System.err a pilha de chamadas da thread naquele
+ * momento e os ouvintes (ActionListener) que o evento acionou. Assim fica
+ * fácil descobrir quais ações travam a janela e confirmar as correções.
+ *
+ * O monitor substitui a fila de eventos do sistema por ele mesmo; uma thread
+ * auxiliar (de baixa prioridade) verifica periodicamente se o evento em
+ * tratamento já passou do limite.
+ */
+class MonitorThreadTela extends EventQueue {
+    // Limite padrão (em milissegundos) para considerar a interface travada
+    public static final long LIMITE_PADRAO = 250;
+    // Propriedade do sistema que altera o limite (ex.: -Dredesocial.limiteBloqueioTela=100)
+    public static final String PROPRIEDADE_LIMITE = "redesocial.limiteBloqueioTela";
+    // Quantidade máxima de chamadas da pilha exibidas em cada registro
+    private static final int MAXIMO_CHAMADAS = 40;
+
+    /**
+     * Tratamento de um evento pela thread da interface.
+     */
+    private static class Despacho {
+        // Evento sendo tratado
+        private final AWTEvent evento;
+        // Instante (System.nanoTime) do início do tratamento
+        private final long inicio;
+        // Indica se o travamento já foi registrado pela thread auxiliar
+        private volatile boolean registrado;
+
+        private Despacho(AWTEvent evento, long inicio) {
+            this.evento = evento;
+            this.inicio = inicio;
+        }
+    }
+
+    // Limite (em nanossegundos) para considerar a interface travada
+    private final long limiteNanos;
+    // Histograma dos tempos de tratamento dos eventos
+    private final HistogramaLatencia tempos;
+    // Eventos em tratamento, do mais interno (no topo) ao mais externo: um
+    // evento pode ser tratado dentro de outro, no laço de um diálogo modal
+    // (usada apenas pela thread da interface)
+    private final Deque<Despacho> despachos = new ArrayDeque<>();
+    // Evento mais interno em tratamento no momento (null se a thread está
+    // livre), lido pela thread auxiliar
+    private volatile Despacho despachoAtual;
+    // Thread da interface gráfica (a que trata os eventos)
+    private volatile Thread threadTela;
+
+    /**
+     * Cria o monitor, com o limite lido da propriedade do sistema
+     * PROPRIEDADE_LIMITE (ou LIMITE_PADRAO, se ela não foi definida).
+     *
+     * @param tempos Histograma onde os tempos de tratamento dos eventos são
+     *               registrados
+     */
+    public MonitorThreadTela(HistogramaLatencia tempos) {
+        this(Long.getLong(PROPRIEDADE_LIMITE, LIMITE_PADRAO), tempos);
+    }
+
+    /**
+     * Cria o monitor.
+     *
+     * @param limiteMillis Tempo (em milissegundos) a partir do qual o
+     *                     tratamento de um evento é considerado um travamento
+     * @param tempos       Histograma onde os tempos de tratamento dos eventos
+     *                     são registrados
+     */
+    public MonitorThreadTela(long limiteMillis, HistogramaLatencia tempos) {
+        if (limiteMillis <= 0) {
+            throw new IllegalArgumentException("O limite deve ser positivo: " + limiteMillis);
+        }
+        this.limiteNanos = TimeUnit.MILLISECONDS.toNanos(limiteMillis);
+        this.tempos = tempos;
+    }
+
+    /**
+     * Passa a monitorar a thread da interface: coloca o monitor no lugar da
+     * fila de eventos do sistema e inicia a thread auxiliar.
+     */
+    public void instalar() {
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(this);
+        Thread vigia = new Thread(this::vigiar, "monitor-thread-tela");
+        vigia.setDaemon(true);
+        vigia.setPriority(Thread.MIN_PRIORITY);
+        vigia.start();
+    }
+
+    @Override
+    protected void dispatchEvent(AWTEvent evento) {
+        threadTela = Thread.currentThread();
+        Despacho despacho = new Despacho(evento, System.nanoTime());
+        despachos.push(despacho);
+        despachoAtual = despacho;
+        try {
+            super.dispatchEvent(evento);
+        } finally {
+            // se outros eventos foram tratados dentro deste, o registro dele
+            // foi refeito quando o último terminou, e o tempo é contado a
+            // partir daí (até então a interface estava respondendo)
+            despacho = despachos.pop();
+            long duracao = System.nanoTime() - despacho.inicio;
+            Despacho externo = despachos.poll();
+            if (externo != null) {
+                // o evento externo volta a ser monitorado, a partir de agora
+                Despacho restaurado = new Despacho(externo.evento, System.nanoTime());
+                despachos.push(restaurado);
+                despachoAtual = restaurado;
+            } else {
+                despachoAtual = null;
+            }
+            tempos.registrar(duracao);
+            if (despacho.registrado) {
+                System.err.printf("[monitor da tela] evento liberou a interface após %d ms: %s%n",
+                        TimeUnit.NANOSECONDS.toMillis(duracao), descrever(evento));
+            }
+        }
+    }
+
+    /**
+     * Laço da thread auxiliar: verifica periodicamente se o evento em
+     * tratamento já passou do limite e, se passou, registra o travamento
+     * (uma vez por evento).
+     */
+    private void vigiar() {
+        long intervalo = Math.max(1, TimeUnit.NANOSECONDS.toMillis(limiteNanos) / 4);
+        while (true) {
+            try {
+                Thread.sleep(intervalo);
+            } catch (InterruptedException e) {
+                return;
+            }
+            Despacho despacho = despachoAtual;
+            if (despacho != null && !despacho.registrado && System.nanoTime() - despacho.inicio > limiteNanos) {
+                despacho.registrado = true;
+                registrarTravamento(despacho);
+            }
+        }
+    }
+
+    /**
+     * Registra em System.err um travamento: o evento, os ouvintes acionados
+     * e a pilha de chamadas atual da thread da interface.
+     */
+    private void registrarTravamento(Despacho despacho) {
+        Thread thread = threadTela;
+        StackTraceElement[] pilha = thread.getStackTrace();
+        // o evento pode ter terminado enquanto a pilha era obtida
+        if (despachoAtual != despacho) {
+            return;
+        }
+        StringBuilder texto = new StringBuilder();
+        texto.append(String.format("[monitor da tela] interface travada há %d ms tratando %s%n",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - despacho.inicio), descrever(despacho.evento)));
+        String ouvinte = ouvinteEmExecucao(pilha);
+        if (ouvinte != null) {
+            texto.append("\touvinte em execução: ").append(ouvinte).append(System.lineSeparator());
+        }
+        int quantidade = Math.min(pilha.length, MAXIMO_CHAMADAS);
+        for (int i = 0; i < quantidade; i++) {
+            texto.append("\tem ").append(pilha[i]).append(System.lineSeparator());
+        }
+        if (pilha.length > quantidade) {
+            texto.append("\t... mais ").append(pilha.length - quantidade).append(" chamadas")
+                    .append(System.lineSeparator());
+        }
+        System.err.print(texto);
+    }
+
+    /**
+     * Procura na pilha de chamadas o ouvinte de ação em execução: o método
+     * actionPerformed mais próximo do tratamento do evento que não seja do
+     * próprio Swing/AWT (ex.: iu.TelaRedeSocial$5.actionPerformed).
+     */
+    private static String ouvinteEmExecucao(StackTraceElement[] pilha) {
+        for (int i = pilha.length - 1; i >= 0; i--) {
+            String classe = pilha[i].getClassName();
+            if (pilha[i].getMethodName().equals("actionPerformed") && !classe.startsWith("javax.swing.")
+                    && !classe.startsWith("java.awt.")) {
+                return pilha[i].toString();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Descreve um evento: o tipo, os parâmetros e, se a origem for um
+     * componente que gera eventos de ação (ex.: o clique em um botão), os
+     * ouvintes (ActionListener) registrados nele.
+     */
+    private static String descrever(AWTEvent evento) {
+        StringBuilder texto = new StringBuilder(evento.getClass().getSimpleName());
+        texto.append('[').append(evento.paramString()).append(']');
+        ActionListener[] ouvintes = ouvintesDe(evento.getSource());
+        if (ouvintes.length > 0) {
+            texto.append(" ouvintes:");
+            for (ActionListener ouvinte : ouvintes) {
+                texto.append(' ').append(ouvinte.getClass().getName());
+            }
+        }
+        return texto.toString();
+    }
+
+    /**
+     * Retorna os ouvintes de ação dos componentes que geram eventos de ação
+     * na tela (botões, itens de menu, caixas de seleção e campos de texto).
+     */
+    private static ActionListener[] ouvintesDe(Object origem) {
+        if (origem instanceof AbstractButton) {
+            return ((AbstractButton) origem).getActionListeners();
+        } else if (origem instanceof JComboBox) {
+            return ((JComboBox<?>) origem).getActionListeners();
+        } else if (origem instanceof JTextField) {
+            return ((JTextField) origem).getActionListeners();
+        }
+        return new ActionListener[0];
+    }
+}
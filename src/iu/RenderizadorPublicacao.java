@@ -0,0 +1,167 @@
+package iu;
+
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.image.BufferedImage;
+
+import javax.swing.BorderFactory;
+import javax.swing.ImageIcon;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JTable;
+import javax.swing.JTextArea;
+import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+import javax.swing.table.TableCellRenderer;
+
+import feed.HistogramaLatencia;
+import feed.Publicacao;
+
+/**
+ * Desenha uma publicação em uma linha da tabela do feed. Usa uma única área
+ * de texto para todas as linhas (a tabela apenas "carimba" o componente na
+ * posição de cada linha visível).
+ *
+ * As publicações com foto são desenhadas com a miniatura da foto à esquerda
+ * do texto. Se a miniatura ainda não foi decodificada, a linha é desenhada sem
+ * ela, a decodificação é pedida em segundo plano e a linha é redesenhada
+ * quando a miniatura fica pronta.
+ */
+class RenderizadorPublicacao implements TableCellRenderer {
+    // Espaço extra (em pixels) somado à altura das linhas
+    private static final int MARGEM = 6;
+
+    // Painel com a miniatura e o texto da publicação
+    private JPanel painel;
+    // Área de texto usada para desenhar as publicações
+    private JTextArea areaTexto;
+    // Rótulo usado para desenhar as miniaturas das fotos
+    private JLabel rotuloMiniatura;
+    // Ícone reaproveitado para as miniaturas
+    private ImageIcon iconeMiniatura;
+    // Buffer reaproveitado para formatar o texto das publicações
+    private StringBuilder textoPublicacao;
+    // Decodificador das miniaturas das fotos
+    private DecodificadorFotos decodificadorFotos;
+    // Tempos de preparação das linhas (formatação do texto e miniatura)
+    private HistogramaLatencia tempoPreparacao;
+    // Altura (em pixels) de uma linha de texto na fonte das publicações
+    private int alturaLinhaTexto;
+
+    /**
+     * Cria o renderizador usando a fonte passada.
+     *
+     * @param fonte              Fonte do texto das publicações
+     * @param decodificadorFotos Decodificador das miniaturas das fotos
+     * @param tempoPreparacao    Histograma onde são registrados os tempos de
+     *                           preparação de cada linha
+     */
+    public RenderizadorPublicacao(Font fonte, DecodificadorFotos decodificadorFotos,
+            HistogramaLatencia tempoPreparacao) {
+        this.decodificadorFotos = decodificadorFotos;
+        this.tempoPreparacao = tempoPreparacao;
+        areaTexto = new JTextArea();
+        textoPublicacao = new StringBuilder();
+        areaTexto.setFont(fonte);
+        alturaLinhaTexto = areaTexto.getFontMetrics(fonte).getHeight();
+        areaTexto.setEditable(false);
+        areaTexto.setBorder(BorderFactory.createEmptyBorder(MARGEM / 2, 0, MARGEM / 2, 0));
+        iconeMiniatura = new ImageIcon();
+        rotuloMiniatura = new JLabel();
+        rotuloMiniatura.setVerticalAlignment(SwingConstants.TOP);
+        rotuloMiniatura.setBorder(BorderFactory.createEmptyBorder(MARGEM / 2, MARGEM / 2, MARGEM / 2, MARGEM));
+        rotuloMiniatura.setPreferredSize(new Dimension(DecodificadorFotos.LADO_MINIATURA + MARGEM * 3 / 2,
+                DecodificadorFotos.LADO_MINIATURA + MARGEM));
+        painel = new JPanel(new BorderLayout());
+        painel.add(rotuloMiniatura, BorderLayout.WEST);
+        painel.add(areaTexto, BorderLayout.CENTER);
+    }
+
+    @Override
+    public Component getTableCellRendererComponent(JTable tabela, Object valor, boolean selecionada,
+            boolean comFoco, int linha, int coluna) {
+        long inicio = System.nanoTime();
+        Publicacao publicacao = (Publicacao) valor;
+        textoPublicacao.setLength(0);
+        if (publicacao != null) {
+            publicacao.escreverTextoExibicao(textoPublicacao);
+            exibirMiniatura(tabela, publicacao);
+        } else {
+            // publicação descartada do feed (a tabela será recarregada)
+            rotuloMiniatura.setVisible(false);
+        }
+        areaTexto.setText(textoPublicacao.toString());
+        if (selecionada) {
+            painel.setBackground(tabela.getSelectionBackground());
+            areaTexto.setBackground(tabela.getSelectionBackground());
+            areaTexto.setForeground(tabela.getSelectionForeground());
+        } else {
+            painel.setBackground(tabela.getBackground());
+            areaTexto.setBackground(tabela.getBackground());
+            areaTexto.setForeground(tabela.getForeground());
+        }
+        tempoPreparacao.registrarDesde(inicio);
+        return painel;
+    }
+
+    /**
+     * Coloca no rótulo a miniatura da foto da publicação (se ela tiver foto e
+     * a miniatura já estiver decodificada). Se não estiver, pede a
+     * decodificação e redesenha a linha quando ela terminar.
+     */
+    private void exibirMiniatura(JTable tabela, Publicacao publicacao) {
+        rotuloMiniatura.setVisible(publicacao.temFoto());
+        rotuloMiniatura.setIcon(null);
+        if (!publicacao.temFoto()) {
+            return;
+        }
+        BufferedImage miniatura = decodificadorFotos.getMiniatura(publicacao.getId());
+        if (miniatura != null) {
+            iconeMiniatura.setImage(miniatura);
+            rotuloMiniatura.setIcon(iconeMiniatura);
+        } else {
+            int idMensagem = publicacao.getId();
+            decodificadorFotos.carregarMiniatura(idMensagem).thenRun(
+                    () -> SwingUtilities.invokeLater(() -> redesenharPublicacao(tabela, idMensagem)));
+        }
+    }
+
+    /**
+     * Redesenha a linha de uma publicação (se ela ainda estiver na tabela).
+     */
+    private static void redesenharPublicacao(JTable tabela, int idMensagem) {
+        int linha = ((ModeloTabelaFeed) tabela.getModel()).linhaDaPublicacao(idMensagem);
+        if (linha >= 0) {
+            tabela.repaint(tabela.getCellRect(linha, 0, false));
+        }
+    }
+
+    /**
+     * Calcula a altura da linha de uma publicação sem formatar o seu texto:
+     * o texto de exibição tem quatro linhas fixas mais uma linha por
+     * comentário (e a linha não fica menor que a miniatura, se houver foto).
+     *
+     * @param publicacao Publicação
+     * @return Altura da linha em pixels
+     */
+    public int calcularAltura(Publicacao publicacao) {
+        int altura = calcularAltura(publicacao.getNroComentarios());
+        if (publicacao.temFoto()) {
+            altura = Math.max(altura, DecodificadorFotos.LADO_MINIATURA + MARGEM);
+        }
+        return altura;
+    }
+
+    /**
+     * Calcula a altura da linha de uma publicação a partir da quantidade de
+     * comentários.
+     *
+     * @param nroComentarios Quantidade de comentários da publicação
+     * @return Altura da linha em pixels
+     */
+    public int calcularAltura(int nroComentarios) {
+        return (4 + nroComentarios) * alturaLinhaTexto + MARGEM;
+    }
+}
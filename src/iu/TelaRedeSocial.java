@@ -1,27 +1,34 @@
 package iu;
 
 import java.awt.BorderLayout;
+import java.awt.Dimension;
 import java.awt.FlowLayout;
 import java.awt.GridBagLayout;
 import java.awt.HeadlessException;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.BitSet;
 import java.util.List;
+import java.util.concurrent.CompletionException;
 
 import feed.FeedNoticias;
+import feed.OuvinteFeed;
+import feed.PoliticaRetencao;
 import feed.Publicacao;
 
-import javax.imageio.ImageIO;
-import java.io.ByteArrayInputStream;
-
+import javax.management.JMException;
 import javax.swing.*;
+import javax.swing.event.TableModelEvent;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
-import java.awt.image.BufferedImage;
-
 import com.formdev.flatlaf.FlatDarkLaf;
 
 import java.awt.Font;
@@ -35,10 +42,36 @@ import java.awt.Font;
  * @author Julio Cesar Alves
  */
 public class TelaRedeSocial {
+    // Diretório onde o feed de notícias guarda seus dados
+    private static final String DIRETORIO_DADOS = "dados-feed";
+    // Quantidade de linhas antes e depois das visíveis cujas miniaturas são
+    // decodificadas antecipadamente
+    private static final int LINHAS_PRE_CARREGADAS = 20;
+    // Quantidade de publicações exibidas na opção "Mais populares"
+    private static final int QUANTIDADE_MAIS_POPULARES = 50;
+    // Quantidade máxima de publicações exibidas no resultado de uma busca
+    private static final int LIMITE_RESULTADOS_BUSCA = 200;
+    // Nomes dos tempos da tela registrados nas métricas do feed
+    private static final String TEMPO_PREPARAR_LINHA = "preparar linha (tela)";
+    private static final String TEMPO_ATUALIZAR_FEED = "atualizarFeed (tela)";
+    private static final String TEMPO_EVENTO = "tratar evento (tela)";
+    // Nome com que as métricas do feed são publicadas via JMX
+    private static final String NOME_JMX = "RedeSocial";
+
     // Janela da nossa tela
     private JFrame janela;
-    // Caixa de texto para exibir o feed de noticiai
-    private JTextArea areaTextoFeed;
+    // Tabela para exibir o feed de notícias (uma publicação por linha)
+    private JTable tabelaFeed;
+    // Modelo da tabela do feed (busca no feed apenas as linhas visíveis)
+    private ModeloTabelaFeed modeloFeed;
+    // Linhas cuja altura já foi ajustada desde que a tabela foi recarregada
+    private BitSet linhasAjustadas;
+    // Objeto que desenha as publicações nas linhas da tabela
+    private RenderizadorPublicacao renderizadorPublicacao;
+    // Objeto que decodifica as fotos fora da thread da interface gráfica
+    private DecodificadorFotos decodificadorFotos;
+    // Objeto que prepara e posta as fotos fora da thread da interface gráfica
+    private IngestaoFotos ingestaoFotos;
     // Botão para postar uma mensagem no feed
     private JButton botaoPostarMensagem;
     // Botão para curtir uma mensagem do feed
@@ -58,11 +91,19 @@ public class TelaRedeSocial {
     private JMenuItem itemVisualizar;
     // Opção no menu para postar uma foto no feed
     private JMenuItem itemPostarFoto;
+    // Opção no menu para exibir a janela de diagnóstico (tempos das operações)
+    private JMenuItem itemDiagnostico;
     // Opção no menu para sair do programa
     private JMenuItem itemSair;
 
     // Caixa de selecao de autores
     private JComboBox<String> caixaDeSelecao;
+    // Opção para exibir as publicações mais populares em vez do feed completo
+    private JCheckBox opcaoMaisPopulares;
+    // Campo com as palavras a serem buscadas no feed
+    private JTextField campoBusca;
+    // Botão para buscar as palavras no feed
+    private JButton botaoBuscar;
 
     // Botão para postar uma foto no feed
     private JButton botaoPostarFoto;
@@ -80,9 +121,130 @@ public class TelaRedeSocial {
      * Construtor da classe: cria o feed, os componentes e monta a tela.
      */
     public TelaRedeSocial() {
-        feed = new FeedNoticias();
+        feed = criarFeed();
+        publicarMetricas();
+        // registra em System.err as ações que travam a interface
+        new MonitorThreadTela(feed.getMetricas().getHistograma(TEMPO_EVENTO)).instalar();
         carregandoCaixaDeSelecao = false;
         construirJanela();
+        inscreverNoFeed();
+        // exibe as mensagens recuperadas dos dados salvos
+        atualizarFeed();
+    }
+
+    /**
+     * Cria o feed de notícias persistente (recuperando as mensagens salvas),
+     * com a política de retenção definida pelas propriedades do sistema. Se
+     * não for possível usar os dados em disco, cria um feed apenas em
+     * memória.
+     * 
+     * @return O feed de notícias
+     */
+    private FeedNoticias criarFeed() {
+        PoliticaRetencao politicaRetencao = PoliticaRetencao.lerPropriedades();
+        FeedNoticias feedCriado;
+        try {
+            feedCriado = new FeedNoticias(Paths.get(DIRETORIO_DADOS), FeedNoticias.OPERACOES_ENTRE_INSTANTANEOS,
+                    politicaRetencao);
+        } catch (IOException e) {
+            e.printStackTrace();
+            JOptionPane.showMessageDialog(null, "Erro ao carregar os dados do feed. As mensagens não serão salvas.",
+                    "Erro", JOptionPane.ERROR_MESSAGE);
+            feedCriado = new FeedNoticias(politicaRetencao);
+        }
+        feedCriado.iniciarVerificacaoRetencao();
+        return feedCriado;
+    }
+
+    /**
+     * Publica as métricas do feed via JMX (para acompanhá-las pelo JConsole
+     * ou VisualVM). Uma falha aqui não impede o uso da Rede Social.
+     */
+    private void publicarMetricas() {
+        try {
+            feed.getMetricas().registrarNoJmx(NOME_JMX);
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Fecha o feed de notícias, garantindo que os dados estejam gravados.
+     */
+    private void fecharFeed() {
+        try {
+            feed.fechar();
+        } catch (IOException e) {
+            e.printStackTrace();
+            JOptionPane.showMessageDialog(janela, "Erro ao salvar os dados do feed.", "Erro",
+                    JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * Inscreve a tela para ser avisada das alterações do feed. Os avisos podem
+     * vir de outras threads, então o tratamento é sempre feito na thread da
+     * interface gráfica.
+     */
+    private void inscreverNoFeed() {
+        feed.adicionarOuvinte(new OuvinteFeed() {
+            @Override
+            public void mensagemPostada(Publicacao publicacao) {
+                executarNaTela(() -> exibirNovaPublicacao(publicacao));
+            }
+
+            @Override
+            public void mensagemAlterada(Publicacao publicacao) {
+                executarNaTela(() -> reexibirPublicacao(publicacao));
+            }
+
+            @Override
+            public void autorAdicionado(String autor) {
+                executarNaTela(() -> adicionarAutorNaCaixaDeSelecao(autor));
+            }
+
+            @Override
+            public void autorRemovido(String autor) {
+                executarNaTela(() -> removerAutorDaCaixaDeSelecao(autor));
+            }
+
+            @Override
+            public void loteExecutado(List<String> autoresNovos, List<String> autoresRemovidos, int descartadas) {
+                executarNaTela(() -> {
+                    for (String autor : autoresNovos) {
+                        adicionarAutorNaCaixaDeSelecao(autor);
+                    }
+                    for (String autor : autoresRemovidos) {
+                        removerAutorDaCaixaDeSelecao(autor);
+                    }
+                    modeloFeed.recarregar();
+                    ajustarAlturaLinhas();
+                });
+            }
+
+            @Override
+            public void mensagensDescartadas(int quantidade) {
+                executarNaTela(() -> {
+                    // as posições das publicações mudaram
+                    modeloFeed.recarregar();
+                    ajustarAlturaLinhas();
+                });
+            }
+        });
+    }
+
+    /**
+     * Executa uma ação na thread da interface gráfica (diretamente, se já
+     * estiver nela).
+     * 
+     * @param acao Ação a ser executada
+     */
+    private void executarNaTela(Runnable acao) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            acao.run();
+        } else {
+            SwingUtilities.invokeLater(acao);
+        }
     }
 
     /**
@@ -91,6 +253,13 @@ public class TelaRedeSocial {
     private void construirJanela() throws HeadlessException {
         janela = new JFrame("GUI - Rede Social");
         janela.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        // fecha o feed antes de o programa terminar
+        janela.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                fecharFeed();
+            }
+        });
         FlatDarkLaf.setup();
         montarMenu();
         criarComponentes();
@@ -104,7 +273,19 @@ public class TelaRedeSocial {
     private void criarComponentes() {
         // criando os componentes
 
-        areaTextoFeed = new JTextArea();
+        modeloFeed = new ModeloTabelaFeed(feed);
+        linhasAjustadas = new BitSet();
+        // quando a tabela é recarregada, as alturas das linhas voltam ao padrão
+        modeloFeed.addTableModelListener(e -> {
+            if (e.getType() == TableModelEvent.UPDATE && e.getLastRow() == Integer.MAX_VALUE) {
+                linhasAjustadas.clear();
+            }
+        });
+        decodificadorFotos = new DecodificadorFotos(feed);
+        ingestaoFotos = new IngestaoFotos(feed);
+        renderizadorPublicacao = new RenderizadorPublicacao(new Font("Cascadia Code Italic", Font.ITALIC, 16),
+                decodificadorFotos, feed.getMetricas().getHistograma(TEMPO_PREPARAR_LINHA));
+        tabelaFeed = new JTable(modeloFeed);
         botaoPostarMensagem = new JButton("Postar Texto");
         botaoPostarFoto = new JButton("Postar Foto");
         botaoVisualizar = new JButton("Visualizar");
@@ -112,12 +293,23 @@ public class TelaRedeSocial {
         botaoComentar = new JButton("Comentar");
         botaoAtualizarFeed = new JButton("Atualizar feed");
         caixaDeSelecao = new JComboBox<>();
+        opcaoMaisPopulares = new JCheckBox("Mais populares");
+        campoBusca = new JTextField(20);
+        campoBusca.setToolTipText("Palavras a buscar (termine com * para buscar por prefixo)");
+        botaoBuscar = new JButton("Buscar");
 
         // Carrega os autores na caixa de seleção
         recarregarCaixaDeSelecao();
 
-        // impede que o usuário edite a área de texto do feed
-        areaTextoFeed.setEditable(false);
+        // a tabela do feed não tem cabeçalho nem grade: cada linha é uma
+        // publicação desenhada pelo renderizador
+        tabelaFeed.setTableHeader(null);
+        tabelaFeed.setShowGrid(false);
+        tabelaFeed.setDefaultRenderer(Publicacao.class, renderizadorPublicacao);
+        tabelaFeed.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        // a altura padrão é a de uma publicação sem comentários; apenas as
+        // publicações comentadas têm sua altura guardada separadamente
+        tabelaFeed.setRowHeight(renderizadorPublicacao.calcularAltura(0));
 
         // adiciona o método que tratará o evento de clique no botão Postar Mensagem de
         // Texto
@@ -165,7 +357,7 @@ public class TelaRedeSocial {
         botaoAtualizarFeed.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                atualizarAreaTextoFeed();
+                atualizarFeed();
             }
         });
 
@@ -174,11 +366,30 @@ public class TelaRedeSocial {
             @Override
             public void actionPerformed(ActionEvent e) {
                 if (!carregandoCaixaDeSelecao) {
-                    atualizarAreaTextoFeed();
+                    atualizarFeed();
                 }
             }
         });
 
+        // adiciona o método que tratará a busca (Enter no campo ou clique no
+        // botão); com o campo vazio, volta a exibir o feed
+        ActionListener tratadorBusca = new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                atualizarFeed();
+            }
+        };
+        campoBusca.addActionListener(tratadorBusca);
+        botaoBuscar.addActionListener(tratadorBusca);
+
+        // adiciona o método que tratará o evento de clique na opção Mais populares
+        opcaoMaisPopulares.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                atualizarFeed();
+            }
+        });
+
         // adiciona o método que tratará o evento de clique no menu "Postar Mensagem"
         itemPostarMensagem.addActionListener(new ActionListener() {
             @Override
@@ -223,13 +434,21 @@ public class TelaRedeSocial {
         itemPostarMensagem.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                atualizarAreaTextoFeed();
+                atualizarFeed();
+            }
+        });
+
+        itemDiagnostico.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                new JanelaDiagnostico(janela, feed).exibir();
             }
         });
 
         itemSair.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
+                fecharFeed();
                 System.exit(0);
             }
         });
@@ -241,20 +460,33 @@ public class TelaRedeSocial {
     private void montarJanela() {
         janela.setSize(600, 600);
         janela.setLayout(new BorderLayout());
-        areaTextoFeed.setFont(new Font("Cascadia Code Italic", Font.ITALIC, 16));
 
         JPanel painelSuperior = new JPanel();
         painelSuperior.setLayout(new FlowLayout());
         painelSuperior.add(new JLabel("Caixa de seleção de autores:"));
         painelSuperior.add(caixaDeSelecao);
+        painelSuperior.add(opcaoMaisPopulares);
         painelSuperior.add(new JLabel("|"));
         painelSuperior.add(new JLabel("Feed de Notícias"));
-        janela.add(painelSuperior, BorderLayout.NORTH);
 
-        JPanel painelCentral = new JPanel();
-        painelCentral.setLayout(new BoxLayout(painelCentral, BoxLayout.Y_AXIS));
-        painelCentral.add(areaTextoFeed);
-        JScrollPane scrollPane = new JScrollPane(painelCentral);
+        JPanel painelBusca = new JPanel();
+        painelBusca.setLayout(new FlowLayout());
+        painelBusca.add(new JLabel("Buscar:"));
+        painelBusca.add(campoBusca);
+        painelBusca.add(botaoBuscar);
+
+        JPanel painelTopo = new JPanel(new BorderLayout());
+        painelTopo.add(painelSuperior, BorderLayout.NORTH);
+        painelTopo.add(painelBusca, BorderLayout.SOUTH);
+        janela.add(painelTopo, BorderLayout.NORTH);
+
+        JScrollPane scrollPane = new JScrollPane(tabelaFeed);
+        // ao rolar o feed, as linhas que aparecem recebem a sua altura e as
+        // miniaturas das linhas próximas já são decodificadas
+        scrollPane.getViewport().addChangeListener(e -> {
+            ajustarAlturaLinhas();
+            preCarregarMiniaturas();
+        });
         janela.add(scrollPane, BorderLayout.CENTER);
 
         JPanel painelBotoes = new JPanel();
@@ -288,7 +520,6 @@ public class TelaRedeSocial {
             // Se o usuário digitou alguma mensagem e confirmou
             if (mensagem != null) {
                 feed.postarMensagemTexto(autor, mensagem);
-                atualizarAreaTextoFeed();
             }
         }
     }
@@ -320,28 +551,44 @@ public class TelaRedeSocial {
                 // Se foi digitada uma legenda, obtém a imagem como vetor de bytes e posta a
                 // mensagem com foto
                 if (legenda != null) {
-                    try {
-                        byte[] bytesDaFoto = Files.readAllBytes(arquivoFoto.toPath());
-                        feed.postarMensagemFoto(autor, bytesDaFoto, legenda);
-                        atualizarAreaTextoFeed();
-                    } catch (IOException ex) {
-                        ex.printStackTrace();
-                        JOptionPane.showMessageDialog(janela, "Erro ao carregar a foto.", "Erro",
-                                JOptionPane.ERROR_MESSAGE);
-                    }
+                    // a foto é validada, reduzida e postada em segundo plano;
+                    // apenas um eventual erro volta para a thread da interface
+                    ingestaoFotos.postar(autor, arquivoFoto.toPath(), legenda)
+                            .whenCompleteAsync((nada, erro) -> {
+                                if (erro != null) {
+                                    exibirErroPostagemFoto(erro);
+                                }
+                            }, SwingUtilities::invokeLater);
                 }
             }
         }
     }
 
     /**
-     * Curte uma mensagem. Solicita o identificador da mensagem ao usuário,
-     * curte a mensagem e atualiza a área de texto de exibição do feed.
+     * Exibe o erro de uma postagem de foto que falhou. Se a foto foi recusada
+     * (tamanho ou formato), o motivo é mostrado ao usuário.
+     * 
+     * @param erro Erro da postagem
+     */
+    private void exibirErroPostagemFoto(Throwable erro) {
+        Throwable causa = (erro instanceof CompletionException) ? erro.getCause() : erro;
+        if (causa instanceof IngestaoFotos.FotoRecusadaException) {
+            JOptionPane.showMessageDialog(janela, causa.getMessage(), "Foto recusada",
+                    JOptionPane.WARNING_MESSAGE);
+        } else {
+            causa.printStackTrace();
+            JOptionPane.showMessageDialog(janela, "Erro ao carregar a foto.", "Erro",
+                    JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * Curte uma mensagem. Solicita o identificador da mensagem ao usuário e
+     * curte a mensagem (a tabela do feed é atualizada pelo aviso do feed).
      */
     private void curtirMensagem() {
         int idMensagem = Integer.parseInt(JOptionPane.showInputDialog("Id da mensagem"));
         feed.curtir(idMensagem);
-        atualizarAreaTextoFeed();
     }
 
     /**
@@ -351,68 +598,228 @@ public class TelaRedeSocial {
     private void visualizarMensagem() {
         int idMensagem = Integer.parseInt(JOptionPane.showInputDialog("Id da mensagem"));
 
-        // obtém os dados binários associados à mensagem
-        byte[] bytesDaFoto = feed.getDadosBinarios(idMensagem);
-
-        if (bytesDaFoto != null) {
-            try {
-                // Crie uma janela para exibir a imagem
-                JFrame frameFoto = new JFrame("Foto - ");
-                // Converte os bytes da foto para um BufferedImage
-                BufferedImage imagem = ImageIO.read(new ByteArrayInputStream(bytesDaFoto));
-                ImageIcon imagemIcon = new ImageIcon(imagem);
-
-                // Exibe a foto em um rítulo
-                JLabel labelFoto = new JLabel(imagemIcon);
-                frameFoto.getContentPane().add(labelFoto);
-
-                // Ajusta o tamanho da janela conforme a foto
-                frameFoto.setSize(imagemIcon.getIconWidth(), imagemIcon.getIconHeight());
-
-                // Exibe a janela
-                frameFoto.setVisible(true);
-            } catch (IOException e) {
-                e.printStackTrace();
-                JOptionPane.showMessageDialog(null, "Erro ao exibir a foto.", "Erro", JOptionPane.ERROR_MESSAGE);
-            }
-        } else {
+        // verifica se a mensagem tem foto (sem decodificá-la)
+        if (feed.getDadosBinarios(idMensagem) == null) {
             JOptionPane.showMessageDialog(null, "A mensagem não tem foto.", "Informação",
                     JOptionPane.INFORMATION_MESSAGE);
+            return;
         }
+
+        // a foto é decodificada (e reduzida ao tamanho da tela) em segundo
+        // plano; a janela é exibida na thread da interface quando ela ficar pronta
+        Dimension tamanhoTela = Toolkit.getDefaultToolkit().getScreenSize();
+        decodificadorFotos.carregarFoto(idMensagem, tamanhoTela.width, tamanhoTela.height)
+                .whenCompleteAsync((imagem, erro) -> {
+                    if (erro != null) {
+                        erro.printStackTrace();
+                        JOptionPane.showMessageDialog(null, "Erro ao exibir a foto.", "Erro",
+                                JOptionPane.ERROR_MESSAGE);
+                        return;
+                    }
+                    // Crie uma janela para exibir a imagem
+                    JFrame frameFoto = new JFrame("Foto - ");
+                    ImageIcon imagemIcon = new ImageIcon(imagem);
+
+                    // Exibe a foto em um rítulo
+                    JLabel labelFoto = new JLabel(imagemIcon);
+                    frameFoto.getContentPane().add(labelFoto);
+
+                    // Ajusta o tamanho da janela conforme a foto
+                    frameFoto.setSize(imagemIcon.getIconWidth(), imagemIcon.getIconHeight());
+
+                    // Exibe a janela
+                    frameFoto.setVisible(true);
+                }, SwingUtilities::invokeLater);
     }
 
     /**
      * Comenta em uma mensagem. Solicita o identificador da mensagem ao usuário,
-     * faz um comentário na mensagem e atualiza a área de texto de exibição do feed.
+     * faz um comentário na mensagem (a tabela do feed é atualizada pelo aviso
+     * do feed).
      */
     private void comentar() {
         int idMensagem = Integer.parseInt(JOptionPane.showInputDialog("Id da mensagem"));
         String comentario = JOptionPane.showInputDialog("Comentário");
-        feed.comentar(idMensagem, comentario);
-        atualizarAreaTextoFeed();
+        // Se o usuário digitou algum comentário e confirmou
+        if (comentario != null) {
+            feed.comentar(idMensagem, comentario);
+        }
     }
 
     /**
-     * Atualiza a área de texto de exibição do Feed.
+     * Recarrega toda a tabela do Feed (usado quando o autor selecionado muda
+     * ou quando o usuário pede para atualizar o feed).
      */
-    private void atualizarAreaTextoFeed() {
-        areaTextoFeed.setText("");
+    private void atualizarFeed() {
+        long inicio = System.nanoTime();
+        String busca = campoBusca.getText().trim();
+        // a busca e as mais populares são sobre todos os autores
+        caixaDeSelecao.setEnabled(busca.isEmpty() && !opcaoMaisPopulares.isSelected());
+        if (!busca.isEmpty()) {
+            modeloFeed.exibirConsulta(() -> feed.buscar(busca, LIMITE_RESULTADOS_BUSCA));
+        } else if (opcaoMaisPopulares.isSelected()) {
+            modeloFeed.exibirConsulta(() -> feed.getMaisPopulares(QUANTIDADE_MAIS_POPULARES));
+        } else {
+            // Obtém o autor selecionado
+            String autorSelecionado = caixaDeSelecao.getItemAt(caixaDeSelecao.getSelectedIndex());
 
-        List<Publicacao> publicacoes;
-        // Obtém o autor selecionado
-        String autorSelecionado = caixaDeSelecao.getItemAt(caixaDeSelecao.getSelectedIndex());
+            if (autorSelecionado.equals("Todos")) {
+                modeloFeed.exibirAutor(null);
+            } else {
+                modeloFeed.exibirAutor(autorSelecionado);
+            }
+        }
+        ajustarAlturaLinhas();
+        feed.getMetricas().registrar(TEMPO_ATUALIZAR_FEED, inicio);
+    }
 
-        if (autorSelecionado.equals("Todos")) {
-            publicacoes = feed.getPublicacoes();
-        } else {
-            publicacoes = feed.getPublicacoes(autorSelecionado);
+    /**
+     * Ajusta a altura das linhas visíveis da tabela que ainda não foram
+     * ajustadas desde que ela foi recarregada (ao recarregar, a tabela volta
+     * todas as linhas para a altura padrão). As demais linhas são ajustadas
+     * quando o usuário rola o feed até elas, então o custo não depende do
+     * tamanho do feed.
+     */
+    private void ajustarAlturaLinhas() {
+        int nroLinhas = modeloFeed.getRowCount();
+        if (nroLinhas == 0) {
+            return;
+        }
+        Rectangle visivel = tabelaFeed.getVisibleRect();
+        int linha = Math.max(0, tabelaFeed.rowAtPoint(visivel.getLocation()));
+        int limite = visivel.y + visivel.height;
+        // a altura de uma linha desloca as seguintes, por isso o fim da área
+        // visível é verificado de novo a cada linha ajustada
+        while (linha < nroLinhas && tabelaFeed.getCellRect(linha, 0, true).y < limite) {
+            if (!linhasAjustadas.get(linha)) {
+                ajustarAlturaLinha(linha);
+            }
+            linha++;
         }
+    }
 
-        for (Publicacao publicacao : publicacoes) {
-            areaTextoFeed.append(publicacao.getTextoExibicao());
+    /**
+     * Exibe uma publicação recém-postada no final da tabela, caso ela seja do
+     * autor selecionado (ou refaz a consulta exibida, se for o caso).
+     * 
+     * @param publicacao Publicação postada
+     */
+    private void exibirNovaPublicacao(Publicacao publicacao) {
+        if (modeloFeed.isExibindoConsulta()) {
+            // a nova publicação pode fazer parte do resultado da consulta
+            modeloFeed.recarregar();
+            ajustarAlturaLinhas();
+            return;
+        }
+        int linha = modeloFeed.publicacaoPostada(publicacao);
+        if (linha >= 0) {
+            ajustarAlturaLinha(linha);
         }
+    }
 
-        recarregarCaixaDeSelecao();
+    /**
+     * Redesenha na tabela apenas a publicação que foi alterada (se ela estiver
+     * sendo exibida). Se a tabela exibe o resultado de uma consulta (mais
+     * populares ou busca), refaz a consulta.
+     * 
+     * @param publicacao Publicação curtida ou comentada
+     */
+    private void reexibirPublicacao(Publicacao publicacao) {
+        if (modeloFeed.isExibindoConsulta()) {
+            // a alteração pode mudar a ordem (ou a lista) das mais populares,
+            // e um comentário pode fazer a publicação aparecer na busca
+            modeloFeed.recarregar();
+            ajustarAlturaLinhas();
+            return;
+        }
+        int linha = modeloFeed.publicacaoAlterada(publicacao);
+        if (linha >= 0) {
+            ajustarAlturaLinha(linha);
+        }
+    }
+
+    /**
+     * Ajusta a altura de uma linha da tabela conforme a quantidade de
+     * comentários (e a miniatura da foto) da publicação. Só altera as linhas
+     * que fogem da altura padrão, cuja altura fica guardada pela própria
+     * tabela.
+     * 
+     * @param linha Linha da tabela
+     */
+    private void ajustarAlturaLinha(int linha) {
+        linhasAjustadas.set(linha);
+        Publicacao publicacao = modeloFeed.getPublicacao(linha);
+        if (publicacao == null) {
+            return;
+        }
+        int altura = renderizadorPublicacao.calcularAltura(publicacao);
+        if (altura != tabelaFeed.getRowHeight()) {
+            tabelaFeed.setRowHeight(linha, altura);
+        }
+    }
+
+    /**
+     * Pede a decodificação (em segundo plano) das miniaturas das publicações
+     * visíveis e das que estão próximas delas, para que já estejam prontas
+     * quando o usuário rolar o feed.
+     */
+    private void preCarregarMiniaturas() {
+        if (modeloFeed.getRowCount() == 0) {
+            return;
+        }
+        Rectangle visivel = tabelaFeed.getVisibleRect();
+        int primeira = tabelaFeed.rowAtPoint(visivel.getLocation());
+        int ultima = tabelaFeed.rowAtPoint(new Point(visivel.x, visivel.y + visivel.height - 1));
+        if (primeira < 0) {
+            primeira = 0;
+        }
+        if (ultima < 0) {
+            ultima = modeloFeed.getRowCount() - 1;
+        }
+        int inicio = Math.max(0, primeira - LINHAS_PRE_CARREGADAS);
+        int fim = Math.min(modeloFeed.getRowCount() - 1, ultima + LINHAS_PRE_CARREGADAS);
+        for (int linha = inicio; linha <= fim; linha++) {
+            // ao rolar rápido, não adianta enfileirar miniaturas que já terão
+            // saído da tela quando forem decodificadas
+            if (decodificadorFotos.getMiniaturasPendentes() >= 2 * LINHAS_PRE_CARREGADAS) {
+                break;
+            }
+            Publicacao publicacao = modeloFeed.getPublicacao(linha);
+            if (publicacao != null && publicacao.temFoto()
+                    && decodificadorFotos.getMiniatura(publicacao.getId()) == null) {
+                decodificadorFotos.carregarMiniatura(publicacao.getId());
+            }
+        }
+    }
+
+    /**
+     * Acrescenta um novo autor na caixa de seleção (sem recarregá-la toda).
+     * 
+     * @param autor Autor a ser acrescentado
+     */
+    private void adicionarAutorNaCaixaDeSelecao(String autor) {
+        carregandoCaixaDeSelecao = true;
+        caixaDeSelecao.addItem(autor);
+        carregandoCaixaDeSelecao = false;
+    }
+
+    /**
+     * Retira da caixa de seleção um autor que não tem mais mensagens no feed.
+     * Se ele estava selecionado, passa a exibir todos os autores.
+     * 
+     * @param autor Autor a ser retirado
+     */
+    private void removerAutorDaCaixaDeSelecao(String autor) {
+        boolean selecionado = autor.equals(caixaDeSelecao.getSelectedItem());
+        carregandoCaixaDeSelecao = true;
+        caixaDeSelecao.removeItem(autor);
+        if (selecionado) {
+            caixaDeSelecao.setSelectedIndex(0);
+        }
+        carregandoCaixaDeSelecao = false;
+        if (selecionado) {
+            atualizarFeed();
+        }
     }
 
     /**
@@ -444,6 +851,7 @@ public class TelaRedeSocial {
         itemSair = new JMenuItem("Sair");
         itemPostarFoto = new JMenuItem("Postar foto");
         itemPostarMensagem = new JMenuItem("Postar texto");
+        itemDiagnostico = new JMenuItem("Diagnóstico");
 
         // adiciona o item de menu ao menu, e o menu à barra
         menuOpcoes.add(itemComentar);
@@ -453,6 +861,8 @@ public class TelaRedeSocial {
         menuOpcoes.add(itemPostarFoto);
         menuOpcoes.add(itemPostarMensagem);
         menuOpcoes.addSeparator();
+        menuOpcoes.add(itemDiagnostico);
+        menuOpcoes.addSeparator();
         menuOpcoes.add(itemSair);
         barraMenu.add(menuOpcoes);
         // define a barra de menu para a janela
@@ -0,0 +1,115 @@
+package feed;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks das consultas filtradas por autor, antes e depois do dicionário
+ * de autores: percorrer o Feed comparando os nomes com equals (como
+ * getPublicacoes(autor) fazia antes), percorrer comparando os números dos
+ * autores, e as consultas do Feed, que usam a lista de mensagens de cada
+ * autor (getPublicacoes(autor) e a primeira página do autor).
+ *
+ * Os nomes consultados são cópias dos nomes postados (outros objetos String),
+ * como os que chegam da tela, para que equals compare os caracteres.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BenchmarkAutores {
+    // Quantidade de autores consultados (potência de 2)
+    private static final int NRO_SORTEADOS = 1 << 10;
+    // Quantidade de publicações por página
+    private static final int TAMANHO_PAGINA = 20;
+
+    // Quantidade de mensagens no Feed
+    @Param({ "100000", "1000000" })
+    public int nroMensagens;
+    // Quantidade de autores das mensagens (em rodízio)
+    @Param({ "10", "1000", "100000" })
+    public int nroAutores;
+
+    // Feed com as mensagens
+    private FeedNoticias feed;
+    // Publicações do Feed
+    private List<Publicacao> publicacoes;
+    // Cópias dos nomes dos autores consultados
+    private String[] autoresSorteados;
+    // Números dos autores consultados no dicionário do Feed
+    private int[] numerosSorteados;
+    // Contador das consultas (escolhe o próximo autor)
+    private int contador;
+
+    /**
+     * Posta as mensagens no Feed e sorteia os autores consultados.
+     */
+    @Setup
+    public void preparar() {
+        feed = new FeedNoticias();
+        for (int i = 0; i < nroMensagens; i++) {
+            feed.postarMensagemTexto("usuario-" + (i % nroAutores), BenchmarkFeedNoticias.texto(i));
+        }
+        publicacoes = feed.getPublicacoes();
+        Random aleatorio = new Random(42);
+        autoresSorteados = new String[NRO_SORTEADOS];
+        numerosSorteados = new int[NRO_SORTEADOS];
+        for (int i = 0; i < NRO_SORTEADOS; i++) {
+            Mensagem mensagem = (Mensagem) publicacoes.get(aleatorio.nextInt(nroMensagens));
+            autoresSorteados[i] = new String(mensagem.getAutor());
+            numerosSorteados[i] = mensagem.getNumeroAutor();
+        }
+        contador = 0;
+    }
+
+    @Benchmark
+    public List<Publicacao> percorrerComparandoNomes() {
+        String autor = autoresSorteados[contador++ & (NRO_SORTEADOS - 1)];
+        List<Publicacao> doAutor = new ArrayList<>();
+        for (Publicacao publicacao : publicacoes) {
+            if (publicacao.getAutor().equals(autor)) {
+                doAutor.add(publicacao);
+            }
+        }
+        return doAutor;
+    }
+
+    @Benchmark
+    public List<Publicacao> percorrerComparandoNumeros() {
+        int numeroAutor = numerosSorteados[contador++ & (NRO_SORTEADOS - 1)];
+        List<Publicacao> doAutor = new ArrayList<>();
+        for (Publicacao publicacao : publicacoes) {
+            if (((Mensagem) publicacao).getNumeroAutor() == numeroAutor) {
+                doAutor.add(publicacao);
+            }
+        }
+        return doAutor;
+    }
+
+    @Benchmark
+    public List<Publicacao> getPublicacoesDoAutor() {
+        return feed.getPublicacoes(autoresSorteados[contador++ & (NRO_SORTEADOS - 1)]);
+    }
+
+    @Benchmark
+    public PaginaPublicacoes primeiraPaginaDoAutor() {
+        return feed.getPublicacoes(autoresSorteados[contador++ & (NRO_SORTEADOS - 1)], PaginaPublicacoes.INICIO,
+                TAMANHO_PAGINA);
+    }
+}
@@ -0,0 +1,133 @@
+package feed;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks da busca por palavras em um Feed de 1 milhão de postagens, cada
+ * uma com 8 palavras sorteadas de um vocabulário de 5 mil (com frequências
+ * desiguais, como em textos reais: a palavra mais comum está em cerca de um
+ * terço das postagens e a mais rara em algumas centenas). As consultas pedem
+ * as 50 publicações mais recentes.
+ *
+ * A busca percorrendo as mensagens (como era feito antes do índice) é medida
+ * para comparação, com a palavra mais rara.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BenchmarkBusca {
+    // Quantidade de palavras do vocabulário e de palavras por postagem
+    private static final int NRO_PALAVRAS = 5000;
+    private static final int PALAVRAS_POR_POSTAGEM = 8;
+    // Quantidade de publicações pedidas em cada busca
+    private static final int LIMITE = 50;
+    // Quantidade de postagens por lote na preparação
+    private static final int TAMANHO_LOTE = 10_000;
+
+    // Quantidade de mensagens no Feed
+    @Param({ "1000000" })
+    public int nroMensagens;
+
+    // Feed com as mensagens
+    private FeedNoticias feed;
+    // Vocabulário (a palavra 0 é a mais comum; a última, a mais rara)
+    private String[] palavras;
+
+    /**
+     * Posta as mensagens no Feed, em lotes.
+     */
+    @Setup
+    public void preparar() {
+        Random aleatorio = new Random(42);
+        palavras = new String[NRO_PALAVRAS];
+        for (int i = 0; i < NRO_PALAVRAS; i++) {
+            StringBuilder palavra = new StringBuilder();
+            int tamanho = 3 + aleatorio.nextInt(6);
+            for (int j = 0; j < tamanho; j++) {
+                palavra.append((char) ('a' + aleatorio.nextInt(26)));
+            }
+            palavras[i] = palavra.toString();
+        }
+        feed = new FeedNoticias();
+        LoteOperacoes lote = new LoteOperacoes();
+        for (int i = 0; i < nroMensagens; i++) {
+            StringBuilder texto = new StringBuilder();
+            for (int j = 0; j < PALAVRAS_POR_POSTAGEM; j++) {
+                // o cubo de um número uniforme concentra o sorteio nas
+                // primeiras palavras
+                double sorteio = aleatorio.nextDouble();
+                texto.append(palavras[(int) (NRO_PALAVRAS * sorteio * sorteio * sorteio)]).append(' ');
+            }
+            lote.postarMensagemTexto("autor-" + (i % 100), texto.toString());
+            if (lote.getNroPostagens() == TAMANHO_LOTE) {
+                feed.executar(lote);
+                lote = new LoteOperacoes();
+            }
+        }
+        if (lote.getNroPostagens() > 0) {
+            feed.executar(lote);
+        }
+    }
+
+    @Benchmark
+    public List<Publicacao> termoComum() {
+        return feed.buscar(palavras[0], LIMITE);
+    }
+
+    @Benchmark
+    public List<Publicacao> termoRaro() {
+        return feed.buscar(palavras[NRO_PALAVRAS - 1], LIMITE);
+    }
+
+    @Benchmark
+    public List<Publicacao> termoComumETermoRaro() {
+        return feed.buscar(palavras[0] + " " + palavras[NRO_PALAVRAS - 1], LIMITE);
+    }
+
+    @Benchmark
+    public List<Publicacao> doisTermosMedios() {
+        // poucas postagens têm as duas, então a lista da menor é percorrida
+        // inteira
+        return feed.buscar(palavras[100] + " " + palavras[200], LIMITE);
+    }
+
+    @Benchmark
+    public List<Publicacao> prefixo() {
+        return feed.buscar(palavras[0].substring(0, 2) + "*", LIMITE);
+    }
+
+    @Benchmark
+    public List<Publicacao> percorrendoMensagens() {
+        String palavra = palavras[NRO_PALAVRAS - 1];
+        List<Publicacao> publicacoes = feed.getPublicacoes();
+        List<Publicacao> encontradas = new ArrayList<>();
+        for (int i = publicacoes.size() - 1; i >= 0 && encontradas.size() < LIMITE; i--) {
+            Mensagem mensagem = (Mensagem) publicacoes.get(i);
+            for (String termo : IndiceTextual.extrairTermos(mensagem.getTextoConteudo())) {
+                if (termo.equals(palavra)) {
+                    encontradas.add(mensagem);
+                    break;
+                }
+            }
+        }
+        return encontradas;
+    }
+}
@@ -0,0 +1,195 @@
+package feed;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks do diário do Feed persistente: a vazão das operações gravadas no
+ * diário (cada uma só retorna depois de gravada em disco; com várias threads,
+ * uma gravação em disco serve a várias operações) e o tempo de reabrir um Feed
+ * reproduzindo 100 mil e 1 milhão de operações do diário.
+ *
+ * Os instantâneos ficam desligados, para que o diário inteiro seja reproduzido.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BenchmarkDiarioFeed {
+    // Quantidade de mensagens postadas antes de medir as curtidas
+    private static final int NRO_MENSAGENS_INICIAIS = 1000;
+
+    /**
+     * Feed persistente que recebe as operações medidas.
+     */
+    @State(Scope.Benchmark)
+    public static class Gravacao {
+        // Diretório de dados do Feed
+        private Path diretorio;
+        // Feed medido
+        private FeedNoticias feed;
+        // Ids das mensagens postadas antes da medição
+        private int[] ids;
+
+        /**
+         * Cria o Feed em um diretório temporário, com algumas mensagens.
+         */
+        @Setup
+        public void preparar() throws IOException {
+            diretorio = Files.createTempDirectory("benchmark-diario");
+            feed = new FeedNoticias(diretorio, Integer.MAX_VALUE);
+            LoteOperacoes lote = new LoteOperacoes();
+            for (int i = 0; i < NRO_MENSAGENS_INICIAIS; i++) {
+                lote.postarMensagemTexto("autor-" + (i % 10), BenchmarkFeedNoticias.texto(i));
+            }
+            ids = feed.executar(lote);
+        }
+
+        /**
+         * Fecha o Feed e apaga o diretório.
+         */
+        @TearDown
+        public void encerrar() throws IOException {
+            feed.fechar();
+            apagar(diretorio);
+        }
+    }
+
+    /**
+     * Diretório com um diário de nroOperacoes operações (60% postagens, 30%
+     * curtidas e 10% comentários) e nenhum instantâneo.
+     */
+    @State(Scope.Benchmark)
+    public static class Reproducao {
+        // Quantidade de operações no diário
+        @Param({ "100000", "1000000" })
+        public int nroOperacoes;
+
+        // Diretório de dados do Feed
+        private Path diretorio;
+
+        /**
+         * Grava as operações diretamente no diário (sem esperar cada uma ser
+         * gravada em disco, para que a preparação seja rápida).
+         */
+        @Setup
+        public void preparar() throws IOException {
+            diretorio = Files.createTempDirectory("benchmark-reproducao");
+            DiarioFeed diario = new DiarioFeed(diretorio, 1, new ReprodutorVazio());
+            Random aleatorio = new Random(42);
+            long hora = System.currentTimeMillis();
+            int nroPostagens = 0;
+            for (int i = 0; i < nroOperacoes; i++) {
+                int sorteio = aleatorio.nextInt(10);
+                if (nroPostagens == 0 || sorteio < 6) {
+                    nroPostagens++;
+                    diario.registrarPostagemTexto(nroPostagens, hora, "autor-" + (i % 1000),
+                            BenchmarkFeedNoticias.texto(i));
+                } else if (sorteio < 9) {
+                    diario.registrarCurtida(1 + aleatorio.nextInt(nroPostagens));
+                } else {
+                    diario.registrarComentario(1 + aleatorio.nextInt(nroPostagens), "Comentario numero " + i);
+                }
+            }
+            diario.fechar();
+        }
+
+        /**
+         * Apaga o diretório.
+         */
+        @TearDown
+        public void encerrar() throws IOException {
+            apagar(diretorio);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int postarMensagemTexto(Gravacao gravacao) {
+        return gravacao.feed.postarMensagemTexto("autor-1", "Mensagem gravada no diario");
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Threads(8)
+    public int postarMensagemTextoOitoThreads(Gravacao gravacao) {
+        return gravacao.feed.postarMensagemTexto("autor-1", "Mensagem gravada no diario");
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Threads(8)
+    public void curtirOitoThreads(Gravacao gravacao) {
+        gravacao.feed.curtir(gravacao.ids[(int) (Thread.currentThread().getId() % NRO_MENSAGENS_INICIAIS)]);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public int reabrir(Reproducao reproducao) throws IOException {
+        FeedNoticias feed = new FeedNoticias(reproducao.diretorio, Integer.MAX_VALUE);
+        int nroMensagens = feed.nroMensagens();
+        feed.fechar();
+        return nroMensagens;
+    }
+
+    /**
+     * Apaga um diretório e tudo o que houver nele.
+     */
+    static void apagar(Path diretorio) throws IOException {
+        try (Stream<Path> caminhos = Files.walk(diretorio)) {
+            for (Path caminho : (Iterable<Path>) caminhos.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(caminho);
+            }
+        }
+    }
+
+    /**
+     * Reprodutor que ignora as operações (o diário da preparação é novo).
+     */
+    private static class ReprodutorVazio implements DiarioFeed.Reprodutor {
+        @Override
+        public void postagemTexto(int id, long horaPostagem, String autor, String texto) {
+        }
+
+        @Override
+        public void postagemFoto(int id, long horaPostagem, String autor, byte[] bytesDaFoto, String legenda) {
+        }
+
+        @Override
+        public void postagemFoto(int id, long horaPostagem, String autor, ReferenciaFoto referenciaFoto,
+                String legenda) {
+        }
+
+        @Override
+        public void curtida(int idMensagem) {
+        }
+
+        @Override
+        public void comentario(int idMensagem, String comentario) {
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package feed;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks das operações principais do Feed de Notícias, com feeds de 1 mil
+ * a 1 milhão de mensagens e de 10 a 100 mil autores.
+ *
+ * O Feed é criado com uma política de retenção de exatamente nroMensagens
+ * mensagens, então as postagens medem o regime permanente de um Feed cheio
+ * (cada postagem descarta a mensagem mais antiga) e o tamanho não muda
+ * durante a medição. As mensagens curtidas, comentadas e exibidas, e os
+ * autores consultados, são sorteados antes da medição.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BenchmarkFeedNoticias {
+    // Quantidade de posições sorteadas (potência de 2, para a posição
+    // seguinte ser obtida com uma máscara)
+    private static final int NRO_SORTEADOS = 1 << 16;
+    // Quantidade de fotos diferentes postadas e tamanho de cada uma
+    private static final int NRO_FOTOS = 64;
+    private static final int TAMANHO_FOTO = 16 * 1024;
+
+    // Quantidade de mensagens no Feed
+    @Param({ "1000", "10000", "100000", "1000000" })
+    public int nroMensagens;
+    // Quantidade de autores das mensagens (as mensagens são distribuídas
+    // entre eles em rodízio)
+    @Param({ "10", "1000", "100000" })
+    public int nroAutores;
+
+    // Feed medido
+    private FeedNoticias feed;
+    // Nomes dos autores
+    private String[] autores;
+    // Ids das mensagens do Feed, na ordem de postagem
+    private int[] ids;
+    // Publicações do Feed (para medir a formatação do texto de exibição)
+    private List<Publicacao> publicacoes;
+    // Posições sorteadas (em ids, publicacoes e autores)
+    private int[] sorteados;
+    // Fotos postadas (em rodízio; a partir da segunda volta, repetidas)
+    private byte[][] fotos;
+    // Contador das operações (escolhe o próximo sorteado, autor ou foto)
+    private int contador;
+
+    /**
+     * Cria o Feed com nroMensagens mensagens de texto dos nroAutores autores.
+     */
+    @Setup
+    public void preparar() {
+        feed = new FeedNoticias(new PoliticaRetencao(nroMensagens, 0, 0));
+        autores = new String[nroAutores];
+        for (int i = 0; i < nroAutores; i++) {
+            autores[i] = "autor-" + i;
+        }
+        ids = new int[nroMensagens];
+        for (int i = 0; i < nroMensagens; i++) {
+            ids[i] = feed.postarMensagemTexto(autores[i % nroAutores], texto(i));
+        }
+        publicacoes = feed.getPublicacoes();
+        Random aleatorio = new Random(42);
+        sorteados = new int[NRO_SORTEADOS];
+        for (int i = 0; i < NRO_SORTEADOS; i++) {
+            sorteados[i] = aleatorio.nextInt(nroMensagens);
+        }
+        fotos = new byte[NRO_FOTOS][TAMANHO_FOTO];
+        for (byte[] foto : fotos) {
+            aleatorio.nextBytes(foto);
+        }
+        contador = 0;
+    }
+
+    /**
+     * Texto da mensagem de número passado (algumas palavras comuns e uma
+     * exclusiva, como em mensagens reais).
+     */
+    static String texto(int numero) {
+        return "Mensagem " + numero + " sobre o assunto " + (numero % 100) + " do feed de noticias";
+    }
+
+    /**
+     * Retorna a próxima posição sorteada (entre 0 e nroMensagens - 1).
+     */
+    private int proximoSorteado() {
+        return sorteados[contador++ & (NRO_SORTEADOS - 1)];
+    }
+
+    @Benchmark
+    public int postarMensagemTexto() {
+        int numero = contador++;
+        return feed.postarMensagemTexto(autores[numero % nroAutores], texto(numero));
+    }
+
+    @Benchmark
+    public int postarMensagemFoto() {
+        int numero = contador++;
+        return feed.postarMensagemFoto(autores[numero % nroAutores], fotos[numero % NRO_FOTOS], "legenda");
+    }
+
+    @Benchmark
+    public void curtir() {
+        feed.curtir(ids[proximoSorteado()]);
+    }
+
+    @Benchmark
+    public void comentar() {
+        feed.comentar(ids[proximoSorteado()], "Comentario sobre a mensagem");
+    }
+
+    @Benchmark
+    public List<Publicacao> getPublicacoes() {
+        return feed.getPublicacoes();
+    }
+
+    @Benchmark
+    public List<Publicacao> getPublicacoesDoAutor() {
+        return feed.getPublicacoes(autores[proximoSorteado() % nroAutores]);
+    }
+
+    @Benchmark
+    public List<String> obterAutores() {
+        return feed.obterAutores();
+    }
+
+    @Benchmark
+    public String getTextoExibicao() {
+        return publicacoes.get(proximoSorteado()).getTextoExibicao();
+    }
+}
@@ -0,0 +1,80 @@
+package feed;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark da postagem de 10 mil fotos de 2 MB (20 GB no total) em uma JVM
+ * com apenas 64 MB de heap: os bytes das fotos vão do fluxo de entrada direto
+ * para os segmentos mapeados do repositório de fotos, e as mensagens guardam
+ * apenas a referência, então o heap não cresce com as fotos.
+ *
+ * O resultado é o tempo total das 10 mil postagens. Cada foto difere das
+ * outras nos primeiros bytes, para que nenhuma seja deduplicada. Para ver
+ * também as pausas do coletor: -Djmh.parametros="-prof gc".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx64m")
+@Warmup(iterations = 0)
+@Measurement(iterations = 1, batchSize = BenchmarkFotos.NRO_FOTOS)
+public class BenchmarkFotos {
+    // Quantidade de fotos postadas e tamanho de cada uma
+    static final int NRO_FOTOS = 10_000;
+    private static final int TAMANHO_FOTO = 2 * 1024 * 1024;
+
+    // Feed medido (apenas em memória; as fotos ficam no repositório
+    // temporário)
+    private FeedNoticias feed;
+    // Bytes da foto postada (os primeiros mudam a cada postagem)
+    private byte[] foto;
+    // Quantidade de fotos postadas
+    private int contador;
+
+    /**
+     * Cria o Feed vazio e os bytes da foto.
+     */
+    @Setup
+    public void preparar() {
+        feed = new FeedNoticias();
+        foto = new byte[TAMANHO_FOTO];
+        new Random(42).nextBytes(foto);
+        contador = 0;
+    }
+
+    @Benchmark
+    public int postarMensagemFoto() throws IOException {
+        int numero = contador++;
+        for (int i = 0; i < Integer.BYTES; i++) {
+            foto[i] = (byte) (numero >>> (8 * i));
+        }
+        return feed.postarMensagemFoto("autor-" + (numero % 100), new ByteArrayInputStream(foto), foto.length,
+                "Foto " + numero);
+    }
+
+    /**
+     * Confirma que todas as fotos foram guardadas (nenhuma deduplicada).
+     */
+    @TearDown
+    public void verificar() {
+        long armazenadas = feed.getEstatisticasFotos().getFotosArmazenadas();
+        if (armazenadas != contador) {
+            throw new IllegalStateException(armazenadas + " fotos guardadas de " + contador + " postadas");
+        }
+    }
+}
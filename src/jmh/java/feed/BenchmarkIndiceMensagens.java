@@ -0,0 +1,109 @@
+package feed;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks da busca de mensagens pelo identificador: o índice por id
+ * (IndiceMensagens) e as curtidas e comentários do Feed, que o usam, devem
+ * ter custo constante de 1 mil a 1 milhão de mensagens. A busca percorrendo a
+ * lista (como o Feed fazia antes do índice) é medida para comparação.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BenchmarkIndiceMensagens {
+    // Quantidade de posições sorteadas (potência de 2)
+    private static final int NRO_SORTEADOS = 1 << 16;
+
+    // Quantidade de mensagens no Feed (e no índice)
+    @Param({ "1000", "10000", "100000", "1000000" })
+    public int nroMensagens;
+
+    // Feed com as mensagens
+    private FeedNoticias feed;
+    // Índice com as mesmas mensagens
+    private IndiceMensagens indice;
+    // Mensagens do índice, na ordem em que foram criadas
+    private List<Mensagem> lista;
+    // Ids das mensagens do Feed, na ordem de postagem
+    private int[] ids;
+    // Posições sorteadas (em ids e em lista)
+    private int[] sorteados;
+    // Contador das operações (escolhe a próxima posição sorteada)
+    private int contador;
+
+    /**
+     * Posta nroMensagens mensagens no Feed e indexa cópias delas.
+     */
+    @Setup
+    public void preparar() {
+        feed = new FeedNoticias();
+        indice = new IndiceMensagens();
+        lista = new ArrayList<>(nroMensagens);
+        ids = new int[nroMensagens];
+        for (int i = 0; i < nroMensagens; i++) {
+            String texto = BenchmarkFeedNoticias.texto(i);
+            ids[i] = feed.postarMensagemTexto("autor-" + (i % 100), texto);
+            Mensagem mensagem = new MensagemTexto("autor-" + (i % 100), texto);
+            indice.adicionar(mensagem);
+            lista.add(mensagem);
+        }
+        Random aleatorio = new Random(42);
+        sorteados = new int[NRO_SORTEADOS];
+        for (int i = 0; i < NRO_SORTEADOS; i++) {
+            sorteados[i] = aleatorio.nextInt(nroMensagens);
+        }
+        contador = 0;
+    }
+
+    /**
+     * Retorna a próxima posição sorteada.
+     */
+    private int proximoSorteado() {
+        return sorteados[contador++ & (NRO_SORTEADOS - 1)];
+    }
+
+    @Benchmark
+    public Mensagem buscarNoIndice() {
+        return indice.buscar(lista.get(proximoSorteado()).getId());
+    }
+
+    @Benchmark
+    public Mensagem buscarPercorrendoLista() {
+        int id = lista.get(proximoSorteado()).getId();
+        for (Mensagem mensagem : lista) {
+            if (mensagem.getId() == id) {
+                return mensagem;
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public void curtir() {
+        feed.curtir(ids[proximoSorteado()]);
+    }
+
+    @Benchmark
+    public void comentar() {
+        feed.comentar(ids[proximoSorteado()], "Comentario sobre a mensagem");
+    }
+}
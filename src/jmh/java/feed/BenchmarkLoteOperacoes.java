@@ -0,0 +1,155 @@
+package feed;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks da mesma carga (60% postagens, 30% curtidas e 10% comentários)
+ * aplicada com chamadas avulsas e com executar, em lotes de 10 mil
+ * operações, em um Feed apenas em memória e em um Feed persistente. O
+ * resultado é o tempo para aplicar a carga inteira a um Feed vazio.
+ *
+ * No Feed persistente, cada chamada avulsa espera a própria gravação em
+ * disco, e um lote espera uma só; é aí que o lote ganha mais de 10 vezes. Em
+ * memória, o custo de cada operação é dominado pelo que o lote não tem como
+ * evitar (indexar as palavras de cada postagem e reposicionar no ranking
+ * cada mensagem curtida ou comentada), e o ganho fica entre 1,2 e 1,5 vez.
+ *
+ * As chamadas avulsas no Feed persistente levam alguns minutos com 1 milhão
+ * de operações; para uma execução mais rápida: -p nroOperacoes=100000.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class BenchmarkLoteOperacoes {
+    // Quantidade de operações por lote
+    private static final int TAMANHO_LOTE = 10_000;
+
+    // Feed apenas em memória ("memoria") ou persistente ("persistente")
+    @Param({ "memoria", "persistente" })
+    public String modo;
+    // Quantidade de operações da carga
+    @Param({ "1000000" })
+    public int nroOperacoes;
+
+    // Tipo de cada operação da carga
+    private byte[] tipos;
+    // Mensagem curtida ou comentada por cada operação (posição entre as
+    // postagens já feitas em lotes anteriores, para que a mesma carga sirva
+    // para os dois modos de aplicação)
+    private int[] alvos;
+    // Diretório de dados do Feed persistente
+    private Path diretorio;
+    // Feed que recebe a carga (um novo a cada medição)
+    private FeedNoticias feed;
+    // Ids das mensagens postadas, na ordem das postagens
+    private int[] ids;
+
+    /**
+     * Sorteia as operações da carga.
+     */
+    @Setup
+    public void sortearCarga() {
+        Random aleatorio = new Random(42);
+        tipos = new byte[nroOperacoes];
+        alvos = new int[nroOperacoes];
+        int postagens = 0;
+        int disponiveis = 0;
+        for (int i = 0; i < nroOperacoes; i++) {
+            if (i % TAMANHO_LOTE == 0) {
+                disponiveis = postagens;
+            }
+            int sorteio = aleatorio.nextInt(10);
+            if (disponiveis == 0 || sorteio < 6) {
+                tipos[i] = LoteOperacoes.POSTAGEM_TEXTO;
+                postagens++;
+            } else {
+                tipos[i] = (sorteio < 9) ? LoteOperacoes.CURTIDA : LoteOperacoes.COMENTARIO;
+                alvos[i] = aleatorio.nextInt(disponiveis);
+            }
+        }
+        ids = new int[postagens];
+    }
+
+    /**
+     * Cria o Feed vazio que recebe a carga.
+     */
+    @Setup(Level.Iteration)
+    public void criarFeed() throws IOException {
+        if (modo.equals("persistente")) {
+            diretorio = Files.createTempDirectory("benchmark-lote");
+            feed = new FeedNoticias(diretorio, Integer.MAX_VALUE);
+        } else {
+            feed = new FeedNoticias();
+        }
+    }
+
+    /**
+     * Fecha o Feed (e apaga o diretório, se for persistente).
+     */
+    @TearDown(Level.Iteration)
+    public void fecharFeed() throws IOException {
+        feed.fechar();
+        if (diretorio != null) {
+            BenchmarkDiarioFeed.apagar(diretorio);
+            diretorio = null;
+        }
+    }
+
+    @Benchmark
+    public int operacoesAvulsas() {
+        int postagens = 0;
+        for (int i = 0; i < nroOperacoes; i++) {
+            if (tipos[i] == LoteOperacoes.POSTAGEM_TEXTO) {
+                ids[postagens++] = feed.postarMensagemTexto("autor-" + (i % 1000), BenchmarkFeedNoticias.texto(i));
+            } else if (tipos[i] == LoteOperacoes.CURTIDA) {
+                feed.curtir(ids[alvos[i]]);
+            } else {
+                feed.comentar(ids[alvos[i]], "Comentario numero " + i);
+            }
+        }
+        return postagens;
+    }
+
+    @Benchmark
+    public int lotes() {
+        int postagens = 0;
+        LoteOperacoes lote = new LoteOperacoes();
+        for (int i = 0; i < nroOperacoes; i++) {
+            if (tipos[i] == LoteOperacoes.POSTAGEM_TEXTO) {
+                lote.postarMensagemTexto("autor-" + (i % 1000), BenchmarkFeedNoticias.texto(i));
+            } else if (tipos[i] == LoteOperacoes.CURTIDA) {
+                lote.curtir(ids[alvos[i]]);
+            } else {
+                lote.comentar(ids[alvos[i]], "Comentario numero " + i);
+            }
+            if ((i + 1) % TAMANHO_LOTE == 0 || i == nroOperacoes - 1) {
+                int[] postados = feed.executar(lote);
+                System.arraycopy(postados, 0, ids, postagens, postados.length);
+                postagens += postados.length;
+                lote = new LoteOperacoes();
+            }
+        }
+        return postagens;
+    }
+}
@@ -0,0 +1,112 @@
+package feed;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks da formatação do texto de exibição de uma mensagem com 0, 10 e
+ * 1000 comentários: a concatenação com += (como a mensagem fazia antes),
+ * getTextoExibicao com o texto em cache, a formatação completa depois de uma
+ * curtida (que descarta o cache) e a escrita em um StringBuilder reutilizado
+ * (como a tela faz com o Feed inteiro).
+ *
+ * Para comparar também a memória alocada: -Djmh.parametros="-prof gc".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BenchmarkTextoExibicao {
+    // Quantidade de comentários da mensagem
+    @Param({ "0", "10", "1000" })
+    public int nroComentarios;
+
+    // Mensagem formatada
+    private MensagemTexto mensagem;
+    // Buffer reutilizado entre as formatações
+    private StringBuilder buffer;
+
+    /**
+     * Cria a mensagem com os comentários.
+     */
+    @Setup
+    public void preparar() {
+        mensagem = new MensagemTexto("autor-1", BenchmarkFeedNoticias.texto(1));
+        for (int i = 0; i < nroComentarios; i++) {
+            mensagem.comentar("Comentario numero " + i + " sobre a mensagem");
+        }
+        mensagem.curtir();
+        buffer = new StringBuilder();
+    }
+
+    @Benchmark
+    public String concatenacao() {
+        String texto = "  [" + mensagem.getId() + "]   " + mensagem.getAutor() + " escreveu: "
+                + mensagem.getTexto();
+        texto += "\n        " + textoTempo(mensagem.getHoraPostagem());
+        texto += "\n        " + mensagem.getNroCurtidas() + " pessoas curtiram isso!";
+        texto += "\n        " + textoComentarios(mensagem);
+        return texto;
+    }
+
+    @Benchmark
+    public String getTextoExibicao() {
+        return mensagem.getTextoExibicao();
+    }
+
+    @Benchmark
+    public String getTextoExibicaoAposCurtida() {
+        mensagem.curtir();
+        return mensagem.getTextoExibicao();
+    }
+
+    @Benchmark
+    public int escreverTextoExibicao() {
+        buffer.setLength(0);
+        mensagem.escreverTextoExibicao(buffer);
+        return buffer.length();
+    }
+
+    /**
+     * Tempo desde a postagem, concatenado como a mensagem fazia antes.
+     */
+    private static String textoTempo(long horaPostagem) {
+        long diferencaSeg = (System.currentTimeMillis() - horaPostagem) / 1000;
+        long diferencaMin = diferencaSeg / 60;
+        if (diferencaMin < 1) {
+            return "Há " + diferencaSeg + " segundos";
+        } else {
+            return "Há " + diferencaMin + " minutos";
+        }
+    }
+
+    /**
+     * Comentários concatenados com += dentro do laço, como a mensagem fazia
+     * antes.
+     */
+    private static String textoComentarios(Mensagem mensagem) {
+        String texto = "";
+        if (mensagem.getNroComentarios() == 0) {
+            texto += "Não há comentários...\n";
+        } else {
+            texto += "Comentários:\n";
+            for (String comentario : mensagem.getComentarios()) {
+                texto += "            " + comentario + "\n";
+            }
+        }
+        return texto;
+    }
+}
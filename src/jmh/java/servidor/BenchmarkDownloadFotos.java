@@ -0,0 +1,182 @@
+package servidor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import feed.FeedNoticias;
+
+/**
+ * Benchmarks de downloads simultâneos de fotos pelo servidor HTTP local (32
+ * clientes, cada um baixando fotos sorteadas entre 100):
+ * - baixarFoto: o servidor escreve a foto direto do buffer mapeado do
+ *   repositório de fotos;
+ * - baixarFotoCopiando: para comparação, um servidor que copia a foto para
+ *   um array antes de escrevê-la (como seria com um byte[] por download);
+ * - revalidarFoto: o cliente já tem a foto e envia o ETag (If-None-Match), e
+ *   a resposta é apenas 304, sem os bytes.
+ *
+ * O resultado é a quantidade de downloads por segundo. Para ver também o
+ * quanto cada download aloca no heap: -Djmh.parametros="-prof gc". Os
+ * clientes rodam na mesma JVM e também alocam (cerca do tamanho da foto, nos
+ * buffers de recebimento), então o que interessa é a diferença entre
+ * baixarFoto e baixarFotoCopiando.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Threads(32)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class BenchmarkDownloadFotos {
+    // Quantidade de fotos no Feed
+    private static final int NRO_FOTOS = 100;
+
+    // Tamanho (em bytes) de cada foto
+    @Param({ "65536", "2097152" })
+    public int tamanhoFoto;
+
+    // Feed com as fotos (apenas em memória; as fotos ficam no repositório
+    // temporário)
+    private FeedNoticias feed;
+    // Servidor medido
+    private ServidorFeed servidor;
+    // Servidor de comparação, que copia cada foto para um array
+    private HttpServer servidorCopiando;
+    // Threads do servidor de comparação
+    private ExecutorService executorCopiando;
+    // Cliente HTTP compartilhado pelas threads do benchmark
+    private HttpClient cliente;
+    // Endereços das fotos nos dois servidores e ETags das fotos
+    private URI[] enderecos;
+    private URI[] enderecosCopiando;
+    private String[] etags;
+
+    /**
+     * Posta as fotos no Feed, inicia os dois servidores e guarda o ETag de
+     * cada foto (como um cliente que já a baixou).
+     */
+    @Setup
+    public void preparar() throws Exception {
+        feed = new FeedNoticias();
+        Random aleatorio = new Random(42);
+        byte[] foto = new byte[tamanhoFoto];
+        int[] ids = new int[NRO_FOTOS];
+        for (int i = 0; i < NRO_FOTOS; i++) {
+            aleatorio.nextBytes(foto);
+            ids[i] = feed.postarMensagemFoto("autor-" + (i % 10), foto, "Foto " + i);
+        }
+        servidor = new ServidorFeed(feed, 0);
+        servidor.iniciar();
+        servidorCopiando = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        executorCopiando = Executors.newCachedThreadPool();
+        servidorCopiando.setExecutor(executorCopiando);
+        servidorCopiando.createContext("/fotos", this::enviarFotoCopiando);
+        servidorCopiando.start();
+
+        cliente = HttpClient.newHttpClient();
+        enderecos = new URI[NRO_FOTOS];
+        enderecosCopiando = new URI[NRO_FOTOS];
+        etags = new String[NRO_FOTOS];
+        for (int i = 0; i < NRO_FOTOS; i++) {
+            enderecos[i] = URI.create("http://localhost:" + servidor.getPorta() + "/publicacoes/" + ids[i] + "/foto");
+            enderecosCopiando[i] = URI.create("http://localhost:" + servidorCopiando.getAddress().getPort()
+                    + "/fotos/" + ids[i]);
+            HttpResponse<Void> resposta = cliente.send(HttpRequest.newBuilder(enderecos[i]).build(),
+                    HttpResponse.BodyHandlers.discarding());
+            etags[i] = resposta.headers().firstValue("ETag").orElseThrow();
+        }
+    }
+
+    /**
+     * Para os servidores e fecha o Feed.
+     */
+    @TearDown
+    public void encerrar() throws IOException {
+        servidor.parar();
+        servidorCopiando.stop(0);
+        executorCopiando.shutdown();
+        feed.fechar();
+    }
+
+    @Benchmark
+    public int baixarFoto() throws Exception {
+        return baixar(HttpRequest.newBuilder(enderecos[ThreadLocalRandom.current().nextInt(NRO_FOTOS)]).build(),
+                200);
+    }
+
+    @Benchmark
+    public int baixarFotoCopiando() throws Exception {
+        return baixar(HttpRequest.newBuilder(enderecosCopiando[ThreadLocalRandom.current().nextInt(NRO_FOTOS)])
+                .build(), 200);
+    }
+
+    @Benchmark
+    public int revalidarFoto() throws Exception {
+        int foto = ThreadLocalRandom.current().nextInt(NRO_FOTOS);
+        return baixar(HttpRequest.newBuilder(enderecos[foto]).header("If-None-Match", etags[foto]).build(), 304);
+    }
+
+    /**
+     * Envia a requisição (descartando o corpo da resposta) e confere o
+     * status.
+     *
+     * @return Status da resposta
+     */
+    private int baixar(HttpRequest requisicao, int statusEsperado) throws Exception {
+        int status = cliente.send(requisicao, HttpResponse.BodyHandlers.discarding()).statusCode();
+        if (status != statusEsperado) {
+            throw new IllegalStateException("Status " + status + " em " + requisicao.uri());
+        }
+        return status;
+    }
+
+    /**
+     * Responde a foto copiando os bytes para um array (o servidor de
+     * comparação).
+     */
+    private void enviarFotoCopiando(HttpExchange troca) throws IOException {
+        try {
+            String caminho = troca.getRequestURI().getPath();
+            ByteBuffer foto = feed.getDadosBinarios(Integer.parseInt(caminho.substring(caminho.lastIndexOf('/') + 1)));
+            byte[] bytes = new byte[foto.remaining()];
+            foto.get(bytes);
+            troca.getRequestBody().close();
+            troca.sendResponseHeaders(200, bytes.length);
+            try (OutputStream saida = troca.getResponseBody()) {
+                saida.write(bytes);
+            }
+        } finally {
+            troca.close();
+        }
+    }
+}
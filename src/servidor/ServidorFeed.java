@@ -0,0 +1,490 @@
+package servidor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import feed.FeedNoticias;
+import feed.PaginaPublicacoes;
+import feed.Publicacao;
+
+/**
+ * Servidor HTTP local que expõe o Feed de Notícias para scripts e outros
+ * processos, sem a interface gráfica. O servidor aceita conexões apenas do
+ * próprio computador (endereço de loopback) e responde em JSON.
+ *
+ * Rotas:
+ * - GET  /publicacoes?autor=A&cursor=C&limite=L : página de publicações (da
+ *   mais recente para a mais antiga; autor e cursor são opcionais)
+ * - POST /publicacoes/texto?autor=A : posta o corpo (UTF-8) como mensagem
+ * - POST /publicacoes/foto?autor=A&legenda=L : posta o corpo como foto
+ * - POST /publicacoes/{id}/curtidas : curte a mensagem
+ * - POST /publicacoes/{id}/comentarios : comenta a mensagem com o corpo
+ * - GET  /publicacoes/{id}/foto : bytes da foto da mensagem (com ETag, para
+ *   que o cliente possa guardá-la em cache)
+ *
+ * Cada requisição é tratada em uma thread virtual (se a versão do Java as
+ * oferece) ou em uma thread de um pool que cresce conforme a demanda, de
+ * modo que milhares de clientes podem esperar ao mesmo tempo (ex.: pela
+ * gravação do diário) sem bloquear os demais.
+ */
+public class ServidorFeed {
+    // Porta usada se nenhuma for informada
+    public static final int PORTA_PADRAO = 8080;
+    // Quantidade de conexões que podem aguardar para serem aceitas
+    private static final int FILA_CONEXOES = 1024;
+    // Tamanho máximo (em bytes) do corpo de uma mensagem de texto ou comentário
+    private static final int TAMANHO_MAXIMO_TEXTO = 64 * 1024;
+    // Quantidade de publicações por página, se o limite não for informado
+    private static final int LIMITE_PADRAO = 50;
+    // Quantidade máxima de publicações por página
+    private static final int LIMITE_MAXIMO = 1000;
+    // Tempo (em segundos) que as requisições em andamento têm para terminar
+    // quando o servidor é parado
+    private static final int ESPERA_PARADA = 2;
+    // Cache-Control das fotos: a foto de uma mensagem nunca muda
+    private static final String CACHE_FOTOS = "private, max-age=31536000, immutable";
+    // Quantidade máxima de conexões ociosas (keep-alive) mantidas abertas. O
+    // servidor do JDK fecha, sem avisar o cliente, as conexões que terminam
+    // uma resposta acima desse limite (padrão: 200), e um cliente que as
+    // reaproveite não recebe resposta; com milhares de clientes o padrão não
+    // basta
+    private static final int MAXIMO_CONEXOES_OCIOSAS = 10_000;
+
+    static {
+        // lida pelo servidor do JDK quando o primeiro servidor é criado, e
+        // apenas se não foi definida na linha de comando
+        if (System.getProperty("sun.net.httpserver.maxIdleConnections") == null) {
+            System.setProperty("sun.net.httpserver.maxIdleConnections", String.valueOf(MAXIMO_CONEXOES_OCIOSAS));
+        }
+    }
+
+    /**
+     * Erro que interrompe o tratamento de uma requisição e é respondido ao
+     * cliente com o status HTTP correspondente.
+     */
+    private static class ErroRequisicao extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        // Status HTTP da resposta
+        private final int status;
+
+        private ErroRequisicao(int status, String mensagem) {
+            super(mensagem);
+            this.status = status;
+        }
+    }
+
+    // Feed exposto pelo servidor
+    private final FeedNoticias feed;
+    // Servidor HTTP do JDK
+    private final HttpServer servidor;
+    // Threads que tratam as requisições
+    private final ExecutorService executor;
+
+    /**
+     * Cria o servidor (sem iniciá-lo) na porta passada do endereço de
+     * loopback.
+     *
+     * @param feed  Feed exposto pelo servidor
+     * @param porta Porta do servidor (0 para escolher uma porta livre)
+     * @throws IOException Se não for possível abrir a porta
+     */
+    public ServidorFeed(FeedNoticias feed, int porta) throws IOException {
+        this.feed = feed;
+        servidor = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), porta), FILA_CONEXOES);
+        executor = criarExecutor();
+        servidor.setExecutor(executor);
+        servidor.createContext("/publicacoes", this::tratar);
+    }
+
+    /**
+     * Cria o executor das requisições: uma thread virtual por requisição, se
+     * a versão do Java as oferece (Java 21 ou posterior); senão, um pool de
+     * threads que cresce conforme a demanda. O método é procurado por
+     * reflexão para que o programa continue compilando e rodando no Java 17.
+     */
+    private static ExecutorService criarExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // ausente (Java 17) ou disponível apenas como prévia (Java 19 e 20)
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Começa a aceitar requisições.
+     */
+    public void iniciar() {
+        servidor.start();
+    }
+
+    /**
+     * Para de aceitar requisições, espera (por pouco tempo) as que estão em
+     * andamento e encerra as threads do servidor. O feed não é fechado.
+     */
+    public void parar() {
+        servidor.stop(ESPERA_PARADA);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(ESPERA_PARADA, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Retorna a porta em que o servidor está aceitando requisições.
+     *
+     * @return Porta do servidor
+     */
+    public int getPorta() {
+        return servidor.getAddress().getPort();
+    }
+
+    /**
+     * Trata uma requisição: encaminha para a rota correspondente e responde
+     * os erros com o status adequado. Os demais erros (ex.: falha ao gravar
+     * no diário do feed) são registrados no servidor e respondidos com 500 e
+     * uma mensagem genérica, sem os detalhes internos.
+     */
+    private void tratar(HttpExchange troca) throws IOException {
+        try {
+            rotear(troca);
+        } catch (ErroRequisicao e) {
+            enviarErro(troca, e.status, e.getMessage());
+        } catch (NumberFormatException e) {
+            enviarErro(troca, 400, "Número inválido: " + e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            enviarErro(troca, 500, "Erro interno do servidor");
+        } finally {
+            troca.close();
+        }
+    }
+
+    /**
+     * Encaminha a requisição para a rota correspondente ao método e ao
+     * caminho.
+     */
+    private void rotear(HttpExchange troca) throws IOException {
+        String metodo = troca.getRequestMethod();
+        // ex.: "/publicacoes/42/curtidas" -> ["", "publicacoes", "42", "curtidas"]
+        String[] partes = troca.getRequestURI().getPath().split("/");
+        Map<String, String> parametros = lerParametros(troca.getRequestURI().getRawQuery());
+
+        if (partes.length == 2) {
+            exigirMetodo(metodo, "GET");
+            listarPublicacoes(troca, parametros);
+        } else if (partes.length == 3 && partes[2].equals("texto")) {
+            exigirMetodo(metodo, "POST");
+            String texto = lerTexto(troca);
+            int id = feed.postarMensagemTexto(exigirParametro(parametros, "autor"), texto);
+            enviarJson(troca, 201, "{\"id\":" + id + "}");
+        } else if (partes.length == 3 && partes[2].equals("foto")) {
+            exigirMetodo(metodo, "POST");
+            postarFoto(troca, parametros);
+        } else if (partes.length == 4 && partes[3].equals("curtidas")) {
+            exigirMetodo(metodo, "POST");
+            int idMensagem = Integer.parseInt(partes[2]);
+            try {
+                feed.curtir(idMensagem);
+            } catch (IllegalArgumentException e) {
+                throw new ErroRequisicao(404, e.getMessage());
+            }
+            enviarJson(troca, 204, null);
+        } else if (partes.length == 4 && partes[3].equals("comentarios")) {
+            exigirMetodo(metodo, "POST");
+            int idMensagem = Integer.parseInt(partes[2]);
+            String comentario = lerTexto(troca);
+            try {
+                feed.comentar(idMensagem, comentario);
+            } catch (IllegalArgumentException e) {
+                throw new ErroRequisicao(404, e.getMessage());
+            }
+            enviarJson(troca, 204, null);
+        } else if (partes.length == 4 && partes[3].equals("foto")) {
+            exigirMetodo(metodo, "GET");
+            enviarFoto(troca, Integer.parseInt(partes[2]));
+        } else {
+            throw new ErroRequisicao(404, "Rota inexistente: " + troca.getRequestURI().getPath());
+        }
+    }
+
+    /**
+     * Responde uma página de publicações (de todos os autores ou de um só).
+     */
+    private void listarPublicacoes(HttpExchange troca, Map<String, String> parametros) throws IOException {
+        String autor = parametros.get("autor");
+        int cursor = parametros.containsKey("cursor") ? Integer.parseInt(parametros.get("cursor"))
+                : PaginaPublicacoes.INICIO;
+        int limite = parametros.containsKey("limite") ? Integer.parseInt(parametros.get("limite")) : LIMITE_PADRAO;
+        if (limite <= 0 || limite > LIMITE_MAXIMO) {
+            throw new ErroRequisicao(400, "O limite deve estar entre 1 e " + LIMITE_MAXIMO);
+        }
+        PaginaPublicacoes pagina = (autor == null) ? feed.getPublicacoes(cursor, limite)
+                : feed.getPublicacoes(autor, cursor, limite);
+
+        List<Publicacao> publicacoes = pagina.getPublicacoes();
+        StringBuilder json = new StringBuilder(128 * publicacoes.size() + 64);
+        json.append("{\"publicacoes\":[");
+        for (int i = 0; i < publicacoes.size(); i++) {
+            Publicacao publicacao = publicacoes.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(publicacao.getId());
+            json.append(",\"autor\":");
+            escreverTextoJson(json, publicacao.getAutor());
+            json.append(",\"texto\":");
+            escreverTextoJson(json, publicacao.getTextoExibicao());
+            json.append(",\"nroComentarios\":").append(publicacao.getNroComentarios());
+            json.append(",\"temFoto\":").append(publicacao.temFoto()).append('}');
+        }
+        json.append("],\"proximoCursor\":").append(pagina.getProximoCursor());
+        json.append(",\"temProxima\":").append(pagina.temProxima()).append('}');
+        enviarJson(troca, 200, json.toString());
+    }
+
+    /**
+     * Posta a foto enviada no corpo da requisição. Os bytes são copiados
+     * para o repositório de fotos enquanto são lidos, por isso o tamanho
+     * (Content-Length) é obrigatório.
+     */
+    private void postarFoto(HttpExchange troca, Map<String, String> parametros) throws IOException {
+        String autor = exigirParametro(parametros, "autor");
+        String legenda = parametros.getOrDefault("legenda", "");
+        String tamanhoInformado = troca.getRequestHeaders().getFirst("Content-Length");
+        if (tamanhoInformado == null) {
+            throw new ErroRequisicao(411, "O tamanho da foto (Content-Length) é obrigatório");
+        }
+        long tamanho = Long.parseLong(tamanhoInformado);
+        if (tamanho <= 0) {
+            throw new ErroRequisicao(400, "A foto está vazia");
+        }
+        int id;
+        try (InputStream entrada = troca.getRequestBody()) {
+            id = feed.postarMensagemFoto(autor, entrada, tamanho, legenda);
+        }
+        enviarJson(troca, 201, "{\"id\":" + id + "}");
+    }
+
+    /**
+     * Responde os bytes da foto de uma mensagem.
+     *
+     * A foto de uma mensagem nunca muda, então a resposta leva um ETag
+     * derivado do id da mensagem e pode ficar em cache no cliente; se o
+     * cliente já tem a foto (If-None-Match), a resposta é apenas 304, sem os
+     * bytes. Os bytes são escritos diretamente do segmento mapeado em memória
+     * do repositório de fotos, sem copiar a foto para um array.
+     */
+    private void enviarFoto(HttpExchange troca, int idMensagem) throws IOException {
+        ByteBuffer foto = feed.getDadosBinarios(idMensagem);
+        if (foto == null) {
+            throw new ErroRequisicao(404, "A mensagem " + idMensagem + " não tem foto (ou não está no feed)");
+        }
+        String etag = "\"foto-" + idMensagem + "-" + foto.remaining() + "\"";
+        Headers cabecalhos = troca.getResponseHeaders();
+        cabecalhos.set("ETag", etag);
+        cabecalhos.set("Cache-Control", CACHE_FOTOS);
+        if (etagCorresponde(troca.getRequestHeaders().getFirst("If-None-Match"), etag)) {
+            enviarCabecalhos(troca, 304, -1);
+            return;
+        }
+        cabecalhos.set("Content-Type", tipoDaFoto(foto));
+        enviarCabecalhos(troca, 200, foto.remaining());
+        try (WritableByteChannel saida = Channels.newChannel(troca.getResponseBody())) {
+            while (foto.hasRemaining()) {
+                saida.write(foto);
+            }
+        }
+    }
+
+    /**
+     * Verifica se o cabeçalho If-None-Match da requisição (uma lista de ETags
+     * separados por vírgula, ou "*") contém o ETag da foto.
+     */
+    private static boolean etagCorresponde(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidato : ifNoneMatch.split(",")) {
+            candidato = candidato.trim();
+            // a comparação "fraca" (If-None-Match) ignora o prefixo W/
+            if (candidato.startsWith("W/")) {
+                candidato = candidato.substring(2);
+            }
+            if (candidato.equals("*") || candidato.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Identifica o tipo da foto pelos primeiros bytes (JPEG, PNG ou GIF).
+     */
+    private static String tipoDaFoto(ByteBuffer foto) {
+        int inicio = foto.position();
+        if (foto.remaining() >= 3 && (foto.get(inicio) & 0xFF) == 0xFF && (foto.get(inicio + 1) & 0xFF) == 0xD8) {
+            return "image/jpeg";
+        } else if (foto.remaining() >= 4 && (foto.get(inicio) & 0xFF) == 0x89 && foto.get(inicio + 1) == 'P'
+                && foto.get(inicio + 2) == 'N' && foto.get(inicio + 3) == 'G') {
+            return "image/png";
+        } else if (foto.remaining() >= 3 && foto.get(inicio) == 'G' && foto.get(inicio + 1) == 'I'
+                && foto.get(inicio + 2) == 'F') {
+            return "image/gif";
+        }
+        return "application/octet-stream";
+    }
+
+    /**
+     * Lê o corpo da requisição como texto (UTF-8), limitado a
+     * TAMANHO_MAXIMO_TEXTO bytes.
+     */
+    private static String lerTexto(HttpExchange troca) throws IOException {
+        try (InputStream entrada = troca.getRequestBody()) {
+            byte[] bytes = entrada.readNBytes(TAMANHO_MAXIMO_TEXTO + 1);
+            if (bytes.length > TAMANHO_MAXIMO_TEXTO) {
+                throw new ErroRequisicao(413, "O texto passa de " + TAMANHO_MAXIMO_TEXTO + " bytes");
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Separa os parâmetros da consulta (ex.: "autor=Ana&limite=10").
+     */
+    private static Map<String, String> lerParametros(String consulta) {
+        Map<String, String> parametros = new HashMap<>();
+        if (consulta == null || consulta.isEmpty()) {
+            return parametros;
+        }
+        for (String par : consulta.split("&")) {
+            int igual = par.indexOf('=');
+            String nome = (igual < 0) ? par : par.substring(0, igual);
+            String valor = (igual < 0) ? "" : par.substring(igual + 1);
+            parametros.put(URLDecoder.decode(nome, StandardCharsets.UTF_8),
+                    URLDecoder.decode(valor, StandardCharsets.UTF_8));
+        }
+        return parametros;
+    }
+
+    /**
+     * Retorna um parâmetro obrigatório (não vazio) da consulta.
+     */
+    private static String exigirParametro(Map<String, String> parametros, String nome) {
+        String valor = parametros.get(nome);
+        if (valor == null || valor.isBlank()) {
+            throw new ErroRequisicao(400, "O parâmetro \"" + nome + "\" é obrigatório");
+        }
+        return valor;
+    }
+
+    /**
+     * Verifica se a requisição usa o método esperado pela rota.
+     */
+    private static void exigirMetodo(String metodo, String esperado) {
+        if (!metodo.equals(esperado)) {
+            throw new ErroRequisicao(405, "Use o método " + esperado);
+        }
+    }
+
+    /**
+     * Responde um erro, no formato {"erro": "mensagem"}. Se o cabeçalho da
+     * resposta já foi enviado, não há como mudar o status: a conexão é apenas
+     * fechada (e o cliente percebe a resposta incompleta).
+     */
+    private static void enviarErro(HttpExchange troca, int status, String mensagem) throws IOException {
+        if (troca.getResponseCode() != -1) {
+            return;
+        }
+        StringBuilder json = new StringBuilder("{\"erro\":");
+        escreverTextoJson(json, mensagem);
+        enviarJson(troca, status, json.append('}').toString());
+    }
+
+    /**
+     * Responde um JSON com o status passado (ou apenas o status, se o JSON
+     * for null).
+     */
+    private static void enviarJson(HttpExchange troca, int status, String json) throws IOException {
+        if (json == null) {
+            enviarCabecalhos(troca, status, -1);
+            return;
+        }
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        troca.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        enviarCabecalhos(troca, status, bytes.length);
+        try (OutputStream saida = troca.getResponseBody()) {
+            saida.write(bytes);
+        }
+    }
+
+    /**
+     * Envia o status e os cabeçalhos da resposta (com o tamanho do corpo, ou
+     * -1 se não houver corpo), depois de descartar o que sobrou do corpo da
+     * requisição. O servidor do JDK fecha a conexão, sem avisar o cliente
+     * (Connection: close), quando a resposta termina antes de o corpo da
+     * requisição ser lido até o fim (o que acontece em todo GET e em toda
+     * curtida); o cliente que reaproveitasse essa conexão para a requisição
+     * seguinte não receberia resposta.
+     */
+    private static void enviarCabecalhos(HttpExchange troca, int status, long tamanho) throws IOException {
+        troca.getRequestBody().close();
+        troca.sendResponseHeaders(status, tamanho);
+    }
+
+    /**
+     * Escreve um texto como string JSON (entre aspas, com os caracteres
+     * especiais escapados).
+     */
+    private static void escreverTextoJson(StringBuilder json, String texto) {
+        json.append('"');
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+}
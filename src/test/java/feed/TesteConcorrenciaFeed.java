@@ -0,0 +1,190 @@
+package feed;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+/**
+ * Testes do Feed usado por várias threads ao mesmo tempo: 32 threads postam,
+ * curtem e comentam (com chamadas avulsas e lotes) enquanto outra lê o Feed,
+ * e no final nenhuma curtida ou comentário pode ter sido perdido e nenhum id
+ * pode ter sido repetido.
+ */
+@Timeout(value = 2, unit = TimeUnit.MINUTES)
+class TesteConcorrenciaFeed {
+    // Quantidade de threads que alteram o Feed
+    private static final int NRO_THREADS = 32;
+    // Quantidade de operações de cada thread
+    private static final int OPERACOES_POR_THREAD = 2000;
+    // Quantidade de mensagens curtidas e comentadas pelas threads
+    private static final int NRO_ALVOS = 100;
+
+    // Threads que alteram o Feed
+    private ExecutorService threads;
+
+    @BeforeEach
+    void criarThreads() {
+        threads = Executors.newFixedThreadPool(NRO_THREADS);
+    }
+
+    @AfterEach
+    void encerrarThreads() throws InterruptedException {
+        threads.shutdownNow();
+        threads.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void postagensCurtidasEComentariosSemPerdasNemIdsRepetidos() throws Exception {
+        FeedNoticias feed = new FeedNoticias();
+        int[] alvos = new int[NRO_ALVOS];
+        for (int i = 0; i < NRO_ALVOS; i++) {
+            alvos[i] = feed.postarMensagemTexto("alvos", "Mensagem alvo " + i);
+        }
+        AtomicIntegerArray curtidasEsperadas = new AtomicIntegerArray(NRO_ALVOS);
+        AtomicIntegerArray comentariosEsperados = new AtomicIntegerArray(NRO_ALVOS);
+        Set<Integer> idsPostados = ConcurrentHashMap.newKeySet();
+        AtomicBoolean idRepetido = new AtomicBoolean(false);
+
+        // uma thread lê o Feed durante as alterações: cada leitura deve ver
+        // as mensagens em ordem de postagem, sem buracos nem repetições
+        AtomicBoolean alterando = new AtomicBoolean(true);
+        AtomicReference<String> erroLeitura = new AtomicReference<>();
+        Thread leitora = new Thread(() -> {
+            int tamanhoAnterior = 0;
+            while (alterando.get() && erroLeitura.get() == null) {
+                List<Publicacao> publicacoes = feed.getPublicacoes();
+                if (publicacoes.size() < tamanhoAnterior) {
+                    erroLeitura.set("o Feed diminuiu de " + tamanhoAnterior + " para " + publicacoes.size());
+                }
+                tamanhoAnterior = publicacoes.size();
+                int idAnterior = 0;
+                for (Publicacao publicacao : publicacoes) {
+                    if (publicacao == null || publicacao.getId() <= idAnterior) {
+                        erroLeitura.set("leitura fora de ordem depois do id " + idAnterior);
+                        break;
+                    }
+                    idAnterior = publicacao.getId();
+                }
+            }
+        });
+        leitora.start();
+
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<?>> tarefas = new ArrayList<>();
+        for (int t = 0; t < NRO_THREADS; t++) {
+            int numeroThread = t;
+            tarefas.add(threads.submit(() -> {
+                largada.await();
+                LoteOperacoes lote = new LoteOperacoes();
+                for (int i = 0; i < OPERACOES_POR_THREAD; i++) {
+                    int alvo = (numeroThread * 7 + i) % NRO_ALVOS;
+                    // as threads pares usam chamadas avulsas, e as ímpares,
+                    // lotes de 50 operações
+                    boolean avulsa = numeroThread % 2 == 0;
+                    if (i % 3 == 0) {
+                        if (avulsa) {
+                            registrarId(idsPostados, idRepetido,
+                                    feed.postarMensagemTexto("autor-" + numeroThread, "Mensagem " + i));
+                        } else {
+                            lote.postarMensagemTexto("autor-" + numeroThread, "Mensagem " + i);
+                        }
+                    } else if (i % 3 == 1) {
+                        if (avulsa) {
+                            feed.curtir(alvos[alvo]);
+                        } else {
+                            lote.curtir(alvos[alvo]);
+                        }
+                        curtidasEsperadas.incrementAndGet(alvo);
+                    } else {
+                        if (avulsa) {
+                            feed.comentar(alvos[alvo], "Comentario " + numeroThread + "-" + i);
+                        } else {
+                            lote.comentar(alvos[alvo], "Comentario " + numeroThread + "-" + i);
+                        }
+                        comentariosEsperados.incrementAndGet(alvo);
+                    }
+                    if (!avulsa && (i + 1) % 50 == 0) {
+                        for (int id : feed.executar(lote)) {
+                            registrarId(idsPostados, idRepetido, id);
+                        }
+                        lote = new LoteOperacoes();
+                    }
+                }
+                return null;
+            }));
+        }
+        largada.countDown();
+        for (Future<?> tarefa : tarefas) {
+            tarefa.get();
+        }
+        alterando.set(false);
+        leitora.join();
+
+        assertNull(erroLeitura.get());
+        assertFalse(idRepetido.get(), "um id foi devolvido a mais de uma postagem");
+        int postagensPorThread = (OPERACOES_POR_THREAD + 2) / 3;
+        assertEquals(NRO_THREADS * postagensPorThread, idsPostados.size());
+        assertEquals(NRO_ALVOS + NRO_THREADS * postagensPorThread, feed.nroMensagens());
+        assertEquals(NRO_THREADS + 1, feed.obterAutores().size());
+        for (int i = 0; i < NRO_ALVOS; i++) {
+            Mensagem alvo = (Mensagem) feed.getPublicacao(i);
+            assertEquals(alvos[i], alvo.getId());
+            assertEquals(curtidasEsperadas.get(i), alvo.getNroCurtidas(), "curtidas da mensagem " + i);
+            assertEquals(comentariosEsperados.get(i), alvo.getNroComentarios(), "comentários da mensagem " + i);
+            assertEquals(comentariosEsperados.get(i), alvo.getComentarios().size());
+        }
+    }
+
+    @Test
+    void curtidasNaMesmaMensagemNaoSePerdem() throws Exception {
+        FeedNoticias feed = new FeedNoticias();
+        int id = feed.postarMensagemTexto("autor", "Mensagem muito curtida");
+        int curtidasPorThread = 10_000;
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<?>> tarefas = new ArrayList<>();
+        for (int t = 0; t < NRO_THREADS; t++) {
+            tarefas.add(threads.submit(() -> {
+                largada.await();
+                for (int i = 0; i < curtidasPorThread; i++) {
+                    feed.curtir(id);
+                }
+                return null;
+            }));
+        }
+        largada.countDown();
+        for (Future<?> tarefa : tarefas) {
+            tarefa.get();
+        }
+        Mensagem mensagem = (Mensagem) feed.getPublicacao(0);
+        assertEquals((long) NRO_THREADS * curtidasPorThread, mensagem.getNroCurtidas());
+        assertEquals(mensagem, feed.getMaisPopulares(1).get(0));
+    }
+
+    /**
+     * Guarda o id de uma mensagem postada, indicando se ele já havia sido
+     * devolvido antes.
+     */
+    private static void registrarId(Set<Integer> idsPostados, AtomicBoolean idRepetido, int id) {
+        if (!idsPostados.add(id)) {
+            idRepetido.set(true);
+        }
+    }
+}
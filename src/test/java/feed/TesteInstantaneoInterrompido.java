@@ -0,0 +1,174 @@
+package feed;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Teste da recuperação de um Feed persistente cujo processo é morto (com
+ * SIGKILL) enquanto um instantâneo está sendo gravado: outra JVM preenche o
+ * Feed e gera instantâneos sem parar, e é morta assim que um arquivo
+ * temporário de instantâneo aparece no diretório. O Feed reaberto deve ter
+ * todas as operações que a outra JVM viu concluídas, e continuar gerando
+ * instantâneos.
+ */
+@Timeout(value = 3, unit = TimeUnit.MINUTES)
+class TesteInstantaneoInterrompido {
+    // Quantidade de mensagens postadas antes dos instantâneos (o bastante
+    // para que a gravação de um instantâneo não seja instantânea)
+    private static final int NRO_MENSAGENS = 200_000;
+    // Quantidade de operações por lote no preenchimento
+    private static final int TAMANHO_LOTE = 10_000;
+
+    @TempDir
+    Path diretorio;
+
+    @Test
+    void feedReabreComTudoQueFoiConcluidoAntesDaMorte() throws Exception {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Process processo = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                ProcessoFeed.class.getName(), diretorio.toString())
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        // última postagem avulsa que o outro processo viu concluída (gravada
+        // no diário)
+        AtomicInteger ultimaConcluida = new AtomicInteger(-1);
+        Thread leitora = new Thread(() -> lerSaida(processo, ultimaConcluida));
+        leitora.start();
+        try {
+            assertTrue(esperarInstantaneoEmGravacao(processo), "nenhum instantâneo começou a ser gravado");
+        } finally {
+            processo.destroyForcibly();
+            processo.waitFor(30, TimeUnit.SECONDS);
+            leitora.join();
+        }
+        assertTrue(ultimaConcluida.get() >= 0, "o outro processo não concluiu o preenchimento");
+
+        FeedNoticias feed = new FeedNoticias(diretorio, Integer.MAX_VALUE);
+        try {
+            assertTrue(feed.nroMensagens() >= NRO_MENSAGENS + ultimaConcluida.get() + 1);
+            for (int i = 0; i < NRO_MENSAGENS; i += 997) {
+                verificarMensagem((Mensagem) feed.getPublicacao(i), i);
+            }
+            for (int i = 0; i <= ultimaConcluida.get(); i++) {
+                Publicacao avulsa = feed.getPublicacao(NRO_MENSAGENS + i);
+                assertEquals("Postagem avulsa " + i, ((Mensagem) avulsa).getTextoConteudo());
+            }
+            // o Feed recuperado continua gerando instantâneos, e reabre a
+            // partir deles
+            Future<?> instantaneo = feed.gerarInstantaneo();
+            assertNotNull(instantaneo);
+            instantaneo.get();
+        } finally {
+            feed.fechar();
+        }
+        int nroMensagens = feed.nroMensagens();
+        FeedNoticias reaberto = new FeedNoticias(diretorio, Integer.MAX_VALUE);
+        try {
+            assertEquals(nroMensagens, reaberto.nroMensagens());
+            verificarMensagem((Mensagem) reaberto.getPublicacao(NRO_MENSAGENS - 1), NRO_MENSAGENS - 1);
+        } finally {
+            reaberto.fechar();
+        }
+    }
+
+    /**
+     * Espera até que um arquivo temporário de instantâneo apareça no
+     * diretório (ou o outro processo termine).
+     *
+     * @return true se o arquivo apareceu
+     */
+    private boolean esperarInstantaneoEmGravacao(Process processo) throws IOException, InterruptedException {
+        while (processo.isAlive()) {
+            try (Stream<Path> arquivos = Files.list(diretorio)) {
+                if (arquivos.anyMatch(arquivo -> arquivo.getFileName().toString().endsWith(".snap.tmp"))) {
+                    return true;
+                }
+            }
+            Thread.sleep(1);
+        }
+        return false;
+    }
+
+    /**
+     * Lê a saída do outro processo, guardando o número da última postagem
+     * avulsa concluída.
+     */
+    private static void lerSaida(Process processo, AtomicInteger ultimaConcluida) {
+        try (BufferedReader saida = new BufferedReader(
+                new InputStreamReader(processo.getInputStream(), StandardCharsets.UTF_8))) {
+            String linha;
+            while ((linha = saida.readLine()) != null) {
+                ultimaConcluida.set(Integer.parseInt(linha.trim()));
+            }
+        } catch (IOException | NumberFormatException e) {
+            // o processo foi morto no meio de uma linha
+        }
+    }
+
+    /**
+     * Verifica o texto, as curtidas e os comentários de uma mensagem do
+     * preenchimento.
+     */
+    private static void verificarMensagem(Mensagem mensagem, int numero) {
+        assertEquals("Mensagem " + numero, mensagem.getTextoConteudo());
+        assertEquals("autor-" + (numero % 100), mensagem.getAutor());
+        assertEquals(numero % 5, mensagem.getNroCurtidas());
+        List<String> comentarios = List.copyOf(mensagem.getComentarios());
+        assertEquals((numero % 10 == 0) ? List.of("Comentario " + numero) : List.of(), comentarios);
+    }
+
+    /**
+     * Processo que preenche o Feed do diretório passado e depois, sem parar,
+     * faz uma postagem avulsa (escrevendo o seu número na saída depois que ela
+     * é concluída) e gera um instantâneo.
+     */
+    static class ProcessoFeed {
+        public static void main(String[] args) throws Exception {
+            FeedNoticias feed = new FeedNoticias(Paths.get(args[0]), Integer.MAX_VALUE);
+            int[] ids = new int[NRO_MENSAGENS];
+            for (int inicio = 0; inicio < NRO_MENSAGENS; inicio += TAMANHO_LOTE) {
+                LoteOperacoes lote = new LoteOperacoes();
+                for (int i = inicio; i < inicio + TAMANHO_LOTE; i++) {
+                    lote.postarMensagemTexto("autor-" + (i % 100), "Mensagem " + i);
+                }
+                System.arraycopy(feed.executar(lote), 0, ids, inicio, TAMANHO_LOTE);
+            }
+            for (int inicio = 0; inicio < NRO_MENSAGENS; inicio += TAMANHO_LOTE) {
+                LoteOperacoes lote = new LoteOperacoes();
+                for (int i = inicio; i < inicio + TAMANHO_LOTE; i++) {
+                    for (int curtida = 0; curtida < i % 5; curtida++) {
+                        lote.curtir(ids[i]);
+                    }
+                    if (i % 10 == 0) {
+                        lote.comentar(ids[i], "Comentario " + i);
+                    }
+                }
+                feed.executar(lote);
+            }
+            for (int i = 0;; i++) {
+                feed.postarMensagemTexto("autor-avulso", "Postagem avulsa " + i);
+                System.out.println(i);
+                System.out.flush();
+                feed.gerarInstantaneo().get();
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package servidor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import feed.FeedNoticias;
+import feed.Publicacao;
+
+/**
+ * Teste de carga do servidor HTTP local: milhares de clientes, cada um com a
+ * própria thread e as próprias conexões, começam ao mesmo tempo a postar,
+ * curtir, comentar e listar pelo servidor. Todas as requisições devem ser
+ * respondidas com sucesso e nenhuma operação pode se perder.
+ */
+@Timeout(value = 2, unit = TimeUnit.MINUTES)
+class TesteCargaServidorFeed {
+    // Quantidade de clientes simultâneos
+    private static final int NRO_CLIENTES = 2000;
+    // Tempo máximo de espera por uma resposta
+    private static final Duration ESPERA_RESPOSTA = Duration.ofSeconds(60);
+    // Id devolvido pelas postagens (ex.: {"id":42})
+    private static final Pattern ID = Pattern.compile("\\{\"id\":(\\d+)\\}");
+
+    // Feed exposto pelo servidor
+    private FeedNoticias feed;
+    // Servidor testado (em uma porta livre)
+    private ServidorFeed servidor;
+
+    @BeforeEach
+    void iniciarServidor() throws Exception {
+        feed = new FeedNoticias();
+        servidor = new ServidorFeed(feed, 0);
+        servidor.iniciar();
+    }
+
+    @AfterEach
+    void pararServidor() throws Exception {
+        servidor.parar();
+        feed.fechar();
+    }
+
+    @Test
+    void milharesDeClientesSimultaneosSemErrosNemPerdas() throws Exception {
+        String base = "http://localhost:" + servidor.getPorta() + "/publicacoes";
+        HttpClient cliente = HttpClient.newBuilder().connectTimeout(ESPERA_RESPOSTA).build();
+        AtomicIntegerArray ids = new AtomicIntegerArray(NRO_CLIENTES);
+        AtomicReference<String> erro = new AtomicReference<>();
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Thread> clientes = new ArrayList<>();
+        for (int c = 0; c < NRO_CLIENTES; c++) {
+            int numeroCliente = c;
+            Thread thread = new Thread(() -> {
+                try {
+                    largada.await();
+                    String autor = "cliente-" + numeroCliente;
+                    String resposta = enviar(cliente, "POST", base + "/texto?autor=" + autor,
+                            "Mensagem do " + autor, 201);
+                    Matcher id = ID.matcher(resposta);
+                    if (!id.matches()) {
+                        throw new AssertionError("resposta inesperada da postagem: " + resposta);
+                    }
+                    ids.set(numeroCliente, Integer.parseInt(id.group(1)));
+                    enviar(cliente, "POST", base + "/" + id.group(1) + "/curtidas", "", 204);
+                    enviar(cliente, "POST", base + "/" + id.group(1) + "/comentarios", "Comentario do " + autor, 204);
+                    String pagina = enviar(cliente, "GET", base + "?autor=" + autor + "&limite=10", null, 200);
+                    if (!pagina.contains("{\"id\":" + id.group(1) + ",")) {
+                        throw new AssertionError("a página do " + autor + " não tem a sua mensagem: " + pagina);
+                    }
+                    enviar(cliente, "GET", base + "?limite=50", null, 200);
+                } catch (Throwable e) {
+                    erro.compareAndSet(null, "cliente " + numeroCliente + ": " + e);
+                }
+            });
+            thread.start();
+            clientes.add(thread);
+        }
+        largada.countDown();
+        for (Thread thread : clientes) {
+            thread.join();
+        }
+
+        assertNull(erro.get());
+        assertEquals(NRO_CLIENTES, feed.nroMensagens());
+        assertEquals(NRO_CLIENTES, feed.obterAutores().size());
+        for (int c = 0; c < NRO_CLIENTES; c++) {
+            Publicacao publicacao = feed.getPublicacao(feed.posicaoDaPublicacao(ids.get(c)));
+            assertEquals("cliente-" + c, publicacao.getAutor());
+            assertTrue(publicacao.getTextoExibicao().contains(" 1 pessoas curtiram isso!"));
+            assertEquals(1, publicacao.getNroComentarios());
+        }
+    }
+
+    /**
+     * Envia uma requisição (com o corpo passado, se houver) e verifica o
+     * status da resposta.
+     *
+     * @return Corpo da resposta
+     */
+    private static String enviar(HttpClient cliente, String metodo, String endereco, String corpo,
+            int statusEsperado) throws Exception {
+        HttpRequest.BodyPublisher publicador = (corpo == null) ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofString(corpo);
+        HttpRequest requisicao = HttpRequest.newBuilder(URI.create(endereco)).timeout(ESPERA_RESPOSTA)
+                .method(metodo, publicador).build();
+        HttpResponse<String> resposta = cliente.send(requisicao, HttpResponse.BodyHandlers.ofString());
+        if (resposta.statusCode() != statusEsperado) {
+            throw new AssertionError(metodo + " " + endereco + ": status " + resposta.statusCode() + " ("
+                    + resposta.body() + ")");
+        }
+        return resposta.body();
+    }
+}